@@ -0,0 +1,58 @@
+package com.hellofyc.apptest;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Times an old and a new implementation of one operation in alternating rounds and logs
+ * their cost per operation. The ratio is only logged, wall clock timings on emulators and
+ * CI machines are too noisy to assert on; correctness is checked by the regular tests.
+ */
+final class Benchmark {
+
+    private final String mTag;
+    private final int mCount;
+    private final int mWarmup;
+    private final int mRounds;
+
+    /**
+     * @param count operations per round
+     */
+    Benchmark(String tag, int count, int warmup, int rounds) {
+        mTag = tag;
+        mCount = count;
+        mWarmup = warmup;
+        mRounds = rounds;
+    }
+
+    /**
+     * @return how many times faster after is than before
+     */
+    double compare(String name, String beforeLabel, Runnable before, String afterLabel, Runnable after) {
+        for (int i = 0; i < mWarmup; i++) {
+            run(before);
+            run(after);
+        }
+
+        long beforeNanos = 0;
+        long afterNanos = 0;
+        for (int i = 0; i < mRounds; i++) {
+            beforeNanos += run(before);
+            afterNanos += run(after);
+        }
+
+        double speedup = (double) beforeNanos / afterNanos;
+        Log.i(mTag, name + " " + beforeLabel + ": " + beforeNanos / mRounds / mCount + "ns/op"
+                + ", " + afterLabel + ": " + afterNanos / mRounds / mCount + "ns/op"
+                + ", speedup: " + String.format("%.2f", speedup) + "x");
+        return speedup;
+    }
+
+    private long run(Runnable runnable) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < mCount; i++) {
+            runnable.run();
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+}
@@ -0,0 +1,76 @@
+package com.hellofyc.apptest;
+
+import android.test.AndroidTestCase;
+
+import com.hellofyc.base.util.AESUtils;
+import com.hellofyc.base.util.DESUtils;
+
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.DESKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Per-operation cost of encrypting a small pref value with a new Cipher and key every time,
+ * as AESUtils and DESUtils used to, against the cached ones of CipherEngine. Run on a device,
+ * results are logged with the "CipherBenchmark" tag.
+ */
+public class CipherBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "CipherBenchmark";
+
+    private static final String PASSWORD = "iJasonFang";
+    private static final int COUNT = 2000;
+    private static final int WARMUP = 3;
+    private static final int ROUNDS = 10;
+
+    private final byte[] mData = "a small pref value".getBytes();
+    private final Benchmark mBenchmark = new Benchmark(TAG, COUNT, WARMUP, ROUNDS);
+
+    public void testAes() throws Exception {
+        assertTrue(Arrays.equals(mData, AESUtils.decrypt(AESUtils.encrypt(mData, PASSWORD), PASSWORD)));
+
+        mBenchmark.compare("AES", "uncached", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Cipher cipher = Cipher.getInstance("AES");
+                    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec("iJasonFang000000".getBytes("UTF-8"), "AES"));
+                    cipher.doFinal(mData);
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }, "cached", new Runnable() {
+            @Override
+            public void run() {
+                AESUtils.encrypt(mData, PASSWORD);
+            }
+        });
+    }
+
+    public void testDes() throws Exception {
+        assertTrue(Arrays.equals(mData, DESUtils.decryptWithDES(DESUtils.encryptWithDES(mData, PASSWORD), PASSWORD)));
+
+        mBenchmark.compare("DES", "uncached", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("DES");
+                    Cipher cipher = Cipher.getInstance("DES");
+                    cipher.init(Cipher.ENCRYPT_MODE, keyFactory.generateSecret(new DESKeySpec(PASSWORD.getBytes("UTF-8"))));
+                    cipher.doFinal(mData);
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }, "cached", new Runnable() {
+            @Override
+            public void run() {
+                DESUtils.encryptWithDES(mData, PASSWORD);
+            }
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.hellofyc.apptest;
+
+import android.test.AndroidTestCase;
+import android.util.Base64;
+
+import com.hellofyc.base.util.Base64Codec;
+import com.hellofyc.base.util.HexCodec;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Per-operation cost of the table driven {@link HexCodec} and {@link Base64Codec} against the
+ * StringBuilder hex of the old ParseUtils.bytesToHexString and android.util.Base64, on a
+ * digest sized and a signature sized input. Run on a device, results are logged with the
+ * "CodecBenchmark" tag.
+ */
+public class CodecBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "CodecBenchmark";
+
+    private static final int COUNT = 20000;
+    private static final int WARMUP = 3;
+    private static final int ROUNDS = 10;
+
+    private final byte[] mDigest = new byte[16];
+    private final byte[] mSignature = new byte[256];
+    private final char[] mHexChars = new char[mDigest.length * 2];
+    private final byte[] mBase64Bytes = new byte[Base64Codec.encodedLength(mSignature.length, false)];
+    private final byte[] mDecoded = new byte[mSignature.length];
+    private final Benchmark mBenchmark = new Benchmark(TAG, COUNT, WARMUP, ROUNDS);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Random random = new Random(1);
+        random.nextBytes(mDigest);
+        random.nextBytes(mSignature);
+    }
+
+    public void testHexEncode() {
+        assertEquals(oldHex(mDigest), HexCodec.encodeToString(mDigest));
+
+        mBenchmark.compare("hex encode", "StringBuilder", new Runnable() {
+            @Override
+            public void run() {
+                oldHex(mDigest);
+            }
+        }, "HexCodec", new Runnable() {
+            @Override
+            public void run() {
+                HexCodec.encode(mDigest, 0, mDigest.length, mHexChars, 0);
+            }
+        });
+    }
+
+    public void testBase64Encode() {
+        assertEquals(Base64.encodeToString(mSignature, Base64.DEFAULT), Base64Codec.encodeToString(mSignature, true));
+
+        mBenchmark.compare("base64 encode", "android", new Runnable() {
+            @Override
+            public void run() {
+                Base64.encode(mSignature, Base64.NO_WRAP);
+            }
+        }, "Base64Codec", new Runnable() {
+            @Override
+            public void run() {
+                Base64Codec.encode(mSignature, 0, mSignature.length, mBase64Bytes, 0, false);
+            }
+        });
+    }
+
+    public void testBase64Decode() {
+        final byte[] encoded = Base64.encode(mSignature, Base64.NO_WRAP);
+        assertTrue(Arrays.equals(mSignature, Base64Codec.decode(encoded)));
+
+        mBenchmark.compare("base64 decode", "android", new Runnable() {
+            @Override
+            public void run() {
+                Base64.decode(encoded, Base64.NO_WRAP);
+            }
+        }, "Base64Codec", new Runnable() {
+            @Override
+            public void run() {
+                Base64Codec.decode(encoded, 0, encoded.length, mDecoded, 0);
+            }
+        });
+    }
+
+    private static String oldHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            String x16 = Integer.toHexString(b);
+            if (x16.length() < 2) {
+                sb.append("0");
+                sb.append(x16);
+            } else if (x16.length() > 2) {
+                sb.append(x16.substring(x16.length() - 2));
+            } else {
+                sb.append(x16);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.hellofyc.apptest;
+
+import android.test.AndroidTestCase;
+
+import com.hellofyc.base.json.Json;
+import com.hellofyc.base.json.JsonAdapter;
+import com.hellofyc.base.model.PageInfo;
+import com.hellofyc.base.util.JsonUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the generated {@link PageInfo} adapter with binding through {@link JSONObject}
+ * and {@link JsonUtils}. Run on a device, results are logged with the "JsonBinding" tag.
+ */
+public class JsonBindingBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "JsonBinding";
+
+    private static final int COUNT = 2000;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 20;
+
+    private final Benchmark mBenchmark = new Benchmark(TAG, 1, WARMUP, ROUNDS);
+    private String mJson;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < COUNT; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"totalPage\":").append(i % 50)
+                    .append(",\"currentPage\":").append(i % 7)
+                    .append(",\"totalCount\":").append(i * 20)
+                    .append(",\"refreshTimestamp\":").append(1468454400000L + i)
+                    .append(",\"extra\":{\"tags\":[\"a\",\"b\"],\"score\":1.5}}");
+        }
+        mJson = sb.append(']').toString();
+    }
+
+    public void testGeneratedAdapter() throws Exception {
+        final JsonAdapter<PageInfo> adapter = Json.adapter(PageInfo.class);
+
+        assertSameValues(bindWithJsonObject(), bindWithAdapter(adapter));
+
+        mBenchmark.compare(COUNT + " objects", "JSONObject", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    bindWithJsonObject();
+                } catch (JSONException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }, "adapter", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    bindWithAdapter(adapter);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+    }
+
+    private List<PageInfo> bindWithJsonObject() throws JSONException {
+        JSONArray array = new JSONArray(mJson);
+        List<PageInfo> list = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject object = array.getJSONObject(i);
+            PageInfo pageInfo = new PageInfo();
+            pageInfo.setTotalPage(JsonUtils.getInt(object, "totalPage"));
+            pageInfo.setCurrentPage(JsonUtils.getInt(object, "currentPage"));
+            pageInfo.setTotalCount(JsonUtils.getInt(object, "totalCount"));
+            pageInfo.setRefreshTimestamp(JsonUtils.getLong(object, "refreshTimestamp"));
+            list.add(pageInfo);
+        }
+        return list;
+    }
+
+    private List<PageInfo> bindWithAdapter(JsonAdapter<PageInfo> adapter) throws IOException {
+        return adapter.listFromJson(new StringReader(mJson));
+    }
+
+    private static void assertSameValues(List<PageInfo> expected, List<PageInfo> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            PageInfo e = expected.get(i);
+            PageInfo a = actual.get(i);
+            assertEquals(e.getTotalPage(), a.getTotalPage());
+            assertEquals(e.getCurrentPage(), a.getCurrentPage());
+            assertEquals(e.getTotalCount(), a.getTotalCount());
+            assertEquals(e.getRefreshTimestamp(), a.getRefreshTimestamp());
+        }
+    }
+}
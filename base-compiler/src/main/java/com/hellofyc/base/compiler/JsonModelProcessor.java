@@ -0,0 +1,456 @@
+package com.hellofyc.base.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a JsonAdapter for every class annotated with com.hellofyc.base.json.JsonModel.
+ * The annotations are referred to by name so this module does not depend on the android
+ * library holding them.
+ *
+ * Created on 2016/7/14.
+ *
+ * @author Yucun Fang
+ */
+public class JsonModelProcessor extends AbstractProcessor {
+
+    private static final String JSON_PACKAGE = "com.hellofyc.base.json";
+    private static final String JSON_MODEL = JSON_PACKAGE + ".JsonModel";
+    private static final String JSON_NAME = JSON_PACKAGE + ".JsonName";
+    private static final String JSON_ADAPTER = JSON_PACKAGE + ".JsonAdapter";
+    private static final String JSON_READER = JSON_PACKAGE + ".JsonReader";
+    private static final String JSON_WRITER = JSON_PACKAGE + ".JsonWriter";
+    private static final String JSON_TOKEN = JSON_PACKAGE + ".JsonToken";
+    private static final String ADAPTER_SUFFIX = "_JsonAdapter";
+
+    private static final String INDENT = "    ";
+
+    private Elements mElements;
+    private Types mTypes;
+    private Messager mMessager;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(JSON_MODEL);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        mElements = processingEnv.getElementUtils();
+        mTypes = processingEnv.getTypeUtils();
+        mMessager = processingEnv.getMessager();
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@JsonModel is only allowed on classes");
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                if (isValidModel(type)) {
+                    generate(type);
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidModel(TypeElement type) {
+        Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.ABSTRACT)) {
+            error(type, "@JsonModel class must not be private or abstract");
+            return false;
+        }
+        if (type.getNestingKind().isNested() && !modifiers.contains(Modifier.STATIC)) {
+            error(type, "@JsonModel nested class must be static");
+            return false;
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            error(type, "@JsonModel class must not be generic");
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(type, "@JsonModel class needs a non-private no-arg constructor");
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        String packageName = getPackageName(type);
+        String adapterName = getAdapterSimpleName(type);
+        String typeName = type.getQualifiedName().toString();
+
+        List<Property> properties = new ArrayList<>();
+        if (!collectProperties(type, packageName, properties)) return;
+
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("/**\n")
+                .append(" * Generated by ").append(JsonModelProcessor.class.getSimpleName())
+                .append(" from {@link ").append(typeName).append("}, do not edit.\n")
+                .append(" */\n")
+                .append("public final class ").append(adapterName)
+                .append(" extends ").append(JSON_ADAPTER).append('<').append(typeName).append("> {\n\n");
+
+        List<String> adapterFields = new ArrayList<>();
+        for (Property property : properties) {
+            if (property.adapterField != null && !adapterFields.contains(property.adapterField)) {
+                adapterFields.add(property.adapterField);
+                sb.append(INDENT).append("private static final ").append(JSON_ADAPTER)
+                        .append('<').append(property.adapterType).append("> ").append(property.adapterField)
+                        .append(" = new ").append(property.adapterClass).append("();\n\n");
+            }
+        }
+
+        sb.append(INDENT).append("@Override\n")
+                .append(INDENT).append("public ").append(typeName).append(" read(").append(JSON_READER)
+                .append(" reader) throws java.io.IOException {\n")
+                .append(INDENT).append(INDENT).append("if (reader.peek() == ").append(JSON_TOKEN)
+                .append(".NULL) return readNull(reader);\n\n")
+                .append(INDENT).append(INDENT).append(typeName).append(" model = new ").append(typeName).append("();\n")
+                .append(INDENT).append(INDENT).append("reader.beginObject();\n")
+                .append(INDENT).append(INDENT).append("while (reader.hasNext()) {\n")
+                .append(INDENT).append(INDENT).append(INDENT).append("switch (reader.nextName()) {\n");
+
+        String caseIndent = INDENT + INDENT + INDENT + INDENT;
+        String bodyIndent = caseIndent + INDENT;
+        for (Property property : properties) {
+            sb.append(caseIndent).append("case \"").append(escape(property.jsonName)).append("\":\n");
+            if (property.primitive) {
+                sb.append(bodyIndent).append("if (reader.peek() == ").append(JSON_TOKEN).append(".NULL) {\n")
+                        .append(bodyIndent).append(INDENT).append("reader.nextNull();\n")
+                        .append(bodyIndent).append("} else {\n")
+                        .append(bodyIndent).append(INDENT).append(property.assign()).append('\n')
+                        .append(bodyIndent).append("}\n");
+            } else {
+                sb.append(bodyIndent).append(property.assign()).append('\n');
+            }
+            sb.append(bodyIndent).append("break;\n");
+        }
+        sb.append(caseIndent).append("default:\n")
+                .append(bodyIndent).append("reader.skipValue();\n")
+                .append(bodyIndent).append("break;\n")
+                .append(INDENT).append(INDENT).append(INDENT).append("}\n")
+                .append(INDENT).append(INDENT).append("}\n")
+                .append(INDENT).append(INDENT).append("reader.endObject();\n")
+                .append(INDENT).append(INDENT).append("return model;\n")
+                .append(INDENT).append("}\n\n");
+
+        sb.append(INDENT).append("@Override\n")
+                .append(INDENT).append("public void write(").append(JSON_WRITER).append(" writer, ")
+                .append(typeName).append(" model) throws java.io.IOException {\n")
+                .append(INDENT).append(INDENT).append("if (model == null) {\n")
+                .append(INDENT).append(INDENT).append(INDENT).append("writer.nullValue();\n")
+                .append(INDENT).append(INDENT).append(INDENT).append("return;\n")
+                .append(INDENT).append(INDENT).append("}\n")
+                .append(INDENT).append(INDENT).append("writer.beginObject();\n");
+        for (Property property : properties) {
+            sb.append(INDENT).append(INDENT).append("writer.name(\"").append(escape(property.jsonName)).append("\");\n")
+                    .append(INDENT).append(INDENT).append(property.write()).append('\n');
+        }
+        sb.append(INDENT).append(INDENT).append("writer.endObject();\n")
+                .append(INDENT).append("}\n")
+                .append("}\n");
+
+        String qualifiedAdapterName = packageName.isEmpty() ? adapterName : packageName + "." + adapterName;
+        Writer writer = null;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedAdapterName, type);
+            writer = file.openWriter();
+            writer.write(sb.toString());
+        } catch (IOException e) {
+            error(type, "Unable to write " + qualifiedAdapterName + ": " + e.getMessage());
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the fields of the class and its superclasses, subclass fields first.
+     *
+     * @return false if an error was reported
+     */
+    private boolean collectProperties(TypeElement type, String packageName, List<Property> properties) {
+        Set<String> names = new HashSet<>();
+        boolean valid = true;
+        TypeElement current = type;
+        while (current != null) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) continue;
+
+                Property property = createProperty(field, current, packageName);
+                if (property == null) {
+                    valid = false;
+                } else if (!names.add(property.jsonName)) {
+                    error(field, "Duplicate JSON name \"" + property.jsonName + "\"");
+                    valid = false;
+                } else {
+                    properties.add(property);
+                }
+            }
+            current = getBindableSuperclass(current);
+        }
+        return valid;
+    }
+
+    private TypeElement getBindableSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        String name = element.getQualifiedName().toString();
+        if (name.startsWith("java.") || name.startsWith("android.")) return null;
+        return element;
+    }
+
+    private Property createProperty(VariableElement field, TypeElement owner, String packageName) {
+        Property property = new Property();
+        property.jsonName = getJsonName(field);
+
+        TypeMirror fieldType = field.asType();
+        if (!resolveReader(field, fieldType, property)) return null;
+
+        String fieldName = field.getSimpleName().toString();
+        if (field.getModifiers().contains(Modifier.FINAL)) {
+            error(field, "@JsonModel field must not be final, mark it transient to skip it");
+            return null;
+        }
+        if (isAccessible(field, packageName)) {
+            property.target = "model." + fieldName;
+            return property;
+        }
+
+        String capitalized = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        String setterName = "set" + capitalized;
+        String getterName = "get" + capitalized;
+        String isGetterName = "is" + capitalized;
+        for (ExecutableElement method : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.STATIC) || !isAccessible(method, packageName)) continue;
+
+            String name = method.getSimpleName().toString();
+            List<? extends VariableElement> parameters = method.getParameters();
+            if (name.equals(setterName) && parameters.size() == 1
+                    && mTypes.isSameType(parameters.get(0).asType(), fieldType)) {
+                property.setter = setterName;
+            } else if ((name.equals(getterName) || name.equals(isGetterName) && fieldType.getKind() == TypeKind.BOOLEAN)
+                    && parameters.isEmpty() && mTypes.isSameType(method.getReturnType(), fieldType)) {
+                property.getter = name;
+            }
+        }
+        if (property.setter == null || property.getter == null) {
+            error(field, "@JsonModel field is private and has no accessible "
+                    + (property.setter == null ? setterName + "(" + fieldType + ")" : getterName + "()"));
+            return null;
+        }
+        return property;
+    }
+
+    /**
+     * Fills in how a value of the type is read and written.
+     */
+    private boolean resolveReader(Element field, TypeMirror type, Property property) {
+        switch (type.getKind()) {
+            case INT:
+                return primitive(property, "reader.nextInt()");
+            case LONG:
+                return primitive(property, "reader.nextLong()");
+            case DOUBLE:
+                return primitive(property, "reader.nextDouble()");
+            case FLOAT:
+                return primitive(property, "(float) reader.nextDouble()");
+            case SHORT:
+                return primitive(property, "(short) reader.nextInt()");
+            case BYTE:
+                return primitive(property, "(byte) reader.nextInt()");
+            case BOOLEAN:
+                return primitive(property, "reader.nextBoolean()");
+            case DECLARED:
+                break;
+            default:
+                error(field, "Unsupported @JsonModel field type " + type);
+                return false;
+        }
+
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String name = element.getQualifiedName().toString();
+        switch (name) {
+            case "java.lang.String":
+                return value(property, JSON_ADAPTER + ".STRING");
+            case "java.lang.Integer":
+                return value(property, JSON_ADAPTER + ".INTEGER");
+            case "java.lang.Long":
+                return value(property, JSON_ADAPTER + ".LONG");
+            case "java.lang.Double":
+                return value(property, JSON_ADAPTER + ".DOUBLE");
+            case "java.lang.Float":
+                return value(property, JSON_ADAPTER + ".FLOAT");
+            case "java.lang.Boolean":
+                return value(property, JSON_ADAPTER + ".BOOLEAN");
+            case "java.util.List":
+                List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+                if (arguments.size() != 1 || !resolveReader(field, arguments.get(0), property)
+                        || property.adapter == null || property.list) {
+                    error(field, "Unsupported @JsonModel field type " + type);
+                    return false;
+                }
+                property.list = true;
+                property.read = property.adapter + ".readList(reader)";
+                property.write = property.adapter + ".writeList(writer, %s);";
+                return true;
+            default:
+                break;
+        }
+
+        if (!hasAnnotation(element, JSON_MODEL)) {
+            error(field, "Unsupported @JsonModel field type " + type + ", annotate it with @JsonModel");
+            return false;
+        }
+        String adapterPackage = getPackageName(element);
+        String adapterName = getAdapterSimpleName(element);
+        property.adapterType = name;
+        property.adapterClass = adapterPackage.isEmpty() ? adapterName : adapterPackage + "." + adapterName;
+        property.adapterField = "ADAPTER_" + name.replace('.', '_').toUpperCase();
+        property.adapter = property.adapterField;
+        property.read = property.adapter + ".read(reader)";
+        property.write = property.adapter + ".write(writer, %s);";
+        return true;
+    }
+
+    private static boolean primitive(Property property, String read) {
+        property.primitive = true;
+        property.read = read;
+        property.write = "writer.value(%s);";
+        return true;
+    }
+
+    private static boolean value(Property property, String adapter) {
+        property.adapter = adapter;
+        property.read = adapter + ".read(reader)";
+        property.write = "writer.value(%s);";
+        return true;
+    }
+
+    private boolean isAccessible(Element member, String packageName) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) return false;
+        if (modifiers.contains(Modifier.PUBLIC)) return true;
+        return getPackageName(member).equals(packageName);
+    }
+
+    private String getJsonName(VariableElement field) {
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if (!annotation.getQualifiedName().contentEquals(JSON_NAME)) continue;
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    return String.valueOf(entry.getValue().getValue());
+                }
+            }
+        }
+        return field.getSimpleName().toString();
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotation.getQualifiedName().contentEquals(annotationName)) return true;
+        }
+        return false;
+    }
+
+    private String getPackageName(Element element) {
+        PackageElement packageElement = mElements.getPackageOf(element);
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    /**
+     * Outer.Inner becomes Outer_Inner_JsonAdapter, matching Json#adapter(Class).
+     */
+    private String getAdapterSimpleName(TypeElement type) {
+        String packageName = getPackageName(type);
+        String qualifiedName = type.getQualifiedName().toString();
+        String simpleName = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+        return simpleName.replace('.', '_') + ADAPTER_SUFFIX;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        mMessager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static class Property {
+        String jsonName;
+        boolean primitive;
+        boolean list;
+        String read;
+        /** Statement writing the value, %s stands for it. */
+        String write;
+        /** Adapter reading a boxed, String or nested @JsonModel value, or the List element. */
+        String adapter;
+        /** Direct field access, null when the setter and getter are used. */
+        String target;
+        String setter;
+        String getter;
+        /** Static adapter of a nested @JsonModel type, if any. */
+        String adapterField;
+        String adapterType;
+        String adapterClass;
+
+        String assign() {
+            return target != null ? target + " = " + read + ";" : "model." + setter + "(" + read + ");";
+        }
+
+        String write() {
+            return String.format(write, target != null ? target : "model." + getter + "()");
+        }
+    }
+}
@@ -0,0 +1,7 @@
+# Shipped to apps using this library through consumerProguardFiles.
+
+# Generated JSON adapters are looked up by the name of their model, see com.hellofyc.base.json.Json
+-keepnames @com.hellofyc.base.json.JsonModel class *
+-keep class **_JsonAdapter {
+    <init>();
+}
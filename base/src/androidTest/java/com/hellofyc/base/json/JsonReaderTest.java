@@ -0,0 +1,291 @@
+package com.hellofyc.base.json;
+
+import android.test.AndroidTestCase;
+
+import com.hellofyc.base.util.JsonUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokens, numbers and errors of {@link JsonReader}, and {@link JsonUtils#parse(String)}
+ * checked against the org.json tree it used to be built from.
+ */
+public class JsonReaderTest extends AndroidTestCase {
+
+    public void testEscapes() throws IOException {
+        JsonReader reader = reader("{\"a\":\"\\\"\\\\\\/\\b\\f\\n\\r\\t\",\"u\":\"\\u0041\\u00e9\\u4E2D\",\"q\":\"it\\'s\"}");
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        assertEquals("\"\\/\b\f\n\r\t", reader.nextString());
+        assertEquals("u", reader.nextName());
+        assertEquals("A\u00e9\u4e2d", reader.nextString());
+        assertEquals("q", reader.nextName());
+        assertEquals("it's", reader.nextString());
+        reader.endObject();
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    public void testSurrogates() throws IOException {
+        String emoji = new String(Character.toChars(0x1f600));
+        JsonReader reader = reader("[\"\\ud83d\\ude00\",\"" + emoji + "\",\"a\\uD83D\\uDE00b\"]");
+        reader.beginArray();
+        assertEquals(emoji, reader.nextString());
+        assertEquals(emoji, reader.nextString());
+        assertEquals("a" + emoji + "b", reader.nextString());
+        reader.endArray();
+    }
+
+    public void testNested() throws IOException {
+        JsonReader reader = reader(" {\"a\" : [1, [2, [3, {}]], {\"b\": {\"c\": []}}],\n\"d\":{} } ");
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.beginArray();
+        assertEquals(1, reader.nextInt());
+        reader.beginArray();
+        assertEquals(2, reader.nextInt());
+        reader.beginArray();
+        assertEquals(3, reader.nextInt());
+        reader.beginObject();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        reader.endArray();
+        reader.endArray();
+        reader.beginObject();
+        assertEquals("b", reader.nextName());
+        reader.beginObject();
+        assertEquals("c", reader.nextName());
+        reader.beginArray();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        reader.endObject();
+        reader.endObject();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("d", reader.nextName());
+        reader.beginObject();
+        reader.endObject();
+        reader.endObject();
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    public void testSkipValue() throws IOException {
+        JsonReader reader = reader("{\"skip\":{\"a\":[1,{\"b\":\"}]\\\"\"}],\"c\":null},\"name\":true,"
+                + "\"array\":[[1,2],\"x\\\\\",-1.5e3,false],\"last\":7}");
+        reader.beginObject();
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        // a name is skipped with its value
+        reader.skipValue();
+        assertEquals("array", reader.nextName());
+        reader.beginArray();
+        reader.skipValue();
+        reader.skipValue();
+        reader.skipValue();
+        assertFalse(reader.nextBoolean());
+        reader.endArray();
+        assertEquals("last", reader.nextName());
+        assertEquals(7, reader.nextInt());
+        reader.endObject();
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    public void testLongValues() throws IOException {
+        JsonReader reader = reader("[0,-0,9223372036854775807,-9223372036854775808,9223372036854775808,"
+                + "-9223372036854775809,1.5,1e999999999,\"42\",1e3,2.50e1,0.0,2147483648]");
+        reader.beginArray();
+        assertEquals(0, reader.nextLong());
+        assertEquals(0, reader.nextLong());
+        assertEquals(Long.MAX_VALUE, reader.nextLong());
+        assertEquals(Long.MIN_VALUE, reader.nextLong());
+        assertNextLongFails(reader);
+        assertNextLongFails(reader);
+        assertNextLongFails(reader);
+        assertNextLongFails(reader);
+        assertEquals(42, reader.nextLong());
+        assertEquals(1000, reader.nextLong());
+        assertEquals(25, reader.nextLong());
+        assertEquals(0, reader.nextLong());
+        try {
+            reader.nextInt();
+            fail("2147483648 read as an int");
+        } catch (NumberFormatException expected) {
+        }
+        reader.endArray();
+    }
+
+    public void testNumberTypes() throws IOException {
+        JsonReader reader = reader("[1,-2147483648,2147483648,9223372036854775808,1.5,-2E+2,1.5e-3,0.0]");
+        reader.beginArray();
+        assertEquals(Integer.valueOf(1), reader.nextNumber());
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), reader.nextNumber());
+        assertEquals(Long.valueOf(2147483648L), reader.nextNumber());
+        // overflows a long
+        assertEquals(Double.valueOf(9223372036854775808.0), reader.nextNumber());
+        assertEquals(Double.valueOf(1.5), reader.nextNumber());
+        assertEquals(Double.valueOf(-200), reader.nextNumber());
+        assertEquals(0.0015, reader.nextDouble(), 0);
+        assertEquals("0.0", reader.nextString());
+        reader.endArray();
+    }
+
+    public void testLongStringsAcrossTheBuffer() throws IOException {
+        StringBuilder json = new StringBuilder("[\"");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            json.append("abc\\n\\u00e9");
+            expected.append("abc\n\u00e9");
+        }
+        json.append("\",\"");
+        for (int i = 0; i < 20000; i++) {
+            json.append('x');
+        }
+        json.append("\",12345678901]");
+
+        JsonReader reader = reader(json.toString());
+        reader.beginArray();
+        assertEquals(expected.toString(), reader.nextString());
+        reader.skipValue();
+        assertEquals(12345678901L, reader.nextLong());
+        reader.endArray();
+    }
+
+    public void testMalformed() throws IOException {
+        String[] inputs = {"{\"a\":1,}", "[1,]", "{\"a\" 1}", "{a:1}", "[1 2]", "{} {}", "[\"\\x\"]",
+                "[\"\\u12g4\"]", "[tru]", "[trueX]", "[nul]", "[-]", "[1.2.3]", "[\"a]", "[1}"};
+        for (String input : inputs) {
+            try {
+                readDocument(input);
+                fail("Accepted " + input);
+            } catch (MalformedJsonException expected) {
+            }
+        }
+    }
+
+    public void testTruncated() throws IOException {
+        String[] inputs = {"", "{", "{\"a\"", "{\"a\":", "[1,"};
+        for (String input : inputs) {
+            try {
+                readDocument(input);
+                fail("Accepted " + input);
+            } catch (EOFException expected) {
+            }
+        }
+    }
+
+    public void testParseMatchesOrgJson() throws JSONException {
+        String[] inputs = {
+                "{}",
+                "{\"string\":\"a\\\"b\\u00e9\",\"int\":-12,\"long\":12345678901,\"double\":1.25,\"exp\":1e2,"
+                        + "\"big\":12345678901234567890,\"true\":true,\"false\":false,\"null\":null}",
+                "{\"list\":[1,\"two\",[3,[4]],{\"five\":5},null,[]],\"object\":{\"nested\":{\"deep\":[{}]}}}",
+                "{\"page\":{\"total\":2,\"items\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]}}",
+        };
+        for (String input : inputs) {
+            assertEquals(input, toMap(new JSONObject(input)), JsonUtils.parse(input));
+        }
+    }
+
+    public void testParseRejects() {
+        String[] inputs = {"[1]", "\"text\"", "{\"a\":", "not json"};
+        for (String input : inputs) {
+            assertNull(input, JsonUtils.parse(input));
+        }
+        assertNull(JsonUtils.parse((String) null));
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+
+    /**
+     * The value is consumed either way.
+     */
+    private static void assertNextLongFails(JsonReader reader) throws IOException {
+        try {
+            long value = reader.nextLong();
+            fail("Read " + value);
+        } catch (NumberFormatException expected) {
+        }
+    }
+
+    /**
+     * Reads the whole document the way JsonUtils does, including its end.
+     */
+    private static void readDocument(String json) throws IOException {
+        JsonReader reader = reader(json);
+        readValue(reader);
+        reader.peek();
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                List<Object> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) list.add(readValue(reader));
+                reader.endArray();
+                return list;
+            case BEGIN_OBJECT:
+                Map<String, Object> map = new HashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) map.put(reader.nextName(), readValue(reader));
+                reader.endObject();
+                return map;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return reader.nextNumber();
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                throw new EOFException("Expected a value but was " + reader.peek());
+        }
+    }
+
+    /**
+     * The tree JsonUtils.parse built from org.json, with null kept and numbers as Integer,
+     * Long or Double.
+     */
+    private static Map<String, Object> toMap(JSONObject object) throws JSONException {
+        Map<String, Object> map = new HashMap<>();
+        Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, toValue(object.get(key)));
+        }
+        return map;
+    }
+
+    private static Object toValue(Object value) throws JSONException {
+        if (value == JSONObject.NULL) return null;
+        if (value instanceof JSONObject) return toMap((JSONObject) value);
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            Object[] list = new Object[array.length()];
+            for (int i = 0; i < list.length; i++) {
+                list[i] = toValue(array.get(i));
+            }
+            return new ArrayList<>(Arrays.asList(list));
+        }
+        if (value instanceof Number && !(value instanceof Double)) {
+            long number = ((Number) value).longValue();
+            return number == (int) number ? (Object) (int) number : (Object) number;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,173 @@
+package com.hellofyc.base.net.http;
+
+import android.test.AndroidTestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Which concurrent requests {@link SingleFlight} lets share a response, raced against a
+ * local server that holds every response until released.
+ */
+public class SingleFlightTest extends AndroidTestCase {
+
+    private static final String PIN = "sha256/AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=";
+
+    private ServerSocket mServerSocket;
+    private Thread mServerThread;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final CountDownLatch mFirstRequest = new CountDownLatch(1);
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private String mUrl;
+    private HttpEngine mEngine;
+    private SingleFlight mSingleFlight;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mUrl = "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/data";
+        mServerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        });
+        mServerThread.start();
+        mSingleFlight = new SingleFlight();
+        mEngine = new HttpEngine().setSingleFlight(mSingleFlight);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mRelease.countDown();
+        mServerSocket.close();
+        mServerThread.join(1000);
+        super.tearDown();
+    }
+
+    public void testEqualRequestsShareOneResponse() throws Exception {
+        RequestThread leader = start(HttpUtils.create());
+        assertTrue(mFirstRequest.await(5, TimeUnit.SECONDS));
+        RequestThread follower = start(HttpUtils.create());
+        // gives the follower time to join the leader's flight
+        Thread.sleep(500);
+        mRelease.countDown();
+
+        assertEquals("ok", leader.getResponse().text);
+        assertEquals("ok", follower.getResponse().text);
+        assertEquals(1, mRequestCount.get());
+        assertEquals(1, mSingleFlight.getCoalescedCount());
+    }
+
+    public void testPinnedRequestDoesNotJoinUnpinnedOne() throws Exception {
+        RequestThread unpinned = start(HttpUtils.create());
+        assertTrue(mFirstRequest.await(5, TimeUnit.SECONDS));
+        HttpsUtils pinnedRequest = HttpsUtils.create()
+                .setCertificatePinner(CertificatePinner.create().add("127.0.0.1", PIN));
+        RequestThread pinned = start(pinnedRequest);
+        waitForRequests(2);
+        mRelease.countDown();
+
+        unpinned.getResponse();
+        pinned.getResponse();
+        assertEquals(2, mRequestCount.get());
+        assertEquals(0, mSingleFlight.getCoalescedCount());
+    }
+
+    public void testDifferentSettingsDoNotShareResponses() throws Exception {
+        RequestThread first = start(HttpUtils.create());
+        assertTrue(mFirstRequest.await(5, TimeUnit.SECONDS));
+        RequestThread second = start(HttpUtils.create().setUserAgent("Other"));
+        waitForRequests(2);
+        mRelease.countDown();
+
+        first.getResponse();
+        second.getResponse();
+        assertEquals(0, mSingleFlight.getCoalescedCount());
+    }
+
+    private RequestThread start(HttpUtils request) {
+        request.setMethod(Method.GET).setUrl(mUrl).setEngine(mEngine);
+        RequestThread thread = new RequestThread(request);
+        thread.start();
+        return thread;
+    }
+
+    private void waitForRequests(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mRequestCount.get() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("The server saw " + mRequestCount.get() + " of " + count + " requests");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void serve() {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    respond(socket);
+                }
+            }).start();
+        }
+    }
+
+    private void respond(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                // skips the request headers
+            }
+            mRequestCount.incrementAndGet();
+            mFirstRequest.countDown();
+            mRelease.await();
+            OutputStream out = socket.getOutputStream();
+            out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nok".getBytes("US-ASCII"));
+            out.flush();
+        } catch (IOException | InterruptedException ignored) {
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static class RequestThread extends Thread {
+        private final HttpUtils mRequest;
+        private volatile HttpResponse mResponse;
+
+        RequestThread(HttpUtils request) {
+            mRequest = request;
+        }
+
+        @Override
+        public void run() {
+            mResponse = mRequest.request();
+        }
+
+        HttpResponse getResponse() throws InterruptedException {
+            join(10 * 1000);
+            assertNotNull("No response", mResponse);
+            return mResponse;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.hellofyc.base.util;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Round trips of {@link AesGcmOutputStream} / {@link AesGcmInputStream}, and the tampered,
+ * truncated and reordered streams they must reject.
+ */
+public class AesGcmStreamTest extends AndroidTestCase {
+
+    private static final int SEGMENT_SIZE = 64;
+    private static final int HEADER_SIZE = 4 + 4 + 32 + 7;
+    private static final int SEGMENT_LENGTH = SEGMENT_SIZE + 16;
+
+    private final SecretKeySpec mKey = new SecretKeySpec(new byte[16], "AES");
+    private final Random mRandom = new Random(1);
+
+    public void testRoundTrip() throws IOException {
+        int[] sizes = {0, 1, SEGMENT_SIZE - 1, SEGMENT_SIZE, SEGMENT_SIZE + 1, 3 * SEGMENT_SIZE + 5};
+        for (int size : sizes) {
+            byte[] plain = randomBytes(size);
+            assertTrue("size " + size, Arrays.equals(plain, decrypt(encrypt(plain), mKey)));
+        }
+    }
+
+    public void testRoundTripSingleBytes() throws IOException {
+        byte[] plain = randomBytes(2 * SEGMENT_SIZE + 3);
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        OutputStream out = new AesGcmOutputStream(byteStream, mKey, SEGMENT_SIZE);
+        for (byte b : plain) out.write(b);
+        out.close();
+
+        InputStream in = new AesGcmInputStream(new ByteArrayInputStream(byteStream.toByteArray()), mKey);
+        for (byte b : plain) assertEquals(b & 0xff, in.read());
+        assertEquals(-1, in.read());
+    }
+
+    public void testStreamsUseFreshSaltAndNonce() throws IOException {
+        byte[] plain = randomBytes(SEGMENT_SIZE);
+        byte[] first = encrypt(plain);
+        byte[] second = encrypt(plain);
+        assertFalse(Arrays.equals(Arrays.copyOfRange(first, 8, HEADER_SIZE), Arrays.copyOfRange(second, 8, HEADER_SIZE)));
+        assertFalse(Arrays.equals(Arrays.copyOfRange(first, HEADER_SIZE, first.length),
+                Arrays.copyOfRange(second, HEADER_SIZE, second.length)));
+    }
+
+    public void testWrongKeyFails() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(10));
+        assertFails(encrypted, new SecretKeySpec(new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, "AES"));
+    }
+
+    public void testFlippedByteFails() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(2 * SEGMENT_SIZE + 10));
+        // segment size, salt, nonce prefix, and a byte of every segment
+        int[] positions = {7, 8, HEADER_SIZE - 1, HEADER_SIZE, HEADER_SIZE + SEGMENT_LENGTH + 3, encrypted.length - 1};
+        for (int position : positions) {
+            byte[] tampered = encrypted.clone();
+            tampered[position] ^= 1;
+            assertFails(tampered, mKey);
+        }
+    }
+
+    public void testTruncatedFails() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(2 * SEGMENT_SIZE + 10));
+        // inside the header, after a full segment, and inside a segment
+        int[] lengths = {HEADER_SIZE - 1, HEADER_SIZE, HEADER_SIZE + SEGMENT_LENGTH, HEADER_SIZE + 2 * SEGMENT_LENGTH,
+                HEADER_SIZE + SEGMENT_LENGTH + 5, encrypted.length - 1};
+        for (int length : lengths) {
+            assertFails(Arrays.copyOf(encrypted, length), mKey);
+        }
+    }
+
+    public void testReorderedSegmentsFail() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(3 * SEGMENT_SIZE));
+        byte[] reordered = encrypted.clone();
+        System.arraycopy(encrypted, HEADER_SIZE, reordered, HEADER_SIZE + SEGMENT_LENGTH, SEGMENT_LENGTH);
+        System.arraycopy(encrypted, HEADER_SIZE + SEGMENT_LENGTH, reordered, HEADER_SIZE, SEGMENT_LENGTH);
+        assertFails(reordered, mKey);
+    }
+
+    public void testAppendedSegmentFails() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(2 * SEGMENT_SIZE));
+        byte[] appended = Arrays.copyOf(encrypted, encrypted.length + SEGMENT_LENGTH);
+        System.arraycopy(encrypted, HEADER_SIZE, appended, encrypted.length, SEGMENT_LENGTH);
+        assertFails(appended, mKey);
+    }
+
+    public void testSkip() throws IOException {
+        byte[] plain = randomBytes(5 * SEGMENT_SIZE + 7);
+        byte[] encrypted = encrypt(plain);
+        // within a segment, across one, over several whole ones, and past the end
+        long[][] cases = {{3, 10}, {SEGMENT_SIZE - 2, 5}, {2 * SEGMENT_SIZE, 4}, {3 * SEGMENT_SIZE + 1, 2}};
+        for (long[] skips : cases) {
+            InputStream in = new AesGcmInputStream(new ByteArrayInputStream(encrypted), mKey);
+            int position = 0;
+            for (long skip : skips) {
+                assertEquals(skip, in.skip(skip));
+                position += skip;
+                assertEquals(plain[position] & 0xff, in.read());
+                position++;
+            }
+            in.close();
+        }
+
+        InputStream in = new AesGcmInputStream(new ByteArrayInputStream(encrypted), mKey);
+        assertEquals(plain.length, in.skip(plain.length + 100));
+        assertEquals(-1, in.read());
+    }
+
+    public void testSkipStillAuthenticatesTheLastSegment() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(3 * SEGMENT_SIZE + 7));
+        byte[] tampered = encrypted.clone();
+        tampered[tampered.length - 1] ^= 1;
+        InputStream in = new AesGcmInputStream(new ByteArrayInputStream(tampered), mKey);
+        try {
+            in.skip(3 * SEGMENT_SIZE + 7);
+            fail("Tampered last segment was skipped");
+        } catch (IOException expected) {
+        }
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        mRandom.nextBytes(bytes);
+        return bytes;
+    }
+
+    private byte[] encrypt(byte[] plain) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        OutputStream out = new AesGcmOutputStream(byteStream, mKey, SEGMENT_SIZE);
+        // uneven writes across the segment boundaries
+        for (int offset = 0; offset < plain.length; offset += 37) {
+            out.write(plain, offset, Math.min(37, plain.length - offset));
+        }
+        out.close();
+        return byteStream.toByteArray();
+    }
+
+    private static byte[] decrypt(byte[] encrypted, SecretKeySpec key) throws IOException {
+        InputStream in = new AesGcmInputStream(new ByteArrayInputStream(encrypted), key);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[50];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static void assertFails(byte[] encrypted, SecretKeySpec key) {
+        try {
+            decrypt(encrypted, key);
+            fail("Accepted a bad stream of " + encrypted.length + " bytes");
+        } catch (IOException expected) {
+        }
+    }
+}
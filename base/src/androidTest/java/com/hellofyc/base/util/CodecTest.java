@@ -0,0 +1,159 @@
+package com.hellofyc.base.util;
+
+import android.test.AndroidTestCase;
+import android.util.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Round trips and bad input of {@link HexCodec} and {@link Base64Codec}, checked against
+ * android.util.Base64.
+ */
+public class CodecTest extends AndroidTestCase {
+
+    private final Random mRandom = new Random(1);
+
+    public void testHexRoundTrip() {
+        byte[] all = new byte[256];
+        for (int i = 0; i < all.length; i++) all[i] = (byte) i;
+        String hex = HexCodec.encodeToString(all);
+        assertEquals("000102", hex.substring(0, 6));
+        assertEquals("fdfeff", hex.substring(hex.length() - 6));
+        assertTrue(Arrays.equals(all, HexCodec.decode(hex)));
+        assertTrue(Arrays.equals(all, HexCodec.decode(hex.toUpperCase())));
+        assertEquals("", HexCodec.encodeToString(new byte[0]));
+    }
+
+    public void testHexBadInput() {
+        assertDecodeFails("abc");
+        assertDecodeFails("0g");
+        assertDecodeFails("é0");
+    }
+
+    public void testBase64MatchesAndroid() {
+        for (int length = 0; length <= 300; length++) {
+            byte[] data = randomBytes(length);
+            String wrapped = Base64.encodeToString(data, Base64.DEFAULT);
+            String unwrapped = Base64.encodeToString(data, Base64.NO_WRAP);
+            assertEquals(wrapped, Base64Codec.encodeToString(data, true));
+            assertEquals(unwrapped, Base64Codec.encodeToString(data, false));
+            assertEquals(wrapped.length(), Base64Codec.encodedLength(length, true));
+            assertTrue(Arrays.equals(data, Base64Codec.decode(wrapped)));
+            assertTrue(Arrays.equals(data, Base64Codec.decode(unwrapped)));
+        }
+    }
+
+    public void testBase64WrapBoundary() {
+        // 57 bytes make exactly one line of 76 chars
+        String oneLine = Base64Codec.encodeToString(randomBytes(57), true);
+        assertEquals(77, oneLine.length());
+        assertEquals('\n', oneLine.charAt(76));
+
+        String twoLines = Base64Codec.encodeToString(randomBytes(58), true);
+        assertEquals(76 + 1 + 4 + 1, twoLines.length());
+        assertEquals('\n', twoLines.charAt(76));
+        assertEquals('\n', twoLines.charAt(twoLines.length() - 1));
+
+        String exactTwoLines = Base64Codec.encodeToString(randomBytes(114), true);
+        assertEquals(2 * 77, exactTwoLines.length());
+        assertEquals(-1, exactTwoLines.indexOf("\n\n"));
+    }
+
+    public void testBase64ChunkedEncoder() {
+        byte[] data = randomBytes(500);
+        for (boolean wrap : new boolean[]{false, true}) {
+            for (int chunk = 1; chunk <= 8; chunk++) {
+                Base64Codec.Encoder encoder = new Base64Codec.Encoder(wrap);
+                byte[] out = new byte[Base64Codec.encodedLength(data.length, wrap)];
+                int n = 0;
+                for (int offset = 0; offset < data.length; offset += chunk) {
+                    int length = Math.min(chunk, data.length - offset);
+                    int written = encoder.update(data, offset, length, out, n);
+                    assertTrue(written <= encoder.maxOutputLength(length));
+                    n += written;
+                }
+                n += encoder.finish(out, n);
+                assertEquals(out.length, n);
+                assertTrue("chunk " + chunk, Arrays.equals(Base64Codec.encode(data, wrap), out));
+            }
+        }
+    }
+
+    public void testBase64ChunkedDecoder() {
+        byte[] data = randomBytes(500);
+        byte[] encoded = Base64Codec.encode(data, true);
+        for (int chunk = 1; chunk <= 8; chunk++) {
+            Base64Codec.Decoder decoder = new Base64Codec.Decoder();
+            byte[] out = new byte[data.length + 2];
+            int n = 0;
+            for (int offset = 0; offset < encoded.length; offset += chunk) {
+                n += decoder.update(encoded, offset, Math.min(chunk, encoded.length - offset), out, n);
+            }
+            n += decoder.finish(out, n);
+            assertEquals(data.length, n);
+            assertTrue("chunk " + chunk, Arrays.equals(data, Arrays.copyOf(out, n)));
+        }
+    }
+
+    public void testBase64Streams() throws IOException {
+        byte[] data = randomBytes(1000);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        OutputStream out = Base64Codec.newEncodingStream(encoded, true);
+        for (int offset = 0; offset < data.length; offset += 33) {
+            out.write(data, offset, Math.min(33, data.length - offset));
+        }
+        out.close();
+        assertEquals(Base64.encodeToString(data, Base64.DEFAULT), encoded.toString("US-ASCII"));
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        out = Base64Codec.newDecodingStream(decoded);
+        byte[] bytes = encoded.toByteArray();
+        for (byte b : bytes) out.write(b);
+        out.close();
+        assertTrue(Arrays.equals(data, decoded.toByteArray()));
+    }
+
+    public void testBase64SkipsCharsOutsideTheAlphabet() {
+        // android.util.Base64.DEFAULT skips them as well
+        String[] inputs = {"QU JD\r\n", "QU*JD", "QU-_JD", "QUéJD"};
+        for (String input : inputs) {
+            assertTrue(input, Arrays.equals(Base64.decode(input, Base64.DEFAULT), Base64Codec.decode(input)));
+            assertEquals("ABC", Base64Utils.decodeToString(input));
+        }
+    }
+
+    public void testBase64BadInput() {
+        // a lone char, padding too early, too much or too little of it, and data after it
+        String[] inputs = {"Q", "QUJDQ", "=QUJ", "Q===", "QQ===", "QQ=", "QQ==QUJD"};
+        for (String input : inputs) {
+            try {
+                Base64.decode(input, Base64.DEFAULT);
+                fail("android accepted " + input);
+            } catch (IllegalArgumentException expected) {
+            }
+            try {
+                Base64Codec.decode(input);
+                fail("Accepted " + input);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        mRandom.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void assertDecodeFails(String hex) {
+        try {
+            HexCodec.decode(hex);
+            fail("Accepted " + hex);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.hellofyc.base.util;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Persistence of {@link MmapKvStore}: reopening, encrypted values, recovery from torn and
+ * corrupt records, and compaction.
+ */
+public class MmapKvStoreTest extends AndroidTestCase {
+
+    private static final int DATA_END_OFFSET = 8;
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new File(getContext().getCacheDir(), "MmapKvStoreTest-" + getName() + ".kv");
+        delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete();
+        super.tearDown();
+    }
+
+    public void testReopenKeepsValues() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("string", "value");
+        values.put("int", 1);
+        values.put("long", Long.MAX_VALUE);
+        values.put("float", 1.5f);
+        values.put("boolean", true);
+        values.put("set", new HashSet<>(Arrays.asList("a", "b")));
+
+        MmapKvStore store = MmapKvStore.open(mFile, null);
+        assertTrue(store.isCreated());
+        store.apply(values, null);
+        store.put("removed", "x");
+        store.remove("removed");
+        store.close();
+
+        store = MmapKvStore.open(mFile, null);
+        assertFalse(store.isCreated());
+        assertEquals(values, store.getAll());
+        store.close();
+    }
+
+    public void testEncryptedValues() throws IOException {
+        MmapKvStore store = MmapKvStore.open(mFile, "password");
+        store.put("key", "secret value");
+        store.close();
+        assertFalse(new String(readFile(), "ISO-8859-1").contains("secret value"));
+
+        store = MmapKvStore.open(mFile, "password");
+        assertEquals("secret value", store.get("key"));
+        store.close();
+    }
+
+    public void testWrongPasswordKeepsRecords() {
+        MmapKvStore store = MmapKvStore.open(mFile, "password");
+        store.put("key", "secret value");
+        store.close();
+
+        store = MmapKvStore.open(mFile, "other");
+        assertNull(store.get("key"));
+        store.put("other", "value");
+        store.close();
+
+        store = MmapKvStore.open(mFile, "password");
+        assertEquals("secret value", store.get("key"));
+        store.close();
+    }
+
+    public void testTornRecordIsDropped() throws IOException {
+        MmapKvStore store = MmapKvStore.open(mFile, null);
+        store.put("first", "value");
+        store.close();
+        int firstEnd = readDataEnd();
+
+        store = MmapKvStore.open(mFile, null);
+        store.put("second", "value");
+        store.close();
+
+        // a crash in the middle of the second record
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(firstEnd + 5);
+        file.close();
+
+        store = MmapKvStore.open(mFile, null);
+        assertEquals("value", store.get("first"));
+        assertFalse(store.contains("second"));
+        store.put("third", "value");
+        store.close();
+        assertTrue(readDataEnd() > firstEnd);
+
+        store = MmapKvStore.open(mFile, null);
+        assertEquals("value", store.get("first"));
+        assertEquals("value", store.get("third"));
+        assertFalse(store.contains("second"));
+        store.close();
+    }
+
+    public void testCorruptRecordStopsLoading() throws IOException {
+        MmapKvStore store = MmapKvStore.open(mFile, null);
+        store.put("first", "value");
+        store.close();
+        int firstEnd = readDataEnd();
+
+        store = MmapKvStore.open(mFile, null);
+        store.put("second", "value");
+        store.put("third", "value");
+        store.close();
+
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.seek(firstEnd + 12);
+        int b = file.read();
+        file.seek(firstEnd + 12);
+        file.write(b ^ 1);
+        file.close();
+
+        store = MmapKvStore.open(mFile, null);
+        assertEquals("value", store.get("first"));
+        assertFalse(store.contains("second"));
+        assertFalse(store.contains("third"));
+        store.close();
+        assertEquals(firstEnd, readDataEnd());
+    }
+
+    public void testCompaction() throws IOException {
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+
+        MmapKvStore store = MmapKvStore.open(mFile, "password");
+        store.put("kept", "value");
+        for (int i = 0; i < 100; i++) {
+            store.put("overwritten", large + i);
+        }
+        store.close();
+        // about 100K were written, compaction keeps the log near its 16K threshold
+        assertTrue("data end " + readDataEnd(), readDataEnd() < 20 * 1024);
+        assertFalse(new File(mFile.getPath() + ".tmp").exists());
+
+        store = MmapKvStore.open(mFile, "password");
+        assertEquals("value", store.get("kept"));
+        assertEquals(large + 99, store.get("overwritten"));
+        store.close();
+    }
+
+    public void testClear() {
+        MmapKvStore store = MmapKvStore.open(mFile, null);
+        store.put("key", "value");
+        store.clear();
+        store.close();
+
+        store = MmapKvStore.open(mFile, null);
+        assertTrue(store.getAll().isEmpty());
+        store.close();
+    }
+
+    private int readDataEnd() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            file.seek(DATA_END_OFFSET);
+            return file.readInt();
+        } finally {
+            file.close();
+        }
+    }
+
+    private byte[] readFile() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+            return bytes;
+        } finally {
+            file.close();
+        }
+    }
+
+    private void delete() {
+        mFile.delete();
+        new File(mFile.getPath() + ".tmp").delete();
+    }
+}
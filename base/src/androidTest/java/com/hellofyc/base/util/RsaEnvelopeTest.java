@@ -0,0 +1,127 @@
+package com.hellofyc.base.util;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Round trips of the {@link RSAUtils} envelope, and the tampered, truncated and PKCS#1
+ * wrapped envelopes it must reject.
+ */
+public class RsaEnvelopeTest extends AndroidTestCase {
+
+    private static final int MAGIC = 0x46524531;
+    private static final int KEY_HEADER_SIZE = 4 + 2;
+
+    private static KeyPair sKeyPair;
+    private static KeyPair sOtherKeyPair;
+
+    private final Random mRandom = new Random(1);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        if (sKeyPair == null) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(1024);
+            sKeyPair = generator.generateKeyPair();
+            sOtherKeyPair = generator.generateKeyPair();
+        }
+    }
+
+    public void testRoundTrip() {
+        int[] sizes = {0, 1, 1000, 100 * 1024 + 3};
+        for (int size : sizes) {
+            byte[] plain = randomBytes(size);
+            byte[] envelope = RSAUtils.encryptEnvelope(plain, sKeyPair.getPublic());
+            assertTrue("size " + size, Arrays.equals(plain, RSAUtils.decryptEnvelope(envelope, sKeyPair.getPrivate())));
+        }
+    }
+
+    public void testStreams() throws IOException {
+        byte[] plain = randomBytes(50 * 1024);
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        OutputStream out = RSAUtils.newEnvelopeOutputStream(byteStream, sKeyPair.getPublic());
+        for (int offset = 0; offset < plain.length; offset += 333) {
+            out.write(plain, offset, Math.min(333, plain.length - offset));
+        }
+        out.close();
+
+        InputStream in = RSAUtils.newEnvelopeInputStream(new ByteArrayInputStream(byteStream.toByteArray()),
+                sKeyPair.getPrivate());
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        IoUtils.copy(in, decrypted);
+        assertTrue(Arrays.equals(plain, decrypted.toByteArray()));
+    }
+
+    public void testEnvelopesUseFreshSessionKeys() {
+        byte[] plain = randomBytes(100);
+        byte[] first = RSAUtils.encryptEnvelope(plain, sKeyPair.getPublic());
+        byte[] second = RSAUtils.encryptEnvelope(plain, sKeyPair.getPublic());
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    public void testWrongKeyFails() {
+        byte[] envelope = RSAUtils.encryptEnvelope(randomBytes(100), sKeyPair.getPublic());
+        assertNull(RSAUtils.decryptEnvelope(envelope, sOtherKeyPair.getPrivate()));
+    }
+
+    public void testFlippedByteFails() {
+        byte[] envelope = RSAUtils.encryptEnvelope(randomBytes(1000), sKeyPair.getPublic());
+        int wrappedKeyLength = ((envelope[4] & 0xff) << 8) | (envelope[5] & 0xff);
+        int bodyStart = KEY_HEADER_SIZE + wrappedKeyLength;
+        // magic, key length, wrapped key, stream header and sealed data
+        int[] positions = {0, 5, KEY_HEADER_SIZE, bodyStart - 1, bodyStart, bodyStart + 50, envelope.length - 1};
+        for (int position : positions) {
+            byte[] tampered = envelope.clone();
+            tampered[position] ^= 1;
+            assertNull("position " + position, RSAUtils.decryptEnvelope(tampered, sKeyPair.getPrivate()));
+        }
+    }
+
+    public void testTruncatedFails() {
+        byte[] envelope = RSAUtils.encryptEnvelope(randomBytes(1000), sKeyPair.getPublic());
+        int[] lengths = {0, 3, KEY_HEADER_SIZE + 10, envelope.length / 2, envelope.length - 1};
+        for (int length : lengths) {
+            assertNull("length " + length, RSAUtils.decryptEnvelope(Arrays.copyOf(envelope, length),
+                    sKeyPair.getPrivate()));
+        }
+    }
+
+    public void testPkcs1WrappedKeyIsRejected() throws GeneralSecurityException, IOException {
+        byte[] sessionKey = randomBytes(16);
+        Cipher cipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, sKeyPair.getPublic());
+        byte[] wrappedKey = cipher.doFinal(sessionKey);
+
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(byteStream);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeShort(wrappedKey.length);
+        dataOut.write(wrappedKey);
+        OutputStream out = new AesGcmOutputStream(byteStream, new SecretKeySpec(sessionKey, "AES"));
+        out.write(randomBytes(100));
+        out.close();
+
+        assertNull(RSAUtils.decryptEnvelope(byteStream.toByteArray(), sKeyPair.getPrivate()));
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        mRandom.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -24,6 +24,9 @@ import android.os.Bundle;
 import android.os.Process;
 
 import com.hellofyc.base.app.activity.ActivityStack;
+import com.hellofyc.base.net.dns.CachingDns;
+import com.hellofyc.base.net.dns.Dns;
+import com.hellofyc.base.net.http.HttpEngine;
 import com.hellofyc.base.util.FLog;
 
 import java.util.List;
@@ -54,6 +57,49 @@ public class BaseApplication extends Application {
 		CrashHandler.startMonitor(getApplicationContext());
 		
 		registerActivityLifecycleCallbacks(new DefaultActivityLifecycleCallbacks());
+
+		prefetchHosts();
+	}
+
+	/**
+	 * Hosts resolved in the background at startup, which warms the system resolver cache.
+	 * They are also kept in the default engine's {@link CachingDns}, if it has one, see
+	 * {@link #isCachingDnsEnabled()}.
+	 */
+	protected String[] getPrefetchHosts() {
+		return null;
+	}
+
+	/**
+	 * Installs a {@link CachingDns} on the default engine at startup. Plain http requests are
+	 * then sent to a resolved IP with a Host header, which some servers and proxies reject.
+	 */
+	protected boolean isCachingDnsEnabled() {
+		return false;
+	}
+
+	/**
+	 * Leaves the default engine alone unless needed, so subclasses can still
+	 * {@link HttpEngine#setDefault(HttpEngine)} before its first use.
+	 */
+	private void prefetchHosts() {
+		String[] hosts = getPrefetchHosts();
+		boolean prefetch = hosts != null && hosts.length > 0;
+		if (!prefetch && !isCachingDnsEnabled()) return;
+
+		HttpEngine engine = HttpEngine.getDefault();
+		Dns dns = engine.getDns();
+		if (isCachingDnsEnabled() && !(dns instanceof CachingDns)) {
+			dns = new CachingDns();
+			engine.setDns(dns);
+		}
+
+		if (!prefetch) return;
+		if (!(dns instanceof CachingDns)) {
+			// only warms the system resolver, the engine keeps its Dns
+			dns = new CachingDns();
+		}
+		((CachingDns) dns).prefetch(hosts);
 	}
 	
 	/**
@@ -21,10 +21,12 @@ import android.os.Build;
 
 import com.hellofyc.base.util.FLog;
 import com.hellofyc.base.util.FileUtils;
+import com.hellofyc.base.util.LogRecorder;
 import com.hellofyc.base.util.PackageUtils;
 import com.hellofyc.base.util.TimeUtils;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -40,6 +42,8 @@ import java.util.Map;
  */
 public class CrashHandler implements UncaughtExceptionHandler {
 
+	private static final long FLUSH_TIMEOUT_MILLIS = 1000;
+
 	private Context mContext;
 	private UncaughtExceptionHandler mDefaultHandler;
 	
@@ -64,8 +68,9 @@ public class CrashHandler implements UncaughtExceptionHandler {
 	@Override
 	public void uncaughtException(Thread thread, Throwable ex) {
 		FLog.e(ex);
-		handleException(ex);
-		if (!handleException(ex) && mDefaultHandler != null) {
+		boolean handled = handleException(ex);
+		FLog.flush(FLUSH_TIMEOUT_MILLIS);
+		if (!handled && mDefaultHandler != null) {
 			mDefaultHandler.uncaughtException(thread, ex);
 		} else {
 			onExit();
@@ -121,6 +126,17 @@ public class CrashHandler implements UncaughtExceptionHandler {
         }
         printWriter.close();
         sb.append(writer.toString());
+        LogRecorder recorder = FLog.getRecorder();
+        if (recorder != null) {
+            sb.append("\n--- recent log ---\n");
+            StringWriter logWriter = new StringWriter();
+            try {
+                recorder.dump(logWriter);
+            } catch (IOException e) {
+                FLog.e(e);
+            }
+            sb.append(logWriter.toString());
+        }
         try {
             String fileName = "crash-" + TimeUtils.getCurrentTime(TimeUtils.TEMPLATE_DATE_TIME_FILENAME) + ".log";
             File dir = new File(mContext.getCacheDir(), "logs");
@@ -56,6 +56,7 @@ import com.hellofyc.base.app.AppSupportDelegate;
 import com.hellofyc.base.app.BaseApplication;
 import com.hellofyc.base.content.IntentWrapper;
 import com.hellofyc.base.content.PermissionHelper;
+import com.hellofyc.base.net.http.HttpEngine;
 import com.hellofyc.base.util.FLog;
 import com.hellofyc.base.util.Reflect;
 import com.hellofyc.base.util.ResUtils;
@@ -261,6 +262,7 @@ abstract public class BaseActivity extends AppCompatActivity implements OnClickL
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
+		HttpEngine.cancel(this);
 	}
 
 	@Override
@@ -32,6 +32,7 @@ import android.view.View.OnClickListener;
 import com.hellofyc.base.app.AppSupportDelegate;
 import com.hellofyc.base.app.activity.BaseActivity;
 import com.hellofyc.base.content.PermissionHelper;
+import com.hellofyc.base.net.http.HttpEngine;
 
 /**
  *
@@ -93,6 +94,12 @@ public class BaseFragment extends Fragment implements OnClickListener {
 		}
 	}
 
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		HttpEngine.cancel(this);
+	}
+
     public void startFragment(Intent intent) {
         getAppSupportDelegate().startFragment(intent);
     }
@@ -0,0 +1,56 @@
+package com.hellofyc.base.json;
+
+import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
+
+/**
+ * Finds the generated {@link JsonAdapter} of a {@link JsonModel} class, e.g.
+ *
+ * <pre>
+ * PageInfo pageInfo = Json.adapter(PageInfo.class).fromJson(response.body.charStream());
+ * </pre>
+ *
+ * The adapter class is looked up once per model, reading never uses reflection.
+ *
+ * Created on 2016/7/14.
+ *
+ * @author Yucun Fang
+ */
+public final class Json {
+
+    public static final String ADAPTER_SUFFIX = "_JsonAdapter";
+
+    private static final ArrayMap<Class<?>, JsonAdapter<?>> sAdapters = new ArrayMap<>();
+
+    /**
+     * @throws IllegalArgumentException if the class has no generated adapter
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JsonAdapter<T> adapter(@NonNull Class<T> type) {
+        synchronized (sAdapters) {
+            JsonAdapter<T> adapter = (JsonAdapter<T>) sAdapters.get(type);
+            if (adapter == null) {
+                adapter = loadAdapter(type);
+                sAdapters.put(type, adapter);
+            }
+            return adapter;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> JsonAdapter<T> loadAdapter(Class<T> type) {
+        Package typePackage = type.getPackage();
+        String packageName = typePackage != null ? typePackage.getName() : "";
+        String binaryName = type.getName().substring(packageName.isEmpty() ? 0 : packageName.length() + 1);
+        String adapterName = (packageName.isEmpty() ? "" : packageName + ".")
+                + binaryName.replace('$', '_') + ADAPTER_SUFFIX;
+        try {
+            return (JsonAdapter<T>) Class.forName(adapterName, true, type.getClassLoader()).newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No generated adapter for " + type.getName()
+                    + ", is it annotated with @JsonModel?", e);
+        }
+    }
+
+    private Json() {/*Do not new me*/}
+}
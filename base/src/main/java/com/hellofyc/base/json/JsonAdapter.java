@@ -0,0 +1,201 @@
+package com.hellofyc.base.json;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads one type from a {@link JsonReader} and writes it to a {@link JsonWriter}. Adapters
+ * of {@link JsonModel} classes are generated, the constants cover the value types their
+ * fields may hold.
+ *
+ * Created on 2016/7/14.
+ *
+ * @author Yucun Fang
+ */
+public abstract class JsonAdapter<T> {
+
+    public static final JsonAdapter<String> STRING = new JsonAdapter<String>() {
+        @Override
+        public String read(@NonNull JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) return readNull(reader);
+            return reader.nextString();
+        }
+
+        @Override
+        public void write(@NonNull JsonWriter writer, String value) throws IOException {
+            writer.value(value);
+        }
+    };
+
+    public static final JsonAdapter<Integer> INTEGER = new JsonAdapter<Integer>() {
+        @Override
+        public Integer read(@NonNull JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) return readNull(reader);
+            return reader.nextInt();
+        }
+
+        @Override
+        public void write(@NonNull JsonWriter writer, Integer value) throws IOException {
+            writer.value(value);
+        }
+    };
+
+    public static final JsonAdapter<Long> LONG = new JsonAdapter<Long>() {
+        @Override
+        public Long read(@NonNull JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) return readNull(reader);
+            return reader.nextLong();
+        }
+
+        @Override
+        public void write(@NonNull JsonWriter writer, Long value) throws IOException {
+            writer.value(value);
+        }
+    };
+
+    public static final JsonAdapter<Double> DOUBLE = new JsonAdapter<Double>() {
+        @Override
+        public Double read(@NonNull JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) return readNull(reader);
+            return reader.nextDouble();
+        }
+
+        @Override
+        public void write(@NonNull JsonWriter writer, Double value) throws IOException {
+            writer.value(value);
+        }
+    };
+
+    public static final JsonAdapter<Float> FLOAT = new JsonAdapter<Float>() {
+        @Override
+        public Float read(@NonNull JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) return readNull(reader);
+            return (float) reader.nextDouble();
+        }
+
+        @Override
+        public void write(@NonNull JsonWriter writer, Float value) throws IOException {
+            writer.value(value);
+        }
+    };
+
+    public static final JsonAdapter<Boolean> BOOLEAN = new JsonAdapter<Boolean>() {
+        @Override
+        public Boolean read(@NonNull JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) return readNull(reader);
+            return reader.nextBoolean();
+        }
+
+        @Override
+        public void write(@NonNull JsonWriter writer, Boolean value) throws IOException {
+            writer.value(value);
+        }
+    };
+
+    /**
+     * @return the value, null if the next value is a JSON null
+     */
+    public abstract T read(@NonNull JsonReader reader) throws IOException;
+
+    /**
+     * Writes the value, a JSON null if it is null.
+     */
+    public abstract void write(@NonNull JsonWriter writer, T value) throws IOException;
+
+    /**
+     * @return the elements, null if the next value is a JSON null
+     */
+    public List<T> readList(@NonNull JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) return readNull(reader);
+
+        List<T> list = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            list.add(read(reader));
+        }
+        reader.endArray();
+        return list;
+    }
+
+    public void writeList(@NonNull JsonWriter writer, List<T> list) throws IOException {
+        if (list == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginArray();
+        for (int i = 0, size = list.size(); i < size; i++) {
+            write(writer, list.get(i));
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Reads one value from the stream, e.g. {@link com.hellofyc.base.net.http.ResponseBody#charStream()},
+     * and closes it.
+     */
+    public T fromJson(@NonNull Reader reader) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            return read(jsonReader);
+        } finally {
+            jsonReader.close();
+        }
+    }
+
+    public T fromJson(@NonNull String json) throws IOException {
+        return fromJson(new StringReader(json));
+    }
+
+    /**
+     * Reads a JSON array from the stream and closes it.
+     */
+    public List<T> listFromJson(@NonNull Reader reader) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            return readList(jsonReader);
+        } finally {
+            jsonReader.close();
+        }
+    }
+
+    /**
+     * Writes the value to the stream and flushes it, the stream is left open.
+     */
+    public void toJson(@NonNull Writer writer, T value) throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        write(jsonWriter, value);
+        jsonWriter.flush();
+    }
+
+    /**
+     * Writes the value as UTF-8 to the stream and flushes it, the stream is left open.
+     */
+    public void toJson(@NonNull OutputStream outputStream, T value) throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(outputStream);
+        write(jsonWriter, value);
+        jsonWriter.flush();
+    }
+
+    public String toJson(T value) {
+        StringWriter writer = new StringWriter();
+        try {
+            toJson(writer, value);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return writer.toString();
+    }
+
+    protected static <V> V readNull(JsonReader reader) throws IOException {
+        reader.nextNull();
+        return null;
+    }
+}
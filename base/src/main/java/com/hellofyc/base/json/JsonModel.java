@@ -0,0 +1,26 @@
+package com.hellofyc.base.json;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a {@link JsonAdapter} named after the class with a "_JsonAdapter" suffix at
+ * compile time, see {@link Json#adapter(Class)}.
+ *
+ * The class needs a non-private no-arg constructor. Its non-static, non-transient fields
+ * are bound by name, see {@link JsonName}, either directly or through a non-private
+ * setter and getter when the field is private. Supported field types are primitives, their boxes,
+ * String, other {@link JsonModel} classes and Lists of those.
+ *
+ * Created on 2016/7/14.
+ *
+ * @author Yucun Fang
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+}
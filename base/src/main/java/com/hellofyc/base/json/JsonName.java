@@ -0,0 +1,22 @@
+package com.hellofyc.base.json;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The JSON name of a {@link JsonModel} field, the field name by default.
+ *
+ * Created on 2016/7/14.
+ *
+ * @author Yucun Fang
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface JsonName {
+
+    String value();
+}
@@ -0,0 +1,630 @@
+package com.hellofyc.base.json;
+
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+
+/**
+ * Pull parser reading one token at a time from a character stream, e.g.
+ *
+ * <pre>
+ * JsonReader reader = new JsonReader(body.charStream());
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     String name = reader.nextName();
+ *     if ("id".equals(name)) {
+ *         id = reader.nextLong();
+ *     } else {
+ *         reader.skipValue();
+ *     }
+ * }
+ * reader.endObject();
+ * </pre>
+ *
+ * The input is read through a fixed buffer and never held as a whole. Integral numbers
+ * are parsed without creating strings, and short property names are shared through a
+ * small cache, so repeated names of a large array of objects cost no allocation.
+ *
+ * Created on 2016/7/13.
+ *
+ * @author Yucun Fang
+ */
+public class JsonReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int NAME_CACHE_SIZE = 512;
+    private static final int MAX_CACHED_NAME_LENGTH = 32;
+    private static final long MIN_INCOMPLETE_LONG = Long.MIN_VALUE / 10;
+
+    private static final int PEEKED_NONE = 0;
+    private static final int PEEKED_BEGIN_OBJECT = 1;
+    private static final int PEEKED_END_OBJECT = 2;
+    private static final int PEEKED_BEGIN_ARRAY = 3;
+    private static final int PEEKED_END_ARRAY = 4;
+    private static final int PEEKED_TRUE = 5;
+    private static final int PEEKED_FALSE = 6;
+    private static final int PEEKED_NULL = 7;
+    private static final int PEEKED_STRING = 8;
+    private static final int PEEKED_NAME = 9;
+    private static final int PEEKED_LONG = 10;
+    private static final int PEEKED_NUMBER = 11;
+    private static final int PEEKED_EOF = 12;
+
+    private static final int SCOPE_EMPTY_ARRAY = 1;
+    private static final int SCOPE_NONEMPTY_ARRAY = 2;
+    private static final int SCOPE_EMPTY_OBJECT = 3;
+    private static final int SCOPE_DANGLING_NAME = 4;
+    private static final int SCOPE_NONEMPTY_OBJECT = 5;
+    private static final int SCOPE_EMPTY_DOCUMENT = 6;
+    private static final int SCOPE_NONEMPTY_DOCUMENT = 7;
+    private static final int SCOPE_CLOSED = 8;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPos = 0;
+    private int mLimit = 0;
+    private long mBufferOffset = 0;
+
+    private int mPeeked = PEEKED_NONE;
+    private long mPeekedLong;
+    private String mPeekedNumber;
+
+    private int[] mStack = new int[32];
+    private int mStackSize = 0;
+
+    private final StringBuilder mBuilder = new StringBuilder();
+    private final String[] mNameCache = new String[NAME_CACHE_SIZE];
+
+    public JsonReader(@NonNull Reader reader) {
+        mReader = reader;
+        push(SCOPE_EMPTY_DOCUMENT);
+    }
+
+    public void beginArray() throws IOException {
+        expect(PEEKED_BEGIN_ARRAY, JsonToken.BEGIN_ARRAY);
+        push(SCOPE_EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(PEEKED_END_ARRAY, JsonToken.END_ARRAY);
+        mStackSize--;
+    }
+
+    public void beginObject() throws IOException {
+        expect(PEEKED_BEGIN_OBJECT, JsonToken.BEGIN_OBJECT);
+        push(SCOPE_EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(PEEKED_END_OBJECT, JsonToken.END_OBJECT);
+        mStackSize--;
+    }
+
+    /**
+     * @return true if the current array or object has another element
+     */
+    public boolean hasNext() throws IOException {
+        int peeked = peekInternal();
+        return peeked != PEEKED_END_OBJECT && peeked != PEEKED_END_ARRAY && peeked != PEEKED_EOF;
+    }
+
+    public JsonToken peek() throws IOException {
+        switch (peekInternal()) {
+            case PEEKED_BEGIN_OBJECT:
+                return JsonToken.BEGIN_OBJECT;
+            case PEEKED_END_OBJECT:
+                return JsonToken.END_OBJECT;
+            case PEEKED_BEGIN_ARRAY:
+                return JsonToken.BEGIN_ARRAY;
+            case PEEKED_END_ARRAY:
+                return JsonToken.END_ARRAY;
+            case PEEKED_TRUE:
+            case PEEKED_FALSE:
+                return JsonToken.BOOLEAN;
+            case PEEKED_NULL:
+                return JsonToken.NULL;
+            case PEEKED_STRING:
+                return JsonToken.STRING;
+            case PEEKED_NAME:
+                return JsonToken.NAME;
+            case PEEKED_LONG:
+            case PEEKED_NUMBER:
+                return JsonToken.NUMBER;
+            default:
+                return JsonToken.END_DOCUMENT;
+        }
+    }
+
+    public String nextName() throws IOException {
+        if (peekInternal() != PEEKED_NAME) {
+            throw new IllegalStateException("Expected a name but was " + peek() + location());
+        }
+        mPeeked = PEEKED_NONE;
+        return readString(true);
+    }
+
+    /**
+     * Also returns numbers as their literal text.
+     */
+    public String nextString() throws IOException {
+        String result;
+        switch (peekInternal()) {
+            case PEEKED_STRING:
+                result = readString(false);
+                break;
+            case PEEKED_LONG:
+                result = Long.toString(mPeekedLong);
+                break;
+            case PEEKED_NUMBER:
+                result = mPeekedNumber;
+                break;
+            default:
+                throw new IllegalStateException("Expected a string but was " + peek() + location());
+        }
+        mPeeked = PEEKED_NONE;
+        return result;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        int peeked = peekInternal();
+        if (peeked != PEEKED_TRUE && peeked != PEEKED_FALSE) {
+            throw new IllegalStateException("Expected a boolean but was " + peek() + location());
+        }
+        mPeeked = PEEKED_NONE;
+        return peeked == PEEKED_TRUE;
+    }
+
+    public void nextNull() throws IOException {
+        expect(PEEKED_NULL, JsonToken.NULL);
+    }
+
+    /**
+     * Also parses numbers quoted as strings.
+     *
+     * @throws NumberFormatException if the value is not an integer that fits a long
+     */
+    public long nextLong() throws IOException {
+        int peeked = peekInternal();
+        if (peeked == PEEKED_LONG) {
+            mPeeked = PEEKED_NONE;
+            return mPeekedLong;
+        }
+
+        String text = nextNumberText(peeked);
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            // e.g. 1e3 or 2.0, a double would round values beyond 2^53 into range. Huge
+            // exponents are rejected before any exact arithmetic.
+            try {
+                BigDecimal value = new BigDecimal(text);
+                if (value.signum() == 0) return 0;
+                value = value.stripTrailingZeros();
+                if (value.scale() <= 0 && (long) value.precision() - value.scale() <= 19) {
+                    return value.longValueExact();
+                }
+            } catch (ArithmeticException | NumberFormatException ignored) {
+            }
+            throw new NumberFormatException("Expected a long but was " + text + location());
+        }
+    }
+
+    /**
+     * @throws NumberFormatException if the value is not an integer that fits an int
+     */
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) throw new NumberFormatException("Expected an int but was " + value + location());
+        return (int) value;
+    }
+
+    /**
+     * Also parses numbers quoted as strings.
+     */
+    public double nextDouble() throws IOException {
+        int peeked = peekInternal();
+        if (peeked == PEEKED_LONG) {
+            mPeeked = PEEKED_NONE;
+            return (double) mPeekedLong;
+        }
+        return Double.parseDouble(nextNumberText(peeked));
+    }
+
+    /**
+     * @return an Integer or Long for integral values that fit, a Double otherwise
+     */
+    public Number nextNumber() throws IOException {
+        int peeked = peekInternal();
+        if (peeked == PEEKED_LONG) {
+            mPeeked = PEEKED_NONE;
+            long value = mPeekedLong;
+            if (value == (int) value) return Integer.valueOf((int) value);
+            return Long.valueOf(value);
+        }
+        if (peeked != PEEKED_NUMBER) {
+            throw new IllegalStateException("Expected a number but was " + peek() + location());
+        }
+        mPeeked = PEEKED_NONE;
+        try {
+            return Double.valueOf(mPeekedNumber);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Malformed number " + mPeekedNumber);
+        }
+    }
+
+    /**
+     * Skips the next value including nested arrays and objects, or the next name with its value.
+     */
+    public void skipValue() throws IOException {
+        if (peekInternal() == PEEKED_NAME) {
+            skipString();
+            mPeeked = PEEKED_NONE;
+        }
+
+        int depth = 0;
+        do {
+            switch (peekInternal()) {
+                case PEEKED_BEGIN_ARRAY:
+                    push(SCOPE_EMPTY_ARRAY);
+                    depth++;
+                    break;
+                case PEEKED_BEGIN_OBJECT:
+                    push(SCOPE_EMPTY_OBJECT);
+                    depth++;
+                    break;
+                case PEEKED_END_ARRAY:
+                case PEEKED_END_OBJECT:
+                    if (depth == 0) throw new IllegalStateException("Expected a value but was " + peek() + location());
+                    mStackSize--;
+                    depth--;
+                    break;
+                case PEEKED_NAME:
+                case PEEKED_STRING:
+                    skipString();
+                    break;
+                case PEEKED_EOF:
+                    throw new IllegalStateException("Expected a value but was " + JsonToken.END_DOCUMENT);
+                default:
+                    break;
+            }
+            mPeeked = PEEKED_NONE;
+        } while (depth != 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mPeeked = PEEKED_NONE;
+        mStack[0] = SCOPE_CLOSED;
+        mStackSize = 1;
+        mReader.close();
+    }
+
+    private void expect(int expected, JsonToken token) throws IOException {
+        if (peekInternal() != expected) {
+            throw new IllegalStateException("Expected " + token + " but was " + peek() + location());
+        }
+        mPeeked = PEEKED_NONE;
+    }
+
+    private String nextNumberText(int peeked) throws IOException {
+        String text;
+        if (peeked == PEEKED_NUMBER) {
+            text = mPeekedNumber;
+        } else if (peeked == PEEKED_STRING) {
+            text = readString(false).trim();
+        } else {
+            throw new IllegalStateException("Expected a number but was " + peek() + location());
+        }
+        mPeeked = PEEKED_NONE;
+        return text;
+    }
+
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            int[] stack = new int[mStackSize * 2];
+            System.arraycopy(mStack, 0, stack, 0, mStackSize);
+            mStack = stack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    private int peekInternal() throws IOException {
+        return mPeeked != PEEKED_NONE ? mPeeked : doPeek();
+    }
+
+    private int doPeek() throws IOException {
+        int scope = mStack[mStackSize - 1];
+        int c;
+        switch (scope) {
+            case SCOPE_EMPTY_ARRAY:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_ARRAY;
+                break;
+            case SCOPE_NONEMPTY_ARRAY:
+                c = nextNonWhitespace(true);
+                if (c == ']') return mPeeked = PEEKED_END_ARRAY;
+                if (c != ',') throw syntaxError("Unterminated array");
+                break;
+            case SCOPE_EMPTY_OBJECT:
+            case SCOPE_NONEMPTY_OBJECT:
+                mStack[mStackSize - 1] = SCOPE_DANGLING_NAME;
+                if (scope == SCOPE_NONEMPTY_OBJECT) {
+                    c = nextNonWhitespace(true);
+                    if (c == '}') return mPeeked = PEEKED_END_OBJECT;
+                    if (c != ',') throw syntaxError("Unterminated object");
+                }
+                c = nextNonWhitespace(true);
+                if (c == '"') return mPeeked = PEEKED_NAME;
+                if (c == '}' && scope == SCOPE_EMPTY_OBJECT) return mPeeked = PEEKED_END_OBJECT;
+                throw syntaxError("Expected name");
+            case SCOPE_DANGLING_NAME:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_OBJECT;
+                if (nextNonWhitespace(true) != ':') throw syntaxError("Expected ':'");
+                break;
+            case SCOPE_EMPTY_DOCUMENT:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_DOCUMENT;
+                break;
+            case SCOPE_NONEMPTY_DOCUMENT:
+                if (nextNonWhitespace(false) == -1) return mPeeked = PEEKED_EOF;
+                throw syntaxError("Expected end of document");
+            default:
+                throw new IllegalStateException("JsonReader is closed");
+        }
+
+        c = nextNonWhitespace(true);
+        switch (c) {
+            case ']':
+                if (scope == SCOPE_EMPTY_ARRAY) return mPeeked = PEEKED_END_ARRAY;
+                throw syntaxError("Unexpected value");
+            case '"':
+                return mPeeked = PEEKED_STRING;
+            case '[':
+                return mPeeked = PEEKED_BEGIN_ARRAY;
+            case '{':
+                return mPeeked = PEEKED_BEGIN_OBJECT;
+            case 't':
+                return mPeeked = readKeyword("true", PEEKED_TRUE);
+            case 'f':
+                return mPeeked = readKeyword("false", PEEKED_FALSE);
+            case 'n':
+                return mPeeked = readKeyword("null", PEEKED_NULL);
+            default:
+                mPos--;
+                return mPeeked = readNumber();
+        }
+    }
+
+    /**
+     * Called after the first character of the keyword was consumed.
+     */
+    private int readKeyword(String keyword, int peeked) throws IOException {
+        int length = keyword.length() - 1;
+        if (mPos + length > mLimit && !fillBuffer(length)) throw syntaxError("Unexpected end of input");
+        for (int i = 0; i < length; i++) {
+            if (mBuffer[mPos + i] != keyword.charAt(i + 1)) throw syntaxError("Unexpected literal");
+        }
+        if ((mPos + length < mLimit || fillBuffer(length + 1)) && isLiteral(mBuffer[mPos + length])) {
+            throw syntaxError("Unexpected literal");
+        }
+        mPos += length;
+        return peeked;
+    }
+
+    private int readNumber() throws IOException {
+        long value = 0;
+        boolean negative = false;
+        boolean integral = true;
+        boolean fitsInLong = true;
+        int digits = 0;
+        int length = 0;
+
+        while (true) {
+            if (mPos + length == mLimit) {
+                if (length == mBuffer.length) throw syntaxError("Number too long");
+                if (!fillBuffer(length + 1)) break;
+            }
+            char c = mBuffer[mPos + length];
+            if (c >= '0' && c <= '9') {
+                if (integral && fitsInLong) {
+                    // accumulated negatively, Long.MIN_VALUE has no positive counterpart
+                    long newValue = value * 10 - (c - '0');
+                    fitsInLong = value > MIN_INCOMPLETE_LONG || (value == MIN_INCOMPLETE_LONG && newValue < value);
+                    value = newValue;
+                }
+                digits++;
+            } else if (c == '-' && length == 0) {
+                negative = true;
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral = false;
+            } else if (isLiteral(c)) {
+                throw syntaxError("Unexpected character '" + c + "'");
+            } else {
+                break;
+            }
+            length++;
+        }
+        if (digits == 0) throw syntaxError("Expected value");
+
+        if (integral && fitsInLong && (negative ? value != 0 : value != Long.MIN_VALUE)) {
+            mPeekedLong = negative ? value : -value;
+            mPos += length;
+            return PEEKED_LONG;
+        }
+        mPeekedNumber = new String(mBuffer, mPos, length);
+        mPos += length;
+        return PEEKED_NUMBER;
+    }
+
+    /**
+     * Reads up to the closing quote, the opening quote was consumed by {@link #doPeek()}.
+     */
+    private String readString(boolean name) throws IOException {
+        StringBuilder builder = null;
+        while (true) {
+            int p = mPos;
+            int start = p;
+            while (p < mLimit) {
+                char c = mBuffer[p++];
+                if (c == '"') {
+                    mPos = p;
+                    int length = p - start - 1;
+                    if (builder == null) {
+                        return name ? cachedName(start, length) : new String(mBuffer, start, length);
+                    }
+                    builder.append(mBuffer, start, length);
+                    return builder.toString();
+                } else if (c == '\\') {
+                    mPos = p;
+                    if (builder == null) {
+                        builder = mBuilder;
+                        builder.setLength(0);
+                    }
+                    builder.append(mBuffer, start, p - start - 1);
+                    builder.append(readEscape());
+                    p = mPos;
+                    start = p;
+                }
+            }
+            if (builder == null) {
+                builder = mBuilder;
+                builder.setLength(0);
+            }
+            builder.append(mBuffer, start, p - start);
+            mPos = p;
+            if (!fillBuffer(1)) throw syntaxError("Unterminated string");
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            while (mPos < mLimit) {
+                char c = mBuffer[mPos++];
+                if (c == '"') return;
+                if (c == '\\') {
+                    if (mPos == mLimit && !fillBuffer(1)) throw syntaxError("Unterminated escape");
+                    mPos++;
+                }
+            }
+            if (!fillBuffer(1)) throw syntaxError("Unterminated string");
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (mPos == mLimit && !fillBuffer(1)) throw syntaxError("Unterminated escape");
+        char c = mBuffer[mPos++];
+        switch (c) {
+            case 'u':
+                if (mPos + 4 > mLimit && !fillBuffer(4)) throw syntaxError("Unterminated escape");
+                int result = 0;
+                for (int i = mPos, end = mPos + 4; i < end; i++) {
+                    int digit = Character.digit(mBuffer[i], 16);
+                    if (digit == -1) throw syntaxError("Invalid unicode escape");
+                    result = (result << 4) | digit;
+                }
+                mPos += 4;
+                return (char) result;
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case '"':
+            case '\\':
+            case '/':
+            case '\'':
+                return c;
+            default:
+                throw syntaxError("Invalid escape \\" + c);
+        }
+    }
+
+    private String cachedName(int start, int length) {
+        if (length > MAX_CACHED_NAME_LENGTH) return new String(mBuffer, start, length);
+
+        int hash = 0;
+        for (int i = start, end = start + length; i < end; i++) {
+            hash = 31 * hash + mBuffer[i];
+        }
+        int index = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String cached = mNameCache[index];
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            while (i < length && cached.charAt(i) == mBuffer[start + i]) i++;
+            if (i == length) return cached;
+        }
+        String name = new String(mBuffer, start, length);
+        mNameCache[index] = name;
+        return name;
+    }
+
+    /**
+     * @return the next character that is not whitespace, or -1 at the end of input
+     */
+    private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+        while (true) {
+            if (mPos == mLimit && !fillBuffer(1)) {
+                if (throwOnEof) throw new EOFException("End of input" + location());
+                return -1;
+            }
+            char c = mBuffer[mPos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+        }
+    }
+
+    /**
+     * Moves the unread characters to the front of the buffer and reads until at least
+     * minimum characters are available.
+     *
+     * @return false if the input ended first
+     */
+    private boolean fillBuffer(int minimum) throws IOException {
+        if (mPos > 0) {
+            mBufferOffset += mPos;
+            mLimit -= mPos;
+            System.arraycopy(mBuffer, mPos, mBuffer, 0, mLimit);
+            mPos = 0;
+        }
+        while (mLimit < minimum) {
+            int count = mReader.read(mBuffer, mLimit, mBuffer.length - mLimit);
+            if (count == -1) return false;
+            mLimit += count;
+        }
+        return true;
+    }
+
+    private static boolean isLiteral(char c) {
+        switch (c) {
+            case '{':
+            case '}':
+            case '[':
+            case ']':
+            case ':':
+            case ',':
+            case '"':
+            case ' ':
+            case '\t':
+            case '\f':
+            case '\r':
+            case '\n':
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private String location() {
+        return " at character " + (mBufferOffset + mPos);
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message + location());
+    }
+}
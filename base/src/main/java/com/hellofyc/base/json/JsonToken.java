@@ -0,0 +1,19 @@
+package com.hellofyc.base.json;
+
+/**
+ * Created on 2016/7/13.
+ *
+ * @author Yucun Fang
+ */
+public enum JsonToken {
+    BEGIN_ARRAY,
+    END_ARRAY,
+    BEGIN_OBJECT,
+    END_OBJECT,
+    NAME,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    END_DOCUMENT
+}
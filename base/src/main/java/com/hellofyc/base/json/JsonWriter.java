@@ -0,0 +1,534 @@
+package com.hellofyc.base.json;
+
+import android.support.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes one JSON value a token at a time, e.g.
+ *
+ * <pre>
+ * JsonWriter writer = new JsonWriter(outputStream);
+ * writer.beginObject();
+ * writer.name("id").value(id);
+ * writer.name("tags").writeValue(tags);
+ * writer.endObject();
+ * writer.close();
+ * </pre>
+ *
+ * Output goes through a fixed char buffer straight to the Writer, or is encoded as UTF-8
+ * into a fixed byte buffer for an OutputStream, so no tree or whole document string is
+ * ever built. Integral numbers are formatted without creating strings.
+ *
+ * Created on 2016/7/15.
+ *
+ * @author Yucun Fang
+ */
+public class JsonWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 2 * 1024;
+
+    private static final int SCOPE_EMPTY_ARRAY = 1;
+    private static final int SCOPE_NONEMPTY_ARRAY = 2;
+    private static final int SCOPE_EMPTY_OBJECT = 3;
+    private static final int SCOPE_DANGLING_NAME = 4;
+    private static final int SCOPE_NONEMPTY_OBJECT = 5;
+    private static final int SCOPE_EMPTY_DOCUMENT = 6;
+    private static final int SCOPE_NONEMPTY_DOCUMENT = 7;
+
+    private static final String[] REPLACEMENT_CHARS = new String[128];
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            REPLACEMENT_CHARS[i] = String.format("\\u%04x", i);
+        }
+        REPLACEMENT_CHARS['"'] = "\\\"";
+        REPLACEMENT_CHARS['\\'] = "\\\\";
+        REPLACEMENT_CHARS['\t'] = "\\t";
+        REPLACEMENT_CHARS['\b'] = "\\b";
+        REPLACEMENT_CHARS['\n'] = "\\n";
+        REPLACEMENT_CHARS['\r'] = "\\r";
+        REPLACEMENT_CHARS['\f'] = "\\f";
+    }
+
+    private final Writer mWriter;
+    private final OutputStream mOutputStream;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPos = 0;
+    private byte[] mBytes;
+    private char mHighSurrogate;
+
+    private int[] mStack = new int[32];
+    private int mStackSize = 0;
+
+    private String mIndent;
+    private String mSeparator = ":";
+
+    public JsonWriter(@NonNull Writer writer) {
+        mWriter = writer;
+        mOutputStream = null;
+        push(SCOPE_EMPTY_DOCUMENT);
+    }
+
+    /**
+     * Writes UTF-8.
+     */
+    public JsonWriter(@NonNull OutputStream outputStream) {
+        mWriter = null;
+        mOutputStream = outputStream;
+        mBytes = new byte[BUFFER_SIZE * 3 + 1];
+        push(SCOPE_EMPTY_DOCUMENT);
+    }
+
+    /**
+     * Pretty prints with the indent, e.g. four spaces, compact by default.
+     */
+    public JsonWriter setIndent(String indent) {
+        if (indent == null || indent.isEmpty()) {
+            mIndent = null;
+            mSeparator = ":";
+        } else {
+            mIndent = indent;
+            mSeparator = ": ";
+        }
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        push(SCOPE_EMPTY_ARRAY);
+        write('[');
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(SCOPE_EMPTY_ARRAY, SCOPE_NONEMPTY_ARRAY, ']');
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        push(SCOPE_EMPTY_OBJECT);
+        write('{');
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close(SCOPE_EMPTY_OBJECT, SCOPE_NONEMPTY_OBJECT, '}');
+    }
+
+    public JsonWriter name(@NonNull String name) throws IOException {
+        int scope = peekScope();
+        if (scope == SCOPE_NONEMPTY_OBJECT) {
+            write(',');
+        } else if (scope != SCOPE_EMPTY_OBJECT) {
+            throw new IllegalStateException("Nesting problem, name outside of an object");
+        }
+        newline();
+        mStack[mStackSize - 1] = SCOPE_DANGLING_NAME;
+        string(name);
+        write(mSeparator);
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        write("null");
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter value(Boolean value) throws IOException {
+        if (value == null) return nullValue();
+        return value(value.booleanValue());
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            write("-9223372036854775808");
+            return this;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) divisor *= 10;
+        for (; divisor > 0; divisor /= 10) {
+            write((char) ('0' + value / divisor % 10));
+        }
+        return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException for NaN and infinities
+     */
+    public JsonWriter value(double value) throws IOException {
+        checkFinite(value);
+        beforeValue();
+        write(Double.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes the shortest text of the float rather than of its widened double.
+     */
+    public JsonWriter value(float value) throws IOException {
+        checkFinite(value);
+        beforeValue();
+        write(Float.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) return nullValue();
+        if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            return value(value.longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            checkFinite(value.doubleValue());
+        }
+        beforeValue();
+        write(value.toString());
+        return this;
+    }
+
+    /**
+     * Writes a JSON literal as is, e.g. a number text read with {@link JsonReader#nextString()}.
+     */
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) return nullValue();
+        beforeValue();
+        write(value);
+        return this;
+    }
+
+    /**
+     * Writes maps, collections, arrays, org.json values, strings, numbers, booleans and
+     * {@link JsonModel} objects through their generated adapter.
+     */
+    @SuppressWarnings("unchecked")
+    public JsonWriter writeValue(Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            return nullValue();
+        } else if (value instanceof String) {
+            return value((String) value);
+        } else if (value instanceof Number) {
+            return value((Number) value);
+        } else if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        } else if (value instanceof CharSequence || value instanceof Character) {
+            return value(value.toString());
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue());
+            }
+            return endObject();
+        } else if (value instanceof Iterable) {
+            beginArray();
+            for (Object element : (Iterable<?>) value) {
+                writeValue(element);
+            }
+            return endArray();
+        } else if (value.getClass().isArray()) {
+            beginArray();
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                writeValue(Array.get(value, i));
+            }
+            return endArray();
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            beginObject();
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                name(key);
+                writeValue(object.opt(key));
+            }
+            return endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            beginArray();
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(array.opt(i));
+            }
+            return endArray();
+        }
+        JsonAdapter<Object> adapter = (JsonAdapter<Object>) Json.adapter(value.getClass());
+        adapter.write(this, value);
+        return this;
+    }
+
+    /**
+     * Copies the next value of the reader, e.g. to reformat JSON text without parsing it
+     * into a tree.
+     */
+    public JsonWriter copy(@NonNull JsonReader reader) throws IOException {
+        int depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    endArray();
+                    depth--;
+                    break;
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    endObject();
+                    depth--;
+                    break;
+                case NAME:
+                    name(reader.nextName());
+                    break;
+                case STRING:
+                    value(reader.nextString());
+                    break;
+                case NUMBER:
+                    jsonValue(reader.nextString());
+                    break;
+                case BOOLEAN:
+                    value(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    nullValue();
+                    break;
+                default:
+                    throw new IllegalStateException("Expected a value but was " + reader.peek());
+            }
+        } while (depth != 0);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (mStackSize == 0) throw new IllegalStateException("JsonWriter is closed.");
+        flushBuffer();
+        if (mWriter != null) {
+            mWriter.flush();
+        } else {
+            mOutputStream.flush();
+        }
+    }
+
+    /**
+     * Flushes and closes the underlying stream.
+     *
+     * @throws IOException if the document is incomplete
+     */
+    @Override
+    public void close() throws IOException {
+        if (mStackSize == 0) return;
+
+        try {
+            flushBuffer();
+            if (mHighSurrogate != 0) {
+                mHighSurrogate = 0;
+                mOutputStream.write('?');
+            }
+        } finally {
+            if (mWriter != null) {
+                mWriter.close();
+            } else {
+                mOutputStream.close();
+            }
+        }
+        int size = mStackSize;
+        mStackSize = 0;
+        if (size > 1 || mStack[0] != SCOPE_NONEMPTY_DOCUMENT) {
+            throw new IOException("Incomplete document");
+        }
+    }
+
+    private JsonWriter close(int empty, int nonempty, char bracket) throws IOException {
+        int scope = peekScope();
+        if (scope != nonempty && scope != empty) {
+            throw new IllegalStateException("Nesting problem, " + bracket + " does not close the current scope");
+        }
+        mStackSize--;
+        if (scope == nonempty) newline();
+        write(bracket);
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        switch (peekScope()) {
+            case SCOPE_NONEMPTY_DOCUMENT:
+                throw new IllegalStateException("JSON must have only one top-level value.");
+            case SCOPE_EMPTY_DOCUMENT:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_DOCUMENT;
+                break;
+            case SCOPE_EMPTY_ARRAY:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_ARRAY;
+                newline();
+                break;
+            case SCOPE_NONEMPTY_ARRAY:
+                write(',');
+                newline();
+                break;
+            case SCOPE_DANGLING_NAME:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_OBJECT;
+                break;
+            default:
+                throw new IllegalStateException("Nesting problem, value without a name");
+        }
+    }
+
+    private int peekScope() {
+        if (mStackSize == 0) throw new IllegalStateException("JsonWriter is closed.");
+        return mStack[mStackSize - 1];
+    }
+
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            int[] stack = new int[mStackSize * 2];
+            System.arraycopy(mStack, 0, stack, 0, mStackSize);
+            mStack = stack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    private void newline() throws IOException {
+        if (mIndent == null) return;
+
+        write('\n');
+        for (int i = 1; i < mStackSize; i++) {
+            write(mIndent);
+        }
+    }
+
+    private void string(String value) throws IOException {
+        write('"');
+        int last = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c < 128) {
+                replacement = REPLACEMENT_CHARS[c];
+                if (replacement == null) continue;
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+            if (last < i) write(value, last, i);
+            write(replacement);
+            last = i + 1;
+        }
+        if (last < length) write(value, last, length);
+        write('"');
+    }
+
+    private void write(char c) throws IOException {
+        if (mPos == mBuffer.length) flushBuffer();
+        mBuffer[mPos++] = c;
+    }
+
+    private void write(String text) throws IOException {
+        write(text, 0, text.length());
+    }
+
+    private void write(String text, int start, int end) throws IOException {
+        while (start < end) {
+            if (mPos == mBuffer.length) flushBuffer();
+            int count = Math.min(end - start, mBuffer.length - mPos);
+            text.getChars(start, start + count, mBuffer, mPos);
+            mPos += count;
+            start += count;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (mPos == 0) return;
+
+        if (mWriter != null) {
+            mWriter.write(mBuffer, 0, mPos);
+        } else {
+            mOutputStream.write(mBytes, 0, encodeUtf8());
+        }
+        mPos = 0;
+    }
+
+    /**
+     * Encodes the char buffer into the byte buffer, at most 3 bytes per char plus a '?' for
+     * a dangling surrogate. A high surrogate ending the buffer is carried over to the next call.
+     */
+    private int encodeUtf8() {
+        byte[] bytes = mBytes;
+        int count = 0;
+        for (int i = 0; i < mPos; i++) {
+            char c = mBuffer[i];
+            if (mHighSurrogate != 0) {
+                char high = mHighSurrogate;
+                mHighSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int codePoint = Character.toCodePoint(high, c);
+                    bytes[count++] = (byte) (0xf0 | codePoint >> 18);
+                    bytes[count++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                    bytes[count++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                    bytes[count++] = (byte) (0x80 | codePoint & 0x3f);
+                    continue;
+                }
+                bytes[count++] = '?';
+            }
+            if (c < 0x80) {
+                bytes[count++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[count++] = (byte) (0xc0 | c >> 6);
+                bytes[count++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c)) {
+                mHighSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                bytes[count++] = '?';
+            } else {
+                bytes[count++] = (byte) (0xe0 | c >> 12);
+                bytes[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+                bytes[count++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return count;
+    }
+
+    private static void checkFinite(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+    }
+}
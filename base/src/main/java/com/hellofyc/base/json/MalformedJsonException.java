@@ -0,0 +1,17 @@
+package com.hellofyc.base.json;
+
+import java.io.IOException;
+
+/**
+ * Created on 2016/7/13.
+ *
+ * @author Yucun Fang
+ */
+public class MalformedJsonException extends IOException {
+
+    private static final long serialVersionUID = -382278461323171978L;
+
+    public MalformedJsonException(String message) {
+        super(message);
+    }
+}
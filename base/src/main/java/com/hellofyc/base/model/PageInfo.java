@@ -3,11 +3,14 @@ package com.hellofyc.base.model;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.hellofyc.base.json.JsonModel;
+
 /**
  * Created on 2016/2/16.
  *
  * @author Yucun Fang
  */
+@JsonModel
 public class PageInfo implements Parcelable {
 
     private int totalPage;
@@ -0,0 +1,164 @@
+package com.hellofyc.base.net.dns;
+
+import android.os.SystemClock;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
+
+import com.hellofyc.base.util.FLog;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link Dns} keeping resolved addresses in process for a fixed TTL, the platform does
+ * not expose the record TTL.
+ *
+ * Hosts declared with {@link #prefetch(String...)} are resolved in the background, which
+ * also warms the system resolver cache used by https connections.
+ *
+ * Created on 2016/7/6.
+ *
+ * @author Yucun Fang
+ */
+public class CachingDns implements Dns {
+    private static final boolean DEBUG = false;
+
+    public static final long DEFAULT_TTL = 5 * 60 * 1000;
+    public static final int DEFAULT_RACE_PORT = 80;
+
+    private final Dns mDelegate;
+    private final ArrayMap<String, Entry> mCache = new ArrayMap<>();
+    private final ExecutorService mPrefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "DnsPrefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private long mTtlMillis = DEFAULT_TTL;
+    private boolean mHappyEyeballsEnabled = false;
+    private int mRacePort = DEFAULT_RACE_PORT;
+    private DnsListener mListener;
+
+    public CachingDns() {
+        this(Dns.SYSTEM);
+    }
+
+    public CachingDns(@NonNull Dns delegate) {
+        mDelegate = delegate;
+    }
+
+    public CachingDns setTtl(@IntRange(from = 0) long ttlMillis) {
+        mTtlMillis = ttlMillis;
+        return this;
+    }
+
+    /**
+     * Orders dual stack hosts by a {@link HappyEyeballs} race on every cache miss.
+     *
+     * @param port raced by {@link #lookup(String)} and {@link #prefetch(String...)},
+     *             {@link #lookup(String, int)} races its own port
+     */
+    public CachingDns setHappyEyeballsEnabled(boolean enabled, int port) {
+        mHappyEyeballsEnabled = enabled;
+        mRacePort = port;
+        return this;
+    }
+
+    public CachingDns setListener(DnsListener listener) {
+        mListener = listener;
+        return this;
+    }
+
+    /**
+     * Resolves the hosts in the background, failures are ignored.
+     */
+    public void prefetch(@NonNull String... hosts) {
+        for (final String host : hosts) {
+            mPrefetchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        lookup(host);
+                    } catch (UnknownHostException e) {
+                        if (DEBUG) FLog.e(e);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public InetAddress[] lookup(@NonNull String host) throws UnknownHostException {
+        return lookup(host, mRacePort);
+    }
+
+    /**
+     * @param port the port the caller connects to, raced on a cache miss
+     */
+    public InetAddress[] lookup(@NonNull String host, int port) throws UnknownHostException {
+        long now = SystemClock.elapsedRealtime();
+        Entry entry;
+        synchronized (mCache) {
+            entry = mCache.get(host);
+        }
+        if (entry != null && now < entry.mExpireTime) {
+            notifyLookup(host, true, 0, true);
+            return entry.mAddresses.clone();
+        }
+
+        InetAddress[] addresses;
+        try {
+            addresses = mDelegate.lookup(host);
+            if (mHappyEyeballsEnabled) {
+                addresses = HappyEyeballs.race(addresses, port,
+                        HappyEyeballs.DEFAULT_FALLBACK_DELAY, (int) HappyEyeballs.DEFAULT_FALLBACK_DELAY * 8);
+            }
+        } catch (UnknownHostException e) {
+            notifyLookup(host, false, SystemClock.elapsedRealtime() - now, false);
+            throw e;
+        }
+        notifyLookup(host, false, SystemClock.elapsedRealtime() - now, true);
+
+        synchronized (mCache) {
+            mCache.put(host, new Entry(addresses, SystemClock.elapsedRealtime() + mTtlMillis));
+        }
+        return addresses.clone();
+    }
+
+    public void evict(@NonNull String host) {
+        synchronized (mCache) {
+            mCache.remove(host);
+        }
+    }
+
+    public void evictAll() {
+        synchronized (mCache) {
+            mCache.clear();
+        }
+    }
+
+    private void notifyLookup(String host, boolean cacheHit, long durationMillis, boolean success) {
+        DnsListener listener = mListener;
+        if (listener != null) {
+            listener.onLookup(host, cacheHit, durationMillis, success);
+        }
+    }
+
+    private static class Entry {
+        final InetAddress[] mAddresses;
+        final long mExpireTime;
+
+        Entry(InetAddress[] addresses, long expireTime) {
+            mAddresses = addresses;
+            mExpireTime = expireTime;
+        }
+    }
+}
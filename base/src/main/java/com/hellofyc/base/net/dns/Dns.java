@@ -0,0 +1,29 @@
+package com.hellofyc.base.net.dns;
+
+import android.support.annotation.NonNull;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Resolves host names for the HTTP stack, see
+ * {@link com.hellofyc.base.net.http.HttpEngine#setDns(Dns)}.
+ *
+ * Created on 2016/7/6.
+ *
+ * @author Yucun Fang
+ */
+public interface Dns {
+
+    Dns SYSTEM = new Dns() {
+        @Override
+        public InetAddress[] lookup(@NonNull String host) throws UnknownHostException {
+            return InetAddress.getAllByName(host);
+        }
+    };
+
+    /**
+     * @return the addresses of host, the preferred one first, never empty
+     */
+    InetAddress[] lookup(@NonNull String host) throws UnknownHostException;
+}
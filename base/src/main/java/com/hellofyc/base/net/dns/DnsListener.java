@@ -0,0 +1,18 @@
+package com.hellofyc.base.net.dns;
+
+/**
+ * Metrics hook of {@link CachingDns}, called on the looking up thread.
+ *
+ * Created on 2016/7/6.
+ *
+ * @author Yucun Fang
+ */
+public interface DnsListener {
+
+    /**
+     * @param cacheHit       true if the cached addresses were returned
+     * @param durationMillis time spent in the lookup, 0 for cache hits
+     * @param success        false if the host could not be resolved
+     */
+    void onLookup(String host, boolean cacheHit, long durationMillis, boolean success);
+}
@@ -0,0 +1,135 @@
+package com.hellofyc.base.net.dns;
+
+import android.support.annotation.NonNull;
+
+import com.hellofyc.base.util.NetUtils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Races a TCP connect to the first IPv6 and the first IPv4 address of a host, the IPv4
+ * attempt starting after a short delay (RFC 6555), and orders the addresses so the
+ * family that connected first comes first.
+ *
+ * Created on 2016/7/6.
+ *
+ * @author Yucun Fang
+ */
+public final class HappyEyeballs {
+
+    public static final long DEFAULT_FALLBACK_DELAY = 250;
+
+    private static final ExecutorService sExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "HappyEyeballs");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * @return the addresses with the winning family first, the input order if neither
+     * family connected or the host has only one family
+     */
+    public static InetAddress[] race(@NonNull InetAddress[] addresses, int port,
+                                     long fallbackDelayMillis, int connectTimeoutMillis) {
+        List<InetAddress> ipv6 = new ArrayList<>();
+        List<InetAddress> ipv4 = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            String hostAddress = address.getHostAddress();
+            int scopeIndex = hostAddress.indexOf('%');
+            if (scopeIndex != -1) hostAddress = hostAddress.substring(0, scopeIndex);
+
+            if (NetUtils.isIPv6Address(hostAddress)) {
+                ipv6.add(address);
+            } else if (NetUtils.isIPv4Address(hostAddress)) {
+                ipv4.add(address);
+            }
+        }
+        if (ipv6.isEmpty() || ipv4.isEmpty()) return addresses;
+
+        ExecutorCompletionService<InetAddress> service = new ExecutorCompletionService<>(sExecutor);
+        List<Future<InetAddress>> futures = new ArrayList<>(2);
+        InetAddress winner = null;
+        try {
+            futures.add(service.submit(new ConnectTask(ipv6.get(0), port, connectTimeoutMillis)));
+            Future<InetAddress> done = service.poll(fallbackDelayMillis, TimeUnit.MILLISECONDS);
+            winner = done != null ? getQuietly(done) : null;
+            if (winner == null) {
+                futures.add(service.submit(new ConnectTask(ipv4.get(0), port, connectTimeoutMillis)));
+                int pending = done != null ? 1 : 2;
+                while (winner == null && pending-- > 0) {
+                    winner = getQuietly(service.take());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<InetAddress> future : futures) {
+                future.cancel(true);
+            }
+        }
+        if (winner == null) return addresses;
+
+        List<InetAddress> first = ipv6.contains(winner) ? ipv6 : ipv4;
+        List<InetAddress> second = first == ipv6 ? ipv4 : ipv6;
+        InetAddress[] sorted = new InetAddress[addresses.length];
+        int index = 0;
+        for (InetAddress address : first) sorted[index++] = address;
+        for (InetAddress address : second) sorted[index++] = address;
+        for (InetAddress address : addresses) {
+            if (!first.contains(address) && !second.contains(address)) sorted[index++] = address;
+        }
+        return sorted;
+    }
+
+    private static InetAddress getQuietly(Future<InetAddress> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) throw (InterruptedException) e;
+            return null;
+        }
+    }
+
+    private static class ConnectTask implements Callable<InetAddress> {
+        private final InetAddress mAddress;
+        private final int mPort;
+        private final int mTimeoutMillis;
+
+        ConnectTask(InetAddress address, int port, int timeoutMillis) {
+            mAddress = address;
+            mPort = port;
+            mTimeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public InetAddress call() throws IOException {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(mAddress, mPort), mTimeoutMillis);
+                return mAddress;
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private HappyEyeballs() {/*Do not new me*/}
+}
@@ -0,0 +1,208 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * A cached response body with the headers needed to decide freshness and to
+ * revalidate it with If-None-Match / If-Modified-Since.
+ *
+ * Created on 2016/7/1.
+ *
+ * @author Yucun Fang
+ */
+public class CacheEntry {
+
+    private static final int VERSION = 1;
+
+    private final String mUrl;
+    private final String mContentType;
+    private final String mETag;
+    private final String mLastModified;
+    private final long mReceivedTime;
+    private final long mMaxAgeMillis;
+    private final boolean mMustRevalidate;
+    private final byte[] mBody;
+
+    CacheEntry(String url, String contentType, String eTag, String lastModified,
+               long receivedTime, long maxAgeMillis, boolean mustRevalidate, byte[] body) {
+        mUrl = url;
+        mContentType = contentType;
+        mETag = eTag;
+        mLastModified = lastModified;
+        mReceivedTime = receivedTime;
+        mMaxAgeMillis = maxAgeMillis;
+        mMustRevalidate = mustRevalidate;
+        mBody = body;
+    }
+
+    /**
+     * @return false if the response forbids storing it
+     */
+    static boolean isCacheable(@NonNull HttpURLConnection connection) {
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        return !hasDirective(cacheControl, "no-store") && !hasDirective(cacheControl, "private");
+    }
+
+    /**
+     * Creates an entry without body from the response headers.
+     */
+    static CacheEntry create(@NonNull String url, @NonNull HttpURLConnection connection) {
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        return new CacheEntry(url,
+                connection.getContentType(),
+                connection.getHeaderField("ETag"),
+                connection.getHeaderField("Last-Modified"),
+                System.currentTimeMillis(),
+                parseMaxAge(connection, cacheControl),
+                hasDirective(cacheControl, "must-revalidate"),
+                null);
+    }
+
+    CacheEntry withBody(byte[] body) {
+        return new CacheEntry(mUrl, mContentType, mETag, mLastModified, mReceivedTime, mMaxAgeMillis, mMustRevalidate, body);
+    }
+
+    /**
+     * Refreshes freshness and validators from a 304 response, the body is kept.
+     */
+    CacheEntry revalidated(@NonNull HttpURLConnection connection) {
+        CacheEntry headers = create(mUrl, connection);
+        return new CacheEntry(mUrl,
+                mContentType,
+                headers.mETag != null ? headers.mETag : mETag,
+                headers.mLastModified != null ? headers.mLastModified : mLastModified,
+                headers.mReceivedTime,
+                headers.mMaxAgeMillis,
+                headers.mMustRevalidate,
+                mBody);
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    public String getContentType() {
+        return mContentType;
+    }
+
+    public String getETag() {
+        return mETag;
+    }
+
+    public String getLastModified() {
+        return mLastModified;
+    }
+
+    public byte[] getBody() {
+        return mBody;
+    }
+
+    public boolean isFresh(long now) {
+        return now >= mReceivedTime && now - mReceivedTime < mMaxAgeMillis;
+    }
+
+    /**
+     * @return false if the server asked not to use the entry once stale
+     */
+    public boolean isServableStale() {
+        return !mMustRevalidate;
+    }
+
+    public boolean hasValidators() {
+        return mETag != null || mLastModified != null;
+    }
+
+    public int size() {
+        return mBody == null ? 0 : mBody.length;
+    }
+
+    void writeTo(@NonNull DataOutputStream outputStream) throws IOException {
+        outputStream.writeInt(VERSION);
+        outputStream.writeUTF(mUrl);
+        writeNullableUTF(outputStream, mContentType);
+        writeNullableUTF(outputStream, mETag);
+        writeNullableUTF(outputStream, mLastModified);
+        outputStream.writeLong(mReceivedTime);
+        outputStream.writeLong(mMaxAgeMillis);
+        outputStream.writeBoolean(mMustRevalidate);
+        outputStream.writeInt(mBody.length);
+        outputStream.write(mBody);
+    }
+
+    static CacheEntry readFrom(@NonNull DataInputStream inputStream) throws IOException {
+        if (inputStream.readInt() != VERSION) {
+            throw new IOException("Unsupported cache entry version");
+        }
+        String url = inputStream.readUTF();
+        String contentType = readNullableUTF(inputStream);
+        String eTag = readNullableUTF(inputStream);
+        String lastModified = readNullableUTF(inputStream);
+        long receivedTime = inputStream.readLong();
+        long maxAgeMillis = inputStream.readLong();
+        boolean mustRevalidate = inputStream.readBoolean();
+        byte[] body = new byte[inputStream.readInt()];
+        inputStream.readFully(body);
+        return new CacheEntry(url, contentType, eTag, lastModified, receivedTime, maxAgeMillis, mustRevalidate, body);
+    }
+
+    private static void writeNullableUTF(DataOutputStream outputStream, String text) throws IOException {
+        outputStream.writeBoolean(text != null);
+        if (text != null) outputStream.writeUTF(text);
+    }
+
+    private static String readNullableUTF(DataInputStream inputStream) throws IOException {
+        return inputStream.readBoolean() ? inputStream.readUTF() : null;
+    }
+
+    /**
+     * max-age, else Expires - Date, else 0 which means revalidate on every use.
+     */
+    private static long parseMaxAge(HttpURLConnection connection, String cacheControl) {
+        if (hasDirective(cacheControl, "no-cache")) return 0;
+
+        String maxAge = getDirectiveValue(cacheControl, "max-age");
+        if (maxAge != null) {
+            try {
+                return Math.max(0, Long.parseLong(maxAge)) * 1000;
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        long expires = connection.getExpiration();
+        if (expires > 0) {
+            long date = connection.getDate();
+            return Math.max(0, expires - (date > 0 ? date : System.currentTimeMillis()));
+        }
+        return 0;
+    }
+
+    private static boolean hasDirective(String cacheControl, String directive) {
+        if (TextUtils.isEmpty(cacheControl)) return false;
+        for (String token : cacheControl.split(",")) {
+            String name = token.trim();
+            int index = name.indexOf('=');
+            if (index != -1) name = name.substring(0, index).trim();
+            if (name.equalsIgnoreCase(directive)) return true;
+        }
+        return false;
+    }
+
+    private static String getDirectiveValue(String cacheControl, String directive) {
+        if (TextUtils.isEmpty(cacheControl)) return null;
+        for (String token : cacheControl.split(",")) {
+            int index = token.indexOf('=');
+            if (index == -1) continue;
+            if (token.substring(0, index).trim().equalsIgnoreCase(directive)) {
+                return token.substring(index + 1).trim().replace("\"", "");
+            }
+        }
+        return null;
+    }
+}
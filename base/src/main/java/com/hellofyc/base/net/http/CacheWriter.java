@@ -0,0 +1,47 @@
+package com.hellofyc.base.net.http;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Copies a {@link ResponseBody} into a {@link CacheEntry} while the caller reads it,
+ * the entry is stored only if the body was read completely.
+ *
+ * Created on 2016/7/1.
+ *
+ * @author Yucun Fang
+ */
+class CacheWriter {
+
+    static final int MAX_ENTRY_SIZE = 2 * 1024 * 1024;
+
+    private final HttpCache mCache;
+    private final String mKey;
+    private final CacheEntry mEntry;
+    private ByteArrayOutputStream mBuffer;
+
+    CacheWriter(HttpCache cache, String key, CacheEntry entry, long contentLength) {
+        mCache = cache;
+        mKey = key;
+        mEntry = entry;
+        mBuffer = new ByteArrayOutputStream(contentLength > 0 ? (int) Math.min(contentLength, MAX_ENTRY_SIZE) : 8 * 1024);
+    }
+
+    void write(byte[] buffer, int offset, int count) {
+        if (mBuffer == null) return;
+        if (mBuffer.size() + count > MAX_ENTRY_SIZE) {
+            mBuffer = null;
+            return;
+        }
+        mBuffer.write(buffer, offset, count);
+    }
+
+    void commit() {
+        if (mBuffer == null) return;
+        mCache.put(mKey, mEntry.withBody(mBuffer.toByteArray()));
+        mBuffer = null;
+    }
+
+    void abort() {
+        mBuffer = null;
+    }
+}
@@ -0,0 +1,117 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handle of a request queued by {@link HttpUtils#enqueue(Callback)}.
+ *
+ * Created on 2016/6/22.
+ *
+ * @author Yucun Fang
+ */
+public final class Call implements Runnable, Comparable<Call> {
+
+    private static final AtomicLong sSequence = new AtomicLong();
+
+    private final HttpUtils mRequest;
+    private final Callback mCallback;
+    private final Dispatcher mDispatcher;
+    private final String mHost;
+    private final Priority mPriority;
+    private final long mSequence;
+
+    private volatile boolean mFinished = false;
+
+    Call(@NonNull HttpUtils request, Callback callback, @NonNull Dispatcher dispatcher) {
+        mRequest = request;
+        mCallback = callback;
+        mDispatcher = dispatcher;
+        mHost = parseHost(request.getUrl());
+        mPriority = request.getPriority();
+        mSequence = sSequence.getAndIncrement();
+    }
+
+    public Object getTag() {
+        return mRequest.getTag();
+    }
+
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    public boolean isCanceled() {
+        return mRequest.isCanceled();
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Removes the call from the queue, or aborts its connection if it is already running.
+     */
+    public void cancel() {
+        mRequest.cancel();
+        mDispatcher.remove(this);
+    }
+
+    String getHost() {
+        return mHost;
+    }
+
+    @Override
+    public void run() {
+        final HttpResponse response;
+        try {
+            response = mRequest.request();
+        } finally {
+            mFinished = true;
+            mDispatcher.finished(this);
+        }
+        deliver(response);
+    }
+
+    /**
+     * Finishes the call without running it, the callback gets a failed response.
+     */
+    void fail(@NonNull Throwable error) {
+        mFinished = true;
+        HttpResponse response = new HttpResponse();
+        response.code = HttpResponse.STATUS_CODE_UNKNOWN;
+        response.text = "UNKNOWN";
+        response.error = error;
+        deliver(response);
+    }
+
+    private void deliver(final HttpResponse response) {
+        if (mCallback == null || isCanceled()) return;
+        mDispatcher.deliver(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCanceled()) {
+                    mCallback.onResponse(response);
+                }
+            }
+        });
+    }
+
+    @Override
+    public int compareTo(@NonNull Call another) {
+        int result = another.mPriority.compareTo(mPriority);
+        if (result != 0) return result;
+        return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+    }
+
+    private static String parseHost(String urlString) {
+        if (urlString == null) return "";
+        try {
+            return new URL(urlString).getHost();
+        } catch (MalformedURLException e) {
+            return urlString;
+        }
+    }
+}
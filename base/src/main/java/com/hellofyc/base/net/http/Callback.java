@@ -0,0 +1,14 @@
+package com.hellofyc.base.net.http;
+
+/**
+ * Receives the result of {@link HttpUtils#enqueue(Callback)} on the main thread,
+ * canceled calls are never delivered.
+ *
+ * Created on 2016/6/22.
+ *
+ * @author Yucun Fang
+ */
+public interface Callback {
+
+    void onResponse(HttpResponse response);
+}
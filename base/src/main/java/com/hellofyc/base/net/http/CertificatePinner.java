@@ -0,0 +1,250 @@
+package com.hellofyc.base.net.http;
+
+import android.net.http.X509TrustManagerExtensions;
+import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
+import android.support.v4.util.LruCache;
+import android.util.Base64;
+import android.util.Pair;
+
+import com.hellofyc.base.util.FLog;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Restricts the certificates a host may present to chains containing one of its pinned
+ * public keys, e.g.
+ *
+ * <pre>
+ * CertificatePinner pinner = CertificatePinner.create()
+ *         .add("api.example.com", "sha256/AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=")
+ *         .add("*.example.com", "sha256/BBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBBB=");
+ * </pre>
+ *
+ * A pin is the SHA-256 hash of the certificate's SubjectPublicKeyInfo, so it survives
+ * certificate renewals with the same key. "*." matches exactly one leading label. A host
+ * matching several patterns accepts the pins of all of them, hosts without pins are not
+ * restricted.
+ *
+ * Pins are matched against the chain the trust manager validated, never against the raw
+ * certificates the server sent, which may carry any public certificate appended. Pins are
+ * decoded when added, a check costs two map lookups plus one digest per chain element, and
+ * is skipped for a leaf certificate that was already accepted for the host.
+ *
+ * Created on 2016/7/12.
+ *
+ * @author Yucun Fang
+ */
+public class CertificatePinner {
+
+    private static final String PREFIX_SHA256 = "sha256/";
+    private static final String PREFIX_WILDCARD = "*.";
+    private static final int VALIDATED_CACHE_SIZE = 32;
+
+    private volatile Map<String, Set<ByteBuffer>> mExactPins = Collections.emptyMap();
+    private volatile Map<String, Set<ByteBuffer>> mWildcardPins = Collections.emptyMap();
+    private final LruCache<String, Certificate> mValidatedLeaves = new LruCache<>(VALIDATED_CACHE_SIZE);
+    private final ArrayMap<Pair<HostnameVerifier, X509TrustManager>, HostnameVerifier> mVerifiers = new ArrayMap<>();
+
+    public CertificatePinner() {
+    }
+
+    public static CertificatePinner create() {
+        return new CertificatePinner();
+    }
+
+    /**
+     * @param hostPattern a host name or "*.domain"
+     * @param pins        "sha256/" followed by the base64 hash, see {@link #pin(Certificate)}
+     */
+    public synchronized CertificatePinner add(@NonNull String hostPattern, @NonNull String... pins) {
+        Set<ByteBuffer> hashes = new HashSet<>();
+        for (String pin : pins) {
+            if (!pin.startsWith(PREFIX_SHA256)) {
+                throw new IllegalArgumentException("Pins must start with " + PREFIX_SHA256 + ": " + pin);
+            }
+            byte[] hash = Base64.decode(pin.substring(PREFIX_SHA256.length()), Base64.DEFAULT);
+            if (hash.length != 32) {
+                throw new IllegalArgumentException("Invalid SHA-256 pin: " + pin);
+            }
+            hashes.add(ByteBuffer.wrap(hash));
+        }
+
+        String pattern = hostPattern.toLowerCase(Locale.US);
+        if (pattern.startsWith(PREFIX_WILDCARD)) {
+            mWildcardPins = merge(mWildcardPins, pattern.substring(PREFIX_WILDCARD.length()), hashes);
+        } else {
+            mExactPins = merge(mExactPins, pattern, hashes);
+        }
+        mValidatedLeaves.evictAll();
+        return this;
+    }
+
+    /**
+     * Pins the public key of the certificate, e.g. one bundled in the assets.
+     */
+    public CertificatePinner add(@NonNull String hostPattern, @NonNull Certificate certificate) {
+        return add(hostPattern, pin(certificate));
+    }
+
+    /**
+     * @return "sha256/" followed by the base64 SHA-256 hash of the certificate's public key
+     */
+    public static String pin(@NonNull Certificate certificate) {
+        return PREFIX_SHA256 + Base64.encodeToString(spkiSha256(certificate), Base64.NO_WRAP);
+    }
+
+    public boolean hasPins(@NonNull String hostname) {
+        return findPins(hostname.toLowerCase(Locale.US)) != null;
+    }
+
+    /**
+     * @param chain the validated chain, leaf first, as returned by
+     *              {@link X509TrustManagerExtensions#checkServerTrusted(X509Certificate[], String, String)}
+     */
+    public void check(@NonNull String hostname, @NonNull List<X509Certificate> chain)
+            throws SSLPeerUnverifiedException {
+        String host = hostname.toLowerCase(Locale.US);
+        Set<ByteBuffer> pins = findPins(host);
+        if (pins == null || chain.isEmpty()) return;
+
+        Certificate leaf = chain.get(0);
+        if (leaf.equals(mValidatedLeaves.get(host))) return;
+
+        for (Certificate certificate : chain) {
+            if (pins.contains(ByteBuffer.wrap(spkiSha256(certificate)))) {
+                mValidatedLeaves.put(host, leaf);
+                return;
+            }
+        }
+
+        StringBuilder builder = new StringBuilder("Certificate pinning failure for ").append(hostname);
+        for (Certificate certificate : chain) {
+            builder.append("\n  ").append(pin(certificate));
+        }
+        throw new SSLPeerUnverifiedException(builder.toString());
+    }
+
+    /**
+     * A verifier running the delegate, rebuilding the validated chain with the trust manager
+     * of the connection and then {@link #check(String, List)}. The same instance for the same
+     * arguments, so pooled connections stay shareable.
+     *
+     * @param trustManager the trust manager of the connection's SSLContext
+     */
+    public HostnameVerifier wrap(@NonNull HostnameVerifier delegate, @NonNull X509TrustManager trustManager) {
+        Pair<HostnameVerifier, X509TrustManager> key = Pair.create(delegate, trustManager);
+        synchronized (mVerifiers) {
+            HostnameVerifier verifier = mVerifiers.get(key);
+            if (verifier == null) {
+                verifier = new PinningHostnameVerifier(delegate, trustManager);
+                mVerifiers.put(key, verifier);
+            }
+            return verifier;
+        }
+    }
+
+    /**
+     * @return the pins of the host and of the wildcard covering it, null if there are none
+     */
+    private Set<ByteBuffer> findPins(String host) {
+        Set<ByteBuffer> exact = mExactPins.get(host);
+        int dot = host.indexOf('.');
+        Set<ByteBuffer> wildcard = dot > 0 ? mWildcardPins.get(host.substring(dot + 1)) : null;
+        if (exact == null) return wildcard;
+        if (wildcard == null) return exact;
+
+        Set<ByteBuffer> pins = new HashSet<>(exact);
+        pins.addAll(wildcard);
+        return pins;
+    }
+
+    private static Map<String, Set<ByteBuffer>> merge(Map<String, Set<ByteBuffer>> map, String key,
+                                                      Set<ByteBuffer> hashes) {
+        Map<String, Set<ByteBuffer>> copy = new HashMap<>(map);
+        Set<ByteBuffer> existing = copy.get(key);
+        if (existing != null) {
+            Set<ByteBuffer> merged = new HashSet<>(existing);
+            merged.addAll(hashes);
+            hashes = merged;
+        }
+        copy.put(key, Collections.unmodifiableSet(hashes));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private class PinningHostnameVerifier implements HostnameVerifier {
+        // the key exchange does not matter for building the chain
+        private static final String AUTH_TYPE = "RSA";
+
+        private final HostnameVerifier mDelegate;
+        private final PinnedTrustManager mPinnedTrustManager;
+        private final X509TrustManagerExtensions mExtensions;
+
+        PinningHostnameVerifier(HostnameVerifier delegate, X509TrustManager trustManager) {
+            mDelegate = delegate;
+            if (trustManager instanceof PinnedTrustManager) {
+                mPinnedTrustManager = (PinnedTrustManager) trustManager;
+                mExtensions = null;
+            } else {
+                mPinnedTrustManager = null;
+                mExtensions = new X509TrustManagerExtensions(trustManager);
+            }
+        }
+
+        @Override
+        public boolean verify(String hostname, SSLSession session) {
+            if (!mDelegate.verify(hostname, session)) return false;
+            try {
+                check(hostname, validatedChain(hostname, session));
+                return true;
+            } catch (SSLPeerUnverifiedException e) {
+                FLog.e(e.getMessage());
+                return false;
+            }
+        }
+
+        private List<X509Certificate> validatedChain(String hostname, SSLSession session)
+                throws SSLPeerUnverifiedException {
+            Certificate[] peer = session.getPeerCertificates();
+            X509Certificate[] chain = new X509Certificate[peer.length];
+            try {
+                for (int i = 0; i < peer.length; i++) {
+                    chain[i] = (X509Certificate) peer[i];
+                }
+                return mPinnedTrustManager != null
+                        ? mPinnedTrustManager.checkServerTrusted(chain, AUTH_TYPE, hostname)
+                        : mExtensions.checkServerTrusted(chain, AUTH_TYPE, hostname);
+            } catch (ClassCastException | CertificateException e) {
+                SSLPeerUnverifiedException exception = new SSLPeerUnverifiedException(
+                        "Untrusted chain for " + hostname + ": " + e.getMessage());
+                exception.initCause(e);
+                throw exception;
+            }
+        }
+    }
+
+    static byte[] spkiSha256(Certificate certificate) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(certificate.getPublicKey().getEncoded());
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
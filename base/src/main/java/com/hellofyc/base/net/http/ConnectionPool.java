@@ -0,0 +1,157 @@
+package com.hellofyc.base.net.http;
+
+import android.os.SystemClock;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
+
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per route (scheme + host + port) connection bookkeeping.
+ *
+ * The sockets themselves are pooled by the platform {@link java.net.HttpURLConnection}
+ * implementation, this class caps the number of concurrent connections per route and
+ * evicts routes which have been idle longer than the keep-alive duration.
+ *
+ * Created on 2016/6/20.
+ *
+ * @author Yucun Fang
+ */
+public class ConnectionPool {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    public static final long DEFAULT_KEEP_ALIVE_DURATION = 5 * 60 * 1000;
+
+    private final ArrayMap<String, Route> mRoutes = new ArrayMap<>();
+    private final int mMaxConnectionsPerRoute;
+    private final int mMaxIdleConnections;
+    private final long mKeepAliveDurationMillis;
+
+    public ConnectionPool() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_DURATION);
+    }
+
+    public ConnectionPool(@IntRange(from = 1) int maxConnectionsPerRoute,
+                          @IntRange(from = 0) int maxIdleConnections,
+                          @IntRange(from = 0) long keepAliveDurationMillis) {
+        if (maxConnectionsPerRoute < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerRoute < 1: " + maxConnectionsPerRoute);
+        }
+        mMaxConnectionsPerRoute = maxConnectionsPerRoute;
+        mMaxIdleConnections = maxIdleConnections;
+        mKeepAliveDurationMillis = keepAliveDurationMillis;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return mMaxConnectionsPerRoute;
+    }
+
+    public int getMaxIdleConnections() {
+        return mMaxIdleConnections;
+    }
+
+    public long getKeepAliveDuration() {
+        return mKeepAliveDurationMillis;
+    }
+
+    /**
+     * Blocks until a connection slot for the url's route is free.
+     *
+     * @throws InterruptedIOException if no slot became free within timeoutMillis
+     */
+    public Route acquire(@NonNull URL url, long timeoutMillis) throws InterruptedIOException {
+        Route route = getRoute(routeKey(url));
+        try {
+            if (!route.mPermits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new InterruptedIOException("Wait for connection timeout: " + route.mKey);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for connection: " + route.mKey);
+        }
+        return route;
+    }
+
+    public void release(Route route) {
+        if (route == null) return;
+        synchronized (this) {
+            route.mLastUsedTime = SystemClock.elapsedRealtime();
+        }
+        route.mPermits.release();
+    }
+
+    /**
+     * Drops the routes that have no connection in use and were idle
+     * longer than the keep-alive duration.
+     *
+     * @return the number of evicted routes
+     */
+    public synchronized int evictIdleRoutes() {
+        long now = SystemClock.elapsedRealtime();
+        int evictCount = 0;
+        Iterator<Map.Entry<String, Route>> iterator = mRoutes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Route route = iterator.next().getValue();
+            if (route.isIdle() && now - route.mLastUsedTime >= mKeepAliveDurationMillis) {
+                iterator.remove();
+                evictCount++;
+            }
+        }
+        return evictCount;
+    }
+
+    public synchronized int getRouteCount() {
+        return mRoutes.size();
+    }
+
+    public synchronized int getInUseCount(@NonNull URL url) {
+        Route route = mRoutes.get(routeKey(url));
+        return route == null ? 0 : mMaxConnectionsPerRoute - route.mPermits.availablePermits();
+    }
+
+    private synchronized Route getRoute(String key) {
+        Route route = mRoutes.get(key);
+        if (route == null) {
+            evictIdleRoutes();
+            route = new Route(key, mMaxConnectionsPerRoute);
+            mRoutes.put(key, route);
+        } else {
+            route.mLastUsedTime = SystemClock.elapsedRealtime();
+        }
+        return route;
+    }
+
+    static String routeKey(@NonNull URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getProtocol() + "://" + url.getHost() + ":" + port;
+    }
+
+    public static final class Route {
+        private final String mKey;
+        private final int mMaxPermits;
+        private final Semaphore mPermits;
+        private long mLastUsedTime;
+
+        Route(String key, int maxPermits) {
+            mKey = key;
+            mMaxPermits = maxPermits;
+            mPermits = new Semaphore(maxPermits, true);
+            mLastUsedTime = SystemClock.elapsedRealtime();
+        }
+
+        public String getKey() {
+            return mKey;
+        }
+
+        boolean isIdle() {
+            return mPermits.availablePermits() == mMaxPermits;
+        }
+    }
+}
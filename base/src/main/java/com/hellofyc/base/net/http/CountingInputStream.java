@@ -0,0 +1,46 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Created on 2016/6/29.
+ *
+ * @author Yucun Fang
+ */
+class CountingInputStream extends FilterInputStream {
+
+    private volatile long mCount = 0;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    long getCount() {
+        return mCount;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) mCount++;
+        return b;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int count) throws IOException {
+        int length = super.read(buffer, offset, count);
+        if (length > 0) mCount += length;
+        return length;
+    }
+
+    @Override
+    public long skip(long byteCount) throws IOException {
+        long skipped = super.skip(byteCount);
+        mCount += skipped;
+        return skipped;
+    }
+}
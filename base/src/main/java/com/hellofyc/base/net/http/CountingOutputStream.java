@@ -0,0 +1,37 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Created on 2016/7/15.
+ *
+ * @author Yucun Fang
+ */
+class CountingOutputStream extends FilterOutputStream {
+
+    private long mCount = 0;
+
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    long getCount() {
+        return mCount;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        mCount++;
+    }
+
+    @Override
+    public void write(@NonNull byte[] buffer, int offset, int count) throws IOException {
+        out.write(buffer, offset, count);
+        mCount += count;
+    }
+}
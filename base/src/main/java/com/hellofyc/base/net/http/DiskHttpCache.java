@@ -0,0 +1,174 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import com.hellofyc.base.util.FLog;
+import com.hellofyc.base.util.FileUtils;
+import com.hellofyc.base.util.IoUtils;
+import com.hellofyc.base.util.MD5Utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU {@link HttpCache} stored as one file per entry, evicting the least recently
+ * used files once the directory exceeds its size budget.
+ *
+ * Created on 2016/7/1.
+ *
+ * @author Yucun Fang
+ */
+public class DiskHttpCache implements HttpCache {
+    private static final boolean DEBUG = false;
+
+    private static final String SUFFIX_TEMP = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    private final LinkedHashMap<String, Long> mFileSizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long mSize = 0;
+    private boolean mInitialized = false;
+
+    public DiskHttpCache(@NonNull File directory, @IntRange(from = 1) long maxSizeInBytes) {
+        mDirectory = directory;
+        mMaxSize = maxSizeInBytes;
+    }
+
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized long getSize() {
+        initialize();
+        return mSize;
+    }
+
+    @Override
+    public synchronized CacheEntry get(@NonNull String key) {
+        initialize();
+        String fileName = fileName(key);
+        if (mFileSizes.get(fileName) == null) return null;
+
+        File file = new File(mDirectory, fileName);
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            CacheEntry entry = CacheEntry.readFrom(inputStream);
+            if (!key.equals(entry.getUrl())) return null;
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (IOException e) {
+            if (DEBUG) FLog.e(e);
+            deleteFile(fileName);
+            return null;
+        } finally {
+            IoUtils.close(inputStream);
+        }
+    }
+
+    @Override
+    public synchronized void put(@NonNull String key, @NonNull CacheEntry entry) {
+        initialize();
+        if (entry.size() > mMaxSize) return;
+
+        String fileName = fileName(key);
+        File tempFile = new File(mDirectory, fileName + SUFFIX_TEMP);
+        DataOutputStream outputStream = null;
+        try {
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            entry.writeTo(outputStream);
+            outputStream.close();
+            outputStream = null;
+
+            File file = new File(mDirectory, fileName);
+            deleteFile(fileName);
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Rename failed: " + file);
+            }
+            long length = file.length();
+            mFileSizes.put(fileName, length);
+            mSize += length;
+            trimToSize();
+        } catch (IOException e) {
+            if (DEBUG) FLog.e(e);
+            IoUtils.close(outputStream);
+            FileUtils.deleteFile(tempFile);
+        }
+    }
+
+    @Override
+    public synchronized void remove(@NonNull String key) {
+        initialize();
+        deleteFile(fileName(key));
+    }
+
+    @Override
+    public synchronized void clear() {
+        initialize();
+        for (String fileName : mFileSizes.keySet().toArray(new String[mFileSizes.size()])) {
+            deleteFile(fileName);
+        }
+    }
+
+    private void initialize() {
+        if (mInitialized) return;
+        mInitialized = true;
+
+        FileUtils.createDir(mDirectory);
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX_TEMP)) {
+                FileUtils.deleteFile(file);
+                continue;
+            }
+            mFileSizes.put(file.getName(), file.length());
+            mSize += file.length();
+        }
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = mFileSizes.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            mSize -= eldest.getValue();
+            FileUtils.deleteFile(new File(mDirectory, eldest.getKey()));
+        }
+    }
+
+    private void deleteFile(String fileName) {
+        Long length = mFileSizes.remove(fileName);
+        if (length != null) {
+            mSize -= length;
+        }
+        FileUtils.deleteFile(new File(mDirectory, fileName));
+    }
+
+    private static String fileName(String key) {
+        return MD5Utils.encode(key);
+    }
+}
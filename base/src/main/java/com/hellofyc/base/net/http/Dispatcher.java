@@ -0,0 +1,176 @@
+package com.hellofyc.base.net.http;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link Call}s in priority order with a bound on the total number of running
+ * calls and on the number of running calls per host. Calls above the limits wait in
+ * the queue instead of taking a thread.
+ *
+ * Created on 2016/6/22.
+ *
+ * @author Yucun Fang
+ */
+public class Dispatcher {
+
+    public static final int DEFAULT_MAX_REQUESTS = 16;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = ConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    private final TreeSet<Call> mReadyCalls = new TreeSet<>();
+    private final List<Call> mRunningCalls = new ArrayList<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private int mMaxRequests = DEFAULT_MAX_REQUESTS;
+    private int mMaxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+    private ExecutorService mExecutorService;
+
+    public Dispatcher() {
+    }
+
+    public Dispatcher(@NonNull ExecutorService executorService) {
+        mExecutorService = executorService;
+    }
+
+    public synchronized Dispatcher setMaxRequests(@IntRange(from = 1) int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("maxRequests < 1: " + maxRequests);
+        }
+        mMaxRequests = maxRequests;
+        promoteCalls();
+        return this;
+    }
+
+    public synchronized Dispatcher setMaxRequestsPerHost(@IntRange(from = 1) int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("maxRequestsPerHost < 1: " + maxRequestsPerHost);
+        }
+        mMaxRequestsPerHost = maxRequestsPerHost;
+        promoteCalls();
+        return this;
+    }
+
+    public synchronized int getMaxRequests() {
+        return mMaxRequests;
+    }
+
+    public synchronized int getMaxRequestsPerHost() {
+        return mMaxRequestsPerHost;
+    }
+
+    public synchronized int getQueuedCallsCount() {
+        return mReadyCalls.size();
+    }
+
+    public synchronized int getRunningCallsCount() {
+        return mRunningCalls.size();
+    }
+
+    synchronized void enqueue(@NonNull Call call) {
+        mReadyCalls.add(call);
+        promoteCalls();
+    }
+
+    /**
+     * Cancels every queued and running call whose tag equals the given tag.
+     */
+    public void cancel(@NonNull Object tag) {
+        List<Call> calls = new ArrayList<>();
+        synchronized (this) {
+            for (Call call : mReadyCalls) {
+                if (tag.equals(call.getTag())) calls.add(call);
+            }
+            for (Call call : mRunningCalls) {
+                if (tag.equals(call.getTag())) calls.add(call);
+            }
+        }
+        for (Call call : calls) {
+            call.cancel();
+        }
+    }
+
+    public void cancelAll() {
+        List<Call> calls = new ArrayList<>();
+        synchronized (this) {
+            calls.addAll(mReadyCalls);
+            calls.addAll(mRunningCalls);
+        }
+        for (Call call : calls) {
+            call.cancel();
+        }
+    }
+
+    synchronized void remove(Call call) {
+        mReadyCalls.remove(call);
+    }
+
+    synchronized void finished(Call call) {
+        mRunningCalls.remove(call);
+        promoteCalls();
+    }
+
+    void deliver(Runnable runnable) {
+        mMainHandler.post(runnable);
+    }
+
+    private void promoteCalls() {
+        if (mRunningCalls.size() >= mMaxRequests) return;
+
+        Iterator<Call> iterator = mReadyCalls.iterator();
+        while (iterator.hasNext() && mRunningCalls.size() < mMaxRequests) {
+            Call call = iterator.next();
+            if (runningCallsForHost(call.getHost()) < mMaxRequestsPerHost) {
+                iterator.remove();
+                mRunningCalls.add(call);
+                try {
+                    getExecutorService().execute(call);
+                } catch (RejectedExecutionException e) {
+                    // a shut down or saturated executor, the call gives its slots back
+                    mRunningCalls.remove(call);
+                    call.fail(e);
+                }
+            }
+        }
+    }
+
+    private int runningCallsForHost(String host) {
+        int count = 0;
+        for (Call call : mRunningCalls) {
+            if (call.getHost().equals(host)) count++;
+        }
+        return count;
+    }
+
+    private ExecutorService getExecutorService() {
+        if (mExecutorService == null) {
+            mExecutorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new DispatcherThreadFactory());
+        }
+        return mExecutorService;
+    }
+
+    private static class DispatcherThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "HttpDispatcher #" + mCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.hellofyc.base.net.http;
+
+/**
+ * Observes the phases of every network attempt made through an engine, see
+ * {@link HttpEngine#setEventListener(EventListener)}. Retries and hedged duplicates are
+ * reported as attempts of their own.
+ *
+ * Callbacks run on the requesting thread and must return quickly. {@link #callEnd(RequestMetrics)}
+ * of a response read with {@link HttpUtils#execute()} is delayed until its body is closed.
+ *
+ * Created on 2016/7/11.
+ *
+ * @author Yucun Fang
+ */
+public abstract class EventListener {
+
+    public void callStart(RequestMetrics metrics) {
+    }
+
+    /**
+     * Only called when the engine's {@link com.hellofyc.base.net.dns.Dns} resolved the host.
+     */
+    public void dnsEnd(RequestMetrics metrics) {
+    }
+
+    public void connectEnd(RequestMetrics metrics) {
+    }
+
+    public void requestEnd(RequestMetrics metrics) {
+    }
+
+    public void responseHeadersEnd(RequestMetrics metrics) {
+    }
+
+    /**
+     * Called once per attempt, also for cache hits and failures, see {@link RequestMetrics#getError()}.
+     */
+    public void callEnd(RequestMetrics metrics) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.FloatRange;
+import android.support.annotation.IntRange;
+
+/**
+ * Fixed memory latency histogram in milliseconds.
+ *
+ * Values below 16 are counted exactly, larger values fall into 8 buckets per power of
+ * two, so a percentile is at most 12.5% above the recorded value. Recording never allocates.
+ *
+ * Created on 2016/7/11.
+ *
+ * @author Yucun Fang
+ */
+public class Histogram {
+
+    private static final int EXACT_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MIN_EXPONENT = 4;
+    private static final int MAX_EXPONENT = 30;
+    private static final int BUCKET_COUNT = EXACT_BUCKETS + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final long[] mCounts = new long[BUCKET_COUNT];
+    private long mCount = 0;
+    private long mSum = 0;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax = 0;
+
+    public synchronized void record(@IntRange(from = 0) long millis) {
+        if (millis < 0) return;
+
+        mCounts[bucketIndex(millis)]++;
+        mCount++;
+        mSum += millis;
+        if (millis < mMin) mMin = millis;
+        if (millis > mMax) mMax = millis;
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    public synchronized long getMin() {
+        return mCount == 0 ? 0 : mMin;
+    }
+
+    public synchronized long getMax() {
+        return mMax;
+    }
+
+    public synchronized long getMean() {
+        return mCount == 0 ? 0 : mSum / mCount;
+    }
+
+    /**
+     * @param percentile e.g. 0.99
+     * @return the upper bound of the bucket holding the percentile, 0 if nothing was recorded
+     */
+    public synchronized long getPercentile(@FloatRange(from = 0, to = 1) double percentile) {
+        if (mCount == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * mCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return Math.min(Math.max(bucketUpperBound(i), mMin), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts[i] = 0;
+        }
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = 0;
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < EXACT_BUCKETS) return (int) value;
+
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        int subBucket = (int) (Math.min(value >> (exponent - SUB_BUCKET_BITS), 2 * SUB_BUCKETS - 1)) - SUB_BUCKETS;
+        return EXACT_BUCKETS + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < EXACT_BUCKETS) return index;
+
+        int exponent = (index - EXACT_BUCKETS) / SUB_BUCKETS + MIN_EXPONENT;
+        int subBucket = (index - EXACT_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "count:" + mCount + " p50:" + getPercentile(0.5) + " p95:" + getPercentile(0.95)
+                + " p99:" + getPercentile(0.99) + " max:" + mMax;
+    }
+}
@@ -0,0 +1,27 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Response cache used by {@link HttpUtils} for GET requests, see
+ * {@link HttpEngine#setCache(HttpCache)}.
+ *
+ * Implementations must be thread safe.
+ *
+ * Created on 2016/7/1.
+ *
+ * @author Yucun Fang
+ */
+public interface HttpCache {
+
+    /**
+     * @return the entry stored for key or null
+     */
+    CacheEntry get(@NonNull String key);
+
+    void put(@NonNull String key, @NonNull CacheEntry entry);
+
+    void remove(@NonNull String key);
+
+    void clear();
+}
@@ -0,0 +1,224 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+
+import com.hellofyc.base.net.dns.Dns;
+import com.hellofyc.base.util.IoUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Shared client engine behind {@link HttpUtils} and {@link HttpsUtils}.
+ *
+ * Connections are not disconnected after a request, their bodies are consumed and
+ * closed instead so the platform keeps the socket alive and the next request to the
+ * same route skips the TCP and TLS handshake.
+ *
+ * Created on 2016/6/20.
+ *
+ * @author Yucun Fang
+ */
+public class HttpEngine {
+
+    private static final int DISCARD_BUFFER_SIZE = 2 * 1024;
+
+    private static HttpEngine sDefault;
+
+    private final ConnectionPool mConnectionPool;
+    private final Dispatcher mDispatcher;
+    private volatile HttpCache mCache;
+    private volatile RetryPolicy mRetryPolicy;
+    private volatile Dns mDns;
+    private volatile SingleFlight mSingleFlight;
+    private volatile EventListener mEventListener;
+
+    public HttpEngine() {
+        this(new ConnectionPool());
+    }
+
+    public HttpEngine(@NonNull ConnectionPool connectionPool) {
+        this(connectionPool, new Dispatcher());
+    }
+
+    public HttpEngine(@NonNull ConnectionPool connectionPool, @NonNull Dispatcher dispatcher) {
+        mConnectionPool = connectionPool;
+        mDispatcher = dispatcher;
+    }
+
+    public static synchronized HttpEngine getDefault() {
+        if (sDefault == null) {
+            setDefault(new HttpEngine());
+        }
+        return sDefault;
+    }
+
+    /**
+     * The platform reads the keep-alive settings once, call this before the first request.
+     */
+    public static synchronized void setDefault(@NonNull HttpEngine engine) {
+        sDefault = engine;
+        ConnectionPool pool = engine.getConnectionPool();
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(pool.getMaxIdleConnections()));
+        System.setProperty("http.keepAliveDuration", String.valueOf(pool.getKeepAliveDuration()));
+    }
+
+    /**
+     * Cancels the calls tagged with tag on the default engine, does nothing if no
+     * request was made yet.
+     */
+    public static void cancel(@NonNull Object tag) {
+        HttpEngine engine;
+        synchronized (HttpEngine.class) {
+            engine = sDefault;
+        }
+        if (engine != null) {
+            engine.getDispatcher().cancel(tag);
+        }
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return mConnectionPool;
+    }
+
+    public Dispatcher getDispatcher() {
+        return mDispatcher;
+    }
+
+    /**
+     * Caches GET responses, e.g. a {@link LayeredHttpCache} of {@link MemoryHttpCache}
+     * and {@link DiskHttpCache}.
+     *
+     * @param cache null to disable caching
+     */
+    public HttpEngine setCache(HttpCache cache) {
+        mCache = cache;
+        return this;
+    }
+
+    public HttpCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * Default retry policy of the engine's requests.
+     *
+     * @param policy null to never retry
+     */
+    public HttpEngine setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    /**
+     * Resolves the hosts of plain http requests, which then connect to the address
+     * directly and send the original host in the Host header. https requests keep the
+     * system resolver so SNI and hostname verification see the real host.
+     *
+     * @param dns null to use the system resolver
+     */
+    public HttpEngine setDns(Dns dns) {
+        mDns = dns;
+        return this;
+    }
+
+    public Dns getDns() {
+        return mDns;
+    }
+
+    /**
+     * Shares one network call between concurrent identical GET requests made with
+     * {@link HttpUtils#request()}.
+     *
+     * @param singleFlight null to disable coalescing
+     */
+    public HttpEngine setSingleFlight(SingleFlight singleFlight) {
+        mSingleFlight = singleFlight;
+        return this;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return mSingleFlight;
+    }
+
+    /**
+     * Receives the timings of every network attempt, e.g. a {@link HttpMetrics}.
+     *
+     * @param listener null to stop measuring
+     */
+    public HttpEngine setEventListener(EventListener listener) {
+        mEventListener = listener;
+        return this;
+    }
+
+    public EventListener getEventListener() {
+        return mEventListener;
+    }
+
+    /**
+     * Waits for a free slot on the url's route and opens a connection to it.
+     * Every call must be paired with {@link #release(Connection, boolean)}.
+     */
+    public Connection open(@NonNull URL url, long waitTimeoutMillis) throws IOException {
+        ConnectionPool.Route route = mConnectionPool.acquire(url, waitTimeoutMillis);
+        try {
+            return new Connection(route, (HttpURLConnection) url.openConnection());
+        } catch (IOException | RuntimeException e) {
+            mConnectionPool.release(route);
+            throw e;
+        }
+    }
+
+    /**
+     * @param reusable false if the exchange failed and the socket must not go back to the pool
+     */
+    public void release(Connection connection, boolean reusable) {
+        if (connection == null) return;
+
+        if (!reusable) {
+            connection.mConnection.disconnect();
+        }
+        mConnectionPool.release(connection.mRoute);
+    }
+
+    /**
+     * Reads the remaining bytes of the stream so the underlying socket can be reused.
+     */
+    public static void discard(InputStream inputStream) {
+        if (inputStream == null) return;
+
+        byte[] buffer = new byte[DISCARD_BUFFER_SIZE];
+        try {
+            //noinspection StatementWithEmptyBody
+            while (inputStream.read(buffer) != -1);
+        } catch (IOException ignored) {
+        } finally {
+            IoUtils.close(inputStream);
+        }
+    }
+
+    public static final class Connection {
+        private final ConnectionPool.Route mRoute;
+        private final HttpURLConnection mConnection;
+
+        Connection(ConnectionPool.Route route, HttpURLConnection connection) {
+            mRoute = route;
+            mConnection = connection;
+        }
+
+        public HttpURLConnection getHttpURLConnection() {
+            return mConnection;
+        }
+
+        public ConnectionPool.Route getRoute() {
+            return mRoute;
+        }
+    }
+}
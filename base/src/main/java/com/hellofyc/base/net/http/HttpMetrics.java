@@ -0,0 +1,171 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link EventListener} aggregating the attempts of an engine per host, e.g.
+ *
+ * <pre>
+ * HttpMetrics metrics = new HttpMetrics();
+ * HttpEngine.getDefault().setEventListener(metrics);
+ * ...
+ * long p95 = metrics.getHostStats("api.example.com").getTotal().getPercentile(0.95);
+ * </pre>
+ *
+ * Created on 2016/7/11.
+ *
+ * @author Yucun Fang
+ */
+public class HttpMetrics extends EventListener {
+
+    private final ArrayMap<String, HostStats> mHostStats = new ArrayMap<>();
+
+    @Override
+    public void callEnd(RequestMetrics metrics) {
+        HostStats stats;
+        synchronized (mHostStats) {
+            stats = mHostStats.get(metrics.getHost());
+            if (stats == null) {
+                stats = new HostStats(metrics.getHost());
+                mHostStats.put(metrics.getHost(), stats);
+            }
+        }
+        stats.record(metrics);
+    }
+
+    /**
+     * @return null if no request was made to the host
+     */
+    public HostStats getHostStats(@NonNull String host) {
+        synchronized (mHostStats) {
+            return mHostStats.get(host);
+        }
+    }
+
+    public List<String> getHosts() {
+        synchronized (mHostStats) {
+            return new ArrayList<>(mHostStats.keySet());
+        }
+    }
+
+    public void reset() {
+        synchronized (mHostStats) {
+            mHostStats.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (mHostStats) {
+            for (HostStats stats : mHostStats.values()) {
+                builder.append(stats).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    public static class HostStats {
+        private final String mHost;
+        private final Histogram mDns = new Histogram();
+        private final Histogram mConnect = new Histogram();
+        private final Histogram mTls = new Histogram();
+        private final Histogram mTimeToFirstByte = new Histogram();
+        private final Histogram mBody = new Histogram();
+        private final Histogram mTotal = new Histogram();
+        private long mRequestCount = 0;
+        private long mFailureCount = 0;
+        private long mCacheHitCount = 0;
+        private long mBytesOut = 0;
+        private long mBytesIn = 0;
+
+        HostStats(String host) {
+            mHost = host;
+        }
+
+        void record(RequestMetrics metrics) {
+            synchronized (this) {
+                mRequestCount++;
+                if (!metrics.isSuccess()) mFailureCount++;
+                if (metrics.isFromCache() && metrics.getTimeToFirstByteMillis() < 0) {
+                    mCacheHitCount++;
+                    return;
+                }
+                mBytesOut += metrics.getBytesOut();
+                mBytesIn += metrics.getBytesIn();
+            }
+            mDns.record(metrics.getDnsMillis());
+            mConnect.record(metrics.getConnectMillis());
+            mTls.record(metrics.getTlsMillis());
+            mTimeToFirstByte.record(metrics.getTimeToFirstByteMillis());
+            mBody.record(metrics.getBodyMillis());
+            if (metrics.isSuccess()) mTotal.record(metrics.getTotalMillis());
+        }
+
+        public String getHost() {
+            return mHost;
+        }
+
+        public Histogram getDns() {
+            return mDns;
+        }
+
+        public Histogram getConnect() {
+            return mConnect;
+        }
+
+        public Histogram getTls() {
+            return mTls;
+        }
+
+        public Histogram getTimeToFirstByte() {
+            return mTimeToFirstByte;
+        }
+
+        public Histogram getBody() {
+            return mBody;
+        }
+
+        /**
+         * Total time of the successful network attempts.
+         */
+        public Histogram getTotal() {
+            return mTotal;
+        }
+
+        public synchronized long getRequestCount() {
+            return mRequestCount;
+        }
+
+        public synchronized long getFailureCount() {
+            return mFailureCount;
+        }
+
+        /**
+         * Attempts answered by a fresh cache entry without touching the network.
+         */
+        public synchronized long getCacheHitCount() {
+            return mCacheHitCount;
+        }
+
+        public synchronized long getBytesOut() {
+            return mBytesOut;
+        }
+
+        public synchronized long getBytesIn() {
+            return mBytesIn;
+        }
+
+        @Override
+        public String toString() {
+            return mHost + " requests:" + getRequestCount() + " failures:" + getFailureCount()
+                    + " cacheHits:" + getCacheHitCount() + " out:" + getBytesOut() + " in:" + getBytesIn()
+                    + "\n  total " + mTotal + "\n  ttfb " + mTimeToFirstByte + "\n  connect " + mConnect
+                    + "\n  tls " + mTls + "\n  dns " + mDns + "\n  body " + mBody;
+        }
+    }
+}
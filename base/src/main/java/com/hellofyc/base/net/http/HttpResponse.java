@@ -1,5 +1,7 @@
 package com.hellofyc.base.net.http;
 
+import java.io.File;
+
 /**
  * Created on 2015/10/9.
  *
@@ -10,10 +12,76 @@ public class HttpResponse {
     public static final int STATUS_CODE_OK       = 200;
     public static final int STATUS_CODE_UNKNOWN  = -1;
     public static final int STATUS_CODE_NET      = -2;
+    public static final int STATUS_CODE_CANCELED = -3;
 
     public int code;
     public String text;
 
+    /**
+     * Open body of a successful {@link HttpUtils#execute()}, null otherwise.
+     */
+    public ResponseBody body;
+
+    /**
+     * Destination of the body when {@link HttpUtils#setOutputFile(java.io.File)} is used.
+     */
+    public File file;
+
+    /**
+     * Request body bytes as sent, after gzip if it was applied.
+     */
+    public long requestBodyBytes;
+
+    /**
+     * Response body bytes as received from the network.
+     */
+    public long wireBytes;
+
+    /**
+     * Response body bytes after gzip/deflate decoding.
+     */
+    public long decodedBytes;
+
+    /**
+     * True if the body was served from the {@link HttpCache}, either fresh,
+     * revalidated by a 304 or stale after an error.
+     */
+    public boolean fromCache;
+
+    /**
+     * True if a stale cached body was served because the network failed.
+     */
+    public boolean stale;
+
+    /**
+     * Timings of the attempt that produced the response, null unless the engine has an
+     * {@link EventListener}. Still filling in while {@link #body} is open.
+     */
+    public RequestMetrics metrics;
+
+    /**
+     * The exception that failed the request, null if it got a response or was canceled.
+     */
+    public Throwable error;
+
+    /**
+     * Shallow copy for callers sharing one buffered response, the body is not copied.
+     */
+    HttpResponse copy() {
+        HttpResponse response = new HttpResponse();
+        response.code = code;
+        response.text = text;
+        response.file = file;
+        response.requestBodyBytes = requestBodyBytes;
+        response.wireBytes = wireBytes;
+        response.decodedBytes = decodedBytes;
+        response.fromCache = fromCache;
+        response.stale = stale;
+        response.metrics = metrics;
+        response.error = error;
+        return response;
+    }
+
     public boolean isSuccess() {
         return code == STATUS_CODE_OK;
     }
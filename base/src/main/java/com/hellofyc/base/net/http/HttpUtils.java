@@ -16,41 +16,62 @@
 
 package com.hellofyc.base.net.http;
 
+import android.annotation.SuppressLint;
 import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import android.support.v4.util.ArrayMap;
 import android.text.TextUtils;
 
+import com.hellofyc.base.json.JsonWriter;
+import com.hellofyc.base.net.dns.CachingDns;
+import com.hellofyc.base.net.dns.Dns;
 import com.hellofyc.base.util.EncodeUtils;
 import com.hellofyc.base.util.FLog;
 import com.hellofyc.base.util.IoUtils;
+import com.hellofyc.base.util.NetUtils;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
-public class HttpUtils {
+public class HttpUtils implements Cloneable {
 
     private static final int TYPE_TEXT       = 1;
     private static final int TYPE_BITMAP     = 2;
     private static final int TYPE_FILE       = 3;
+    private static final int TYPE_JSON       = 4;
 
     private static final String BOUNDARY = UUID.randomUUID().toString();
 
     private static final String CONTENT_TYPE_TEXT     = "application/x-www-form-urlencoded";
 	private static final String CONTENT_TYPE_FILE     = "multipart/form-data; boundary=" + BOUNDARY;
+    private static final String CONTENT_TYPE_JSON     = "application/json; charset=utf-8";
     private static final String PREFIX = "--";
 
 	private static final String LINE_END = "\r\n";
 
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
     private boolean mDebug = false;
     private HttpRequest mRequestParams = HttpRequest.create();
     private Method mMethod = Method.POST;
@@ -61,6 +82,26 @@ public class HttpUtils {
     private ArrayMap<String, File> mFileMap;
     private int mType = TYPE_TEXT;
     private String mUserAgent = "Android";
+    private HttpEngine mEngine = HttpEngine.getDefault();
+    private Object mTag;
+    private Priority mPriority = Priority.NORMAL;
+    private volatile boolean mCanceled = false;
+    /** Notified by {@link #cancel()} to end a retry backoff, shared with the hedged copies. */
+    private final Object mCancelLock = new Object();
+    private volatile HttpURLConnection mConnection;
+    private File mOutputFile;
+    private ProgressListener mUploadProgressListener;
+    private boolean mCompressionEnabled = true;
+    private int mGzipRequestThreshold = -1;
+    private long mRequestBodyBytes = 0;
+    private boolean mCacheEnabled = true;
+    private boolean mServeStaleOnError = false;
+    private RetryPolicy mRetryPolicy;
+    private volatile List<HttpUtils> mHedgedAttempts;
+    private Object mJsonBody;
+    private byte[] mRequestBody;
+    private MultipartBody mMultipartBody;
+    private Object mPendingJsonBody;
 
     protected HttpUtils() {
     }
@@ -114,49 +155,597 @@ public class HttpUtils {
         return this;
     }
 
+    /**
+     * Posts the value as application/json instead of the form params, streamed with
+     * {@link JsonWriter#writeValue(Object)} in chunked mode. A null value posts the
+     * params of {@link #setReqeustParams(HttpRequest)} as a JSON object.
+     */
+    public HttpUtils setJsonBody(Object body) {
+        mType = TYPE_JSON;
+        mJsonBody = body;
+        return this;
+    }
+
+    /**
+     * Reports the upload progress of {@link #setFiles(Map)} on the requesting thread.
+     */
+    public HttpUtils setUploadProgressListener(ProgressListener listener) {
+        mUploadProgressListener = listener;
+        return this;
+    }
+
     public HttpUtils setUserAgent(@NonNull String userAgent) {
         mUserAgent = userAgent;
         return this;
     }
 
+    /**
+     * Streams a successful response body of {@link #request()} to the file
+     * instead of {@link HttpResponse#text}.
+     */
+    public HttpUtils setOutputFile(@NonNull File file) {
+        mOutputFile = file;
+        return this;
+    }
+
+    /**
+     * Negotiates gzip/deflate responses, enabled by default.
+     */
+    public HttpUtils setCompressionEnabled(boolean enabled) {
+        mCompressionEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Gzips form POST bodies of at least minBytes, the server must accept
+     * Content-Encoding: gzip. Disabled by default.
+     *
+     * @param minBytes -1 to disable
+     */
+    public HttpUtils setGzipRequestThreshold(@IntRange(from = -1) int minBytes) {
+        mGzipRequestThreshold = minBytes;
+        return this;
+    }
+
+    /**
+     * Uses the engine's {@link HttpCache} for this GET request, enabled by default.
+     */
+    public HttpUtils setCacheEnabled(boolean enabled) {
+        mCacheEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Serves a stale cached response instead of a network or server error.
+     */
+    public HttpUtils setServeStaleOnError(boolean serveStaleOnError) {
+        mServeStaleOnError = serveStaleOnError;
+        return this;
+    }
+
+    /**
+     * Overrides the engine's {@link RetryPolicy} for this request.
+     */
+    public HttpUtils setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+        return this;
+    }
+
+    public HttpUtils setEngine(@NonNull HttpEngine engine) {
+        mEngine = engine;
+        return this;
+    }
+
+    /**
+     * Tag used by {@link Dispatcher#cancel(Object)}, usually the Activity or Fragment.
+     */
+    public HttpUtils setTag(Object tag) {
+        mTag = tag;
+        return this;
+    }
+
+    public HttpUtils setPriority(@NonNull Priority priority) {
+        mPriority = priority;
+        return this;
+    }
+
+    public String getUrl() {
+        return mUrlString;
+    }
+
+    public Method getMethod() {
+        return mMethod;
+    }
+
+    public HttpRequest getRequestParams() {
+        return mRequestParams;
+    }
+
+    public Object getTag() {
+        return mTag;
+    }
+
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Aborts the request, a running connection is disconnected.
+     */
+    public void cancel() {
+        mCanceled = true;
+        synchronized (mCancelLock) {
+            mCancelLock.notifyAll();
+        }
+        List<HttpUtils> attempts = mHedgedAttempts;
+        if (attempts != null) {
+            synchronized (attempts) {
+                for (HttpUtils attempt : attempts) {
+                    attempt.cancel();
+                }
+            }
+        }
+        HttpURLConnection connection = mConnection;
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Runs the request on the engine's {@link Dispatcher}.
+     *
+     * @param callback called on the main thread, may be null
+     */
+    public Call enqueue(Callback callback) {
+        Call call = new Call(this, callback, mEngine.getDispatcher());
+        mEngine.getDispatcher().enqueue(call);
+        return call;
+    }
+
 	public HttpResponse request(){
+        SingleFlight singleFlight = mEngine.getSingleFlight();
+        if (singleFlight != null && mMethod == Method.GET && mType == TYPE_TEXT && mOutputFile == null
+                && isCoalescable()) {
+            return singleFlight.request(this);
+        }
+        return requestDirect();
+	}
+
+    /**
+     * @return false if the request may not share a response with another one, see {@link SingleFlight}
+     */
+    protected boolean isCoalescable() {
+        return true;
+    }
+
+    /**
+     * Appends every setting that changes the response, {@link SingleFlight} only lets
+     * requests with equal settings share one.
+     */
+    protected void appendResponseSettings(StringBuilder builder) {
+        builder.append(getClass().getName())
+                .append(" engine=").append(System.identityHashCode(mEngine))
+                .append(" retry=").append(System.identityHashCode(getRetryPolicy()))
+                .append(" cache=").append(mCacheEnabled)
+                .append(" stale=").append(mServeStaleOnError)
+                .append(" compression=").append(mCompressionEnabled)
+                .append(" timeouts=").append(mConnectTimeout).append('/').append(mReadTimeout)
+                .append(" ua=").append(mUserAgent);
+    }
+
+    HttpResponse requestDirect() {
+        RetryPolicy policy = getRetryPolicy();
+        if (policy != null && policy.isHedgingEnabled() && policy.isIdempotent(mMethod) && mOutputFile == null) {
+            long hedgeDelayMillis = policy.getHedgeDelayMillis();
+            if (hedgeDelayMillis >= 0) {
+                return requestHedged(policy, hedgeDelayMillis);
+            }
+        }
+        return readResponse(execute());
+    }
+
+    private HttpResponse readResponse(HttpResponse response) {
+        ResponseBody body = response.body;
+        if (body == null) return response;
+
+        try {
+            if (mOutputFile != null) {
+                body.writeTo(mOutputFile);
+                response.file = mOutputFile;
+            } else {
+                response.text = body.string();
+                if (mDebug) FLog.i("===responseText:" + response.text);
+            }
+        } catch (IOException e) {
+            if (mDebug) FLog.e(e);
+            setError(response, e);
+        } finally {
+            body.close();
+            response.wireBytes = response.fromCache ? 0 : body.wireBytes();
+            response.decodedBytes = body.decodedBytes();
+            response.body = null;
+        }
+        return response;
+    }
+
+    /**
+     * Starts the request, and a duplicate of it if no response arrived within
+     * hedgeDelayMillis, and returns the first definitive response. Each copy is a single
+     * attempt, hedging takes the place of the retries.
+     */
+    private HttpResponse requestHedged(RetryPolicy policy, long hedgeDelayMillis) {
+        ExecutorCompletionService<HttpResponse> service = new ExecutorCompletionService<>(policy.getHedgeExecutor());
+        List<HttpUtils> attempts = new ArrayList<>(2);
+        mHedgedAttempts = attempts;
+        policy.recordRequest();
+        try {
+            submitAttempt(service, attempts, policy);
+            Future<HttpResponse> future = service.poll(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+            if (future == null && !mCanceled && policy.acquireBudget()) {
+                if (mDebug) FLog.i("===hedge after " + hedgeDelayMillis + "ms");
+                submitAttempt(service, attempts, policy);
+            }
+
+            HttpResponse response = null;
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                if (future == null) future = service.take();
+                response = getAttemptResponse(future);
+                future = null;
+                if (response.isSuccess() || !policy.isRetryable(response)) break;
+            }
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            HttpResponse response = new HttpResponse();
+            mCanceled = true;
+            setError(response);
+            return response;
+        } finally {
+            mHedgedAttempts = null;
+            synchronized (attempts) {
+                for (HttpUtils attempt : attempts) {
+                    attempt.cancel();
+                }
+            }
+        }
+    }
+
+    private void submitAttempt(ExecutorCompletionService<HttpResponse> service, List<HttpUtils> attempts,
+                               final RetryPolicy policy) {
+        final HttpUtils attempt = newAttempt();
+        synchronized (attempts) {
+            attempts.add(attempt);
+        }
+        service.submit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return attempt.readResponse(attempt.executeOnce(policy));
+            }
+        });
+    }
+
+    private HttpResponse getAttemptResponse(Future<HttpResponse> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (mDebug) FLog.e(e.getCause());
+            HttpResponse response = new HttpResponse();
+            setError(response, e.getCause());
+            return response;
+        }
+    }
+
+    /**
+     * A copy of this request with fresh per-call state.
+     */
+    protected HttpUtils newAttempt() {
+        try {
+            HttpUtils attempt = (HttpUtils) clone();
+            attempt.mCanceled = false;
+            attempt.mConnection = null;
+            attempt.mHedgedAttempts = null;
+            attempt.mRequestBodyBytes = 0;
+            attempt.mRequestBody = null;
+            attempt.mMultipartBody = null;
+            attempt.mPendingJsonBody = null;
+            return attempt;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Like {@link #request()} but a successful response keeps its {@link HttpResponse#body}
+     * open for streaming, the caller must close it.
+     */
+    public HttpResponse execute() {
+        RetryPolicy policy = getRetryPolicy();
+        if (policy == null) return executeOnce();
+
+        policy.recordRequest();
+        int retryCount = 0;
+        while (true) {
+            HttpResponse response = executeOnce(policy);
+            if (mCanceled || !policy.shouldRetry(mMethod, response, retryCount)) {
+                return response;
+            }
+
+            retryCount++;
+            long backoffMillis = policy.getBackoffMillis(retryCount);
+            if (mDebug) FLog.i("===retry " + retryCount + " after " + backoffMillis + "ms, code:" + response.code);
+            if (!awaitBackoff(backoffMillis)) {
+                return response;
+            }
+        }
+    }
+
+    /**
+     * One attempt, its latency is recorded in the policy.
+     */
+    private HttpResponse executeOnce(RetryPolicy policy) {
+        long startTime = SystemClock.elapsedRealtime();
+        HttpResponse response = executeOnce();
+        if (!response.fromCache) {
+            policy.recordLatency(SystemClock.elapsedRealtime() - startTime);
+        }
+        return response;
+    }
+
+    /**
+     * @return false if the request was canceled or the thread interrupted meanwhile
+     */
+    private boolean awaitBackoff(long backoffMillis) {
+        long deadline = SystemClock.elapsedRealtime() + backoffMillis;
+        synchronized (mCancelLock) {
+            while (!mCanceled) {
+                long remaining = deadline - SystemClock.elapsedRealtime();
+                if (remaining <= 0) return true;
+                try {
+                    mCancelLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private HttpResponse executeOnce() {
         if (mDebug) {
             FLog.i("URL:" + mUrlString);
             FLog.i("REQUEST PARAMS:" + mRequestParams.getArrayMap().toString());
         }
 
         HttpResponse response = new HttpResponse();
-		HttpURLConnection connection = null;
+        if (mCanceled) {
+            setError(response);
+            return response;
+        }
+
+        HttpCache cache = mCacheEnabled && mMethod == Method.GET && mType == TYPE_TEXT ? mEngine.getCache() : null;
+        CacheEntry cacheEntry = cache != null ? cache.get(mUrlString) : null;
+        EventListener listener = mEngine.getEventListener();
+        RequestMetrics metrics = listener != null ? new RequestMetrics(mUrlString, mMethod) : null;
+        if (metrics != null) {
+            response.metrics = metrics;
+            listener.callStart(metrics);
+        }
+        if (cacheEntry != null && cacheEntry.isFresh(System.currentTimeMillis())) {
+            if (mDebug) FLog.i("===cache hit");
+            setCacheResponse(response, cacheEntry, false);
+            finishMetrics(response, null, listener);
+            return response;
+        }
+
+		HttpEngine.Connection engineConnection = null;
+		boolean reusable = false;
+        IOException error = null;
 		try {
-			connection = (HttpURLConnection) new URL(mUrlString).openConnection();
-            configConnection(connection);
+            URL url = new URL(mUrlString);
+            String hostHeader = null;
+            InetAddress[] addresses = null;
+            Dns dns = mEngine.getDns();
+            if (dns != null && "http".equalsIgnoreCase(url.getProtocol()) && !isIpAddress(url.getHost())) {
+                hostHeader = url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort();
+                int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+                addresses = dns instanceof CachingDns
+                        ? ((CachingDns) dns).lookup(url.getHost(), port) : dns.lookup(url.getHost());
+                if (metrics != null) {
+                    metrics.mDnsMillis = metrics.lap();
+                    listener.dnsEnd(metrics);
+                }
+            }
+            HttpURLConnection connection;
+            // the platform tries every address of a host name, do the same for resolved ones
+            for (int i = 0; ; i++) {
+                URL routeUrl = addresses != null
+                        ? new URL(url.getProtocol(), toUrlHost(addresses[i]), url.getPort(), url.getFile()) : url;
+                engineConnection = mEngine.open(routeUrl, mConnectTimeout);
+                connection = engineConnection.getHttpURLConnection();
+                if (metrics != null && i == 0) metrics.mWaitMillis = metrics.lap();
+                mConnection = connection;
+                if (mCanceled) throw new IOException("Canceled");
+                if (hostHeader != null) {
+                    connection.setRequestProperty("Host", hostHeader);
+                }
+                if (cacheEntry != null) {
+                    if (cacheEntry.getETag() != null) {
+                        connection.setRequestProperty("If-None-Match", cacheEntry.getETag());
+                    }
+                    if (cacheEntry.getLastModified() != null) {
+                        connection.setRequestProperty("If-Modified-Since", cacheEntry.getLastModified());
+                    }
+                }
+                configConnection(connection);
+                try {
+                    connect(connection, metrics, listener);
+                    break;
+                } catch (IOException e) {
+                    if (addresses == null || i + 1 == addresses.length || mCanceled) throw e;
+                    if (mDebug) FLog.e(e);
+                    mConnection = null;
+                    mEngine.release(engineConnection, false);
+                    engineConnection = null;
+                }
+            }
+            writeRequestBody(connection);
+            if (metrics != null) {
+                metrics.mRequestMillis = metrics.lap();
+                metrics.mBytesOut = mRequestBodyBytes;
+                listener.requestEnd(metrics);
+            }
             response.code = connection.getResponseCode();
+            response.requestBodyBytes = mRequestBodyBytes;
+            if (metrics != null) {
+                metrics.mCode = response.code;
+                metrics.mTimeToFirstByteMillis = metrics.lap();
+                listener.responseHeadersEnd(metrics);
+            }
 			if (mDebug) FLog.i("===responseCode:" + response.code);
 			if (response.code == HttpURLConnection.HTTP_OK) {
-				String responseText = IoUtils.readStream(connection.getInputStream());
-				if (mDebug) FLog.i("===responseText:" + responseText);
-                response.text = responseText;
-			} else {
+                response.body = new ResponseBody(connection.getInputStream(), connection.getContentEncoding(),
+                        connection.getContentType(), getContentLength(connection), mEngine, engineConnection);
+                engineConnection = null;
+                response.body.setMetrics(metrics, listener);
+                if (cache != null) {
+                    if (mOutputFile == null && response.body.contentLength() <= CacheWriter.MAX_ENTRY_SIZE
+                            && CacheEntry.isCacheable(connection)) {
+                        response.body.setCacheWriter(new CacheWriter(cache, mUrlString,
+                                CacheEntry.create(mUrlString, connection), response.body.contentLength()));
+                    } else {
+                        cache.remove(mUrlString);
+                    }
+                }
+			} else if (response.code == HttpURLConnection.HTTP_NOT_MODIFIED && cacheEntry != null) {
+                cacheEntry = cacheEntry.revalidated(connection);
+                cache.put(mUrlString, cacheEntry);
+                setCacheResponse(response, cacheEntry, false);
+            } else if (response.code >= HttpURLConnection.HTTP_INTERNAL_ERROR && canServeStale(cacheEntry)) {
+                HttpEngine.discard(connection.getErrorStream());
+                setCacheResponse(response, cacheEntry, true);
+            } else {
                 response.text = connection.getResponseMessage();
+                HttpEngine.discard(connection.getErrorStream());
             }
+            reusable = true;
 		} catch (UnknownHostException e) {
             if (mDebug) FLog.e(e);
-            response.code = HttpResponse.STATUS_CODE_NET;
-            response.text = "网络错误";
-            return response;
+            error = e;
+            if (canServeStale(cacheEntry)) {
+                setCacheResponse(response, cacheEntry, true);
+            } else {
+                response.code = HttpResponse.STATUS_CODE_NET;
+                response.text = "网络错误";
+            }
         } catch (IOException e) {
             if (mDebug) FLog.e(e);
-            response.code = HttpResponse.STATUS_CODE_UNKNOWN;
-            response.text = "UNKNOWN";
-            return response;
+            error = e;
+            if (canServeStale(cacheEntry)) {
+                setCacheResponse(response, cacheEntry, true);
+            } else {
+                setError(response, e);
+            }
 		} finally {
-			if (connection != null) {
-				connection.disconnect();
-			}
+            if (engineConnection != null) {
+                mConnection = null;
+                mEngine.release(engineConnection, reusable);
+            }
 		}
+        if (metrics != null && (response.body == null || response.fromCache)) {
+            finishMetrics(response, error, listener);
+        }
         return response;
 	}
 
+    private static void connect(HttpURLConnection connection, RequestMetrics metrics, EventListener listener)
+            throws IOException {
+        if (metrics == null) {
+            connection.connect();
+            return;
+        }
+
+        RequestMetrics.setCurrent(metrics);
+        try {
+            connection.connect();
+        } finally {
+            RequestMetrics.setCurrent(null);
+        }
+        metrics.mConnectMillis = metrics.lap();
+        listener.connectEnd(metrics);
+    }
+
+    private static void finishMetrics(HttpResponse response, IOException error, EventListener listener) {
+        RequestMetrics metrics = response.metrics;
+        if (metrics == null) return;
+
+        metrics.finish(response, error);
+        listener.callEnd(metrics);
+    }
+
+    private static boolean isIpAddress(String host) {
+        return NetUtils.isIPv4Address(host) || host.startsWith("[");
+    }
+
+    private static String toUrlHost(InetAddress address) {
+        String hostAddress = address.getHostAddress();
+        int scopeIndex = hostAddress.indexOf('%');
+        if (scopeIndex != -1) hostAddress = hostAddress.substring(0, scopeIndex);
+        return NetUtils.isIPv6Address(hostAddress) ? "[" + hostAddress + "]" : hostAddress;
+    }
+
+    private RetryPolicy getRetryPolicy() {
+        return mRetryPolicy != null ? mRetryPolicy : mEngine.getRetryPolicy();
+    }
+
+    private boolean canServeStale(CacheEntry cacheEntry) {
+        return mServeStaleOnError && !mCanceled && cacheEntry != null && cacheEntry.isServableStale();
+    }
+
+    private static HttpResponse setCacheResponse(HttpResponse response, CacheEntry cacheEntry, boolean stale) {
+        byte[] bytes = cacheEntry.getBody();
+        response.code = HttpResponse.STATUS_CODE_OK;
+        response.text = null;
+        response.fromCache = true;
+        response.stale = stale;
+        try {
+            response.body = new ResponseBody(new ByteArrayInputStream(bytes), null,
+                    cacheEntry.getContentType(), bytes.length, null, null);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return response;
+    }
+
+    private void setError(HttpResponse response) {
+        setError(response, null);
+    }
+
+    private void setError(HttpResponse response, Throwable error) {
+        response.error = error;
+        if (mCanceled) {
+            response.code = HttpResponse.STATUS_CODE_CANCELED;
+            response.text = "CANCELED";
+        } else {
+            response.code = HttpResponse.STATUS_CODE_UNKNOWN;
+            response.text = "UNKNOWN";
+        }
+    }
+
+    private static long getContentLength(HttpURLConnection connection) {
+        String contentLength = connection.getHeaderField("Content-Length");
+        if (TextUtils.isEmpty(contentLength)) return -1;
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     private static byte[] bitmapToBytes(@NonNull Bitmap bitmap) {
         byte[] bytes = new byte[bitmap.getWidth() * bitmap.getHeight()];
         for (int i=0; i<bitmap.getWidth(); i++) {
@@ -167,7 +756,14 @@ public class HttpUtils {
         return bytes;
     }
 
+    /**
+     * Sets the request headers and prepares the body, which is written by
+     * {@link #writeRequestBody(HttpURLConnection)} once the connection is established.
+     */
     protected void configConnection(HttpURLConnection connection) throws IOException {
+        mRequestBody = null;
+        mMultipartBody = null;
+        mPendingJsonBody = null;
         connection.setConnectTimeout(mConnectTimeout);
         connection.setReadTimeout(mReadTimeout);
         connection.setUseCaches(false);
@@ -175,6 +771,7 @@ public class HttpUtils {
         connection.setRequestProperty("Charset", EncodeUtils.getDefultCharset());
         connection.setRequestProperty("Connection", "Keep-Alive");
         connection.setRequestProperty("User-Agent", mUserAgent);
+        connection.setRequestProperty("Accept-Encoding", mCompressionEnabled ? ACCEPT_ENCODING : "identity");
         switch (mType) {
             case TYPE_TEXT: {
                 connection.setRequestMethod(mMethod.name());
@@ -182,10 +779,14 @@ public class HttpUtils {
                     connection.setDoOutput(true);
                     connection.setRequestProperty("Content-Type", CONTENT_TYPE_TEXT);
                     String paramsString = parseMapToUrlParamsString(mRequestParams.getArrayMap());
-                    DataOutputStream outputStream = new DataOutputStream(connection.getOutputStream());
-                    outputStream.write(paramsString.getBytes());
-                    outputStream.flush();
-                    outputStream.close();
+                    byte[] body = paramsString.getBytes(EncodeUtils.getDefultCharset());
+                    if (mGzipRequestThreshold >= 0 && body.length >= mGzipRequestThreshold) {
+                        body = gzip(body);
+                        connection.setRequestProperty("Content-Encoding", "gzip");
+                    }
+                    mRequestBody = body;
+                    mRequestBodyBytes = body.length;
+                    connection.setFixedLengthStreamingMode(body.length);
                 }
                 break;
             }
@@ -193,7 +794,8 @@ public class HttpUtils {
                 connection.setRequestMethod(Method.POST.name());
                 connection.setDoOutput(true);
                 connection.setRequestProperty("Content-Type", CONTENT_TYPE_FILE);
-                DataOutputStream outputStream = new DataOutputStream(connection.getOutputStream());
+                ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+                DataOutputStream outputStream = new DataOutputStream(byteStream);
 
                 StringBuilder builder = new StringBuilder();
                 for (Map.Entry<String, Object> entry : mRequestParams.getArrayMap().entrySet()) {
@@ -214,53 +816,87 @@ public class HttpUtils {
                 outputStream.write(bitmapToBytes(mBitmap));
                 outputStream.writeBytes(LINE_END);
                 outputStream.writeBytes(PREFIX + BOUNDARY + PREFIX + LINE_END);
-                outputStream.flush();
                 outputStream.close();
+
+                mRequestBody = byteStream.toByteArray();
+                mRequestBodyBytes = mRequestBody.length;
+                connection.setFixedLengthStreamingMode(mRequestBody.length);
                 break;
             }
             case TYPE_FILE: {
                 connection.setRequestMethod(Method.POST.name());
                 connection.setDoOutput(true);
-                connection.setRequestProperty("Content-Type", CONTENT_TYPE_FILE);
 
-                DataOutputStream outputStream = new DataOutputStream(connection.getOutputStream());
-
-                StringBuilder builder = new StringBuilder();
+                MultipartBody body = new MultipartBody();
                 for (Map.Entry<String, Object> entry : mRequestParams.getArrayMap().entrySet()) {
-                    builder.append(PREFIX).append(BOUNDARY).append(LINE_END);
-                    builder.append("Content-Disposition: form-data; name=\"").append(entry.getKey()).append("\"").append(LINE_END);
-                    builder.append("Content-Type: text/plain; charset=\"utf-8\"").append(LINE_END);
-                    builder.append("Content-Transfer-Encoding: 8bit").append(LINE_END);
-                    builder.append(LINE_END);
-                    builder.append(entry.getValue());
-                    builder.append(LINE_END);
+                    body.addFormField(entry.getKey(), entry.getValue());
                 }
-
-                for (ArrayMap.Entry<String, File> entry : mFileMap.entrySet()) {
-                    String text = PREFIX + BOUNDARY + LINE_END +
-                            "Content-Disposition: form-data; name=\"" + entry.getKey() + "\"; filename=\"" + entry.getValue().getName() + "\"" + LINE_END +
-                            "Content-Type:" + "application/octet-stream" + LINE_END +
-                            "Content-Transfer-Encoding: binary" + LINE_END + LINE_END;
-                    outputStream.writeBytes(builder.append(text).toString());
-
-                    BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(entry.getValue()));
-                    int length;
-                    byte[] bytes = new byte[1024 * 1024];
-                    while ((length = inputStream.read(bytes)) != -1) {
-                        outputStream.write(bytes, 0, length);
-                    }
-                    inputStream.close();
+                for (Map.Entry<String, File> entry : mFileMap.entrySet()) {
+                    body.addFile(entry.getKey(), entry.getValue());
                 }
-
-                String endTag = LINE_END + PREFIX + BOUNDARY + PREFIX + LINE_END;
-                outputStream.writeBytes(endTag);
-                outputStream.flush();
-                outputStream.close();
+                connection.setRequestProperty("Content-Type", body.getContentType());
+                mMultipartBody = body;
+                mRequestBodyBytes = body.contentLength();
+                setStreamingMode(connection, mRequestBodyBytes);
+                break;
+            }
+            case TYPE_JSON: {
+                connection.setRequestMethod(Method.POST.name());
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", CONTENT_TYPE_JSON);
+                connection.setChunkedStreamingMode(0);
+                mPendingJsonBody = mJsonBody != null ? mJsonBody : mRequestParams.getArrayMap();
+                mRequestBodyBytes = 0;
                 break;
             }
         }
     }
 
+    private void writeRequestBody(HttpURLConnection connection) throws IOException {
+        if (mRequestBody == null && mMultipartBody == null && mPendingJsonBody == null) return;
+
+        OutputStream outputStream = connection.getOutputStream();
+        try {
+            if (mRequestBody != null) {
+                outputStream.write(mRequestBody);
+            } else if (mMultipartBody != null) {
+                mMultipartBody.writeTo(outputStream, mUploadProgressListener);
+            } else {
+                CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+                new JsonWriter(countingStream).writeValue(mPendingJsonBody).flush();
+                mRequestBodyBytes = countingStream.getCount();
+            }
+            outputStream.flush();
+        } finally {
+            IoUtils.close(outputStream);
+            mRequestBody = null;
+            mMultipartBody = null;
+            mPendingJsonBody = null;
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 2);
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+        try {
+            gzipOutputStream.write(bytes);
+        } finally {
+            IoUtils.close(gzipOutputStream);
+        }
+        return outputStream.toByteArray();
+    }
+
+    @SuppressLint("NewApi")
+    private static void setStreamingMode(HttpURLConnection connection, long contentLength) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            connection.setFixedLengthStreamingMode(contentLength);
+        } else if (contentLength <= Integer.MAX_VALUE) {
+            connection.setFixedLengthStreamingMode((int) contentLength);
+        } else {
+            connection.setChunkedStreamingMode(0);
+        }
+    }
+
     public String parseMapToUrlParamsString(ArrayMap<String, Object> paramsMap) {
         if (paramsMap == null || paramsMap.size() == 0) return "";
 
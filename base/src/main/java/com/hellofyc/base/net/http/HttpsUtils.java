@@ -2,6 +2,7 @@ package com.hellofyc.base.net.http;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
 
 import com.hellofyc.base.util.FLog;
 import com.hellofyc.base.util.IoUtils;
@@ -10,13 +11,11 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
-import java.security.InvalidKeyException;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
-import java.security.SignatureException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
@@ -25,6 +24,8 @@ import java.security.cert.X509Certificate;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
@@ -38,10 +39,20 @@ import static com.hellofyc.base.net.http.HttpsUtils.Policy.TRUSTMANAGER;
  */
 public class HttpsUtils extends HttpUtils {
 
+    private static final int SESSION_CACHE_SIZE = 64;
+    private static final int SESSION_TIMEOUT_SECONDS = 24 * 60 * 60;
+
+    private static final String KEY_SYSTEM = "system";
+
+    private static final ArrayMap<String, SSLSocketFactory> sSocketFactories = new ArrayMap<>();
+    private static final ArrayMap<String, X509TrustManager> sTrustManagers = new ArrayMap<>();
+
     private boolean mDebug = false;
-    private SSLContext mSSLContext;
+    private Context mContext;
+    private String mCertFilePath;
     private Policy mPolicy = TRUSTMANAGER;
     private HostnameVerifier mHostnameVerifier;
+    private CertificatePinner mCertificatePinner;
 
     protected HttpsUtils() {
     }
@@ -61,8 +72,13 @@ public class HttpsUtils extends HttpUtils {
         return this;
     }
 
+    /**
+     * The certificate is parsed once per process and policy, all requests using it share
+     * one SSLContext and resume its TLS sessions.
+     */
     public HttpsUtils setCertificate(Context context, String certFilePathInAssets) {
-        mSSLContext = getSSLContext(context, certFilePathInAssets);
+        mContext = context.getApplicationContext();
+        mCertFilePath = certFilePathInAssets;
         return this;
     }
 
@@ -76,26 +92,117 @@ public class HttpsUtils extends HttpUtils {
         return this;
     }
 
+    /**
+     * Checks the pins of the host on every new connection, on top of the certificate
+     * trust. Without {@link #setCertificate(Context, String)} the system CAs are trusted.
+     * Share one pinner between requests, connections are only pooled for equal pinners.
+     */
+    public HttpsUtils setCertificatePinner(CertificatePinner pinner) {
+        mCertificatePinner = pinner;
+        return this;
+    }
+
+    /**
+     * Full TLS handshakes made by the shared socket factories since process start,
+     * including {@link #getResumedHandshakeCount()}.
+     */
+    public static long getHandshakeCount() {
+        return TlsSocketFactory.getHandshakeCount();
+    }
+
+    /**
+     * Handshakes that resumed an earlier session instead of a full key exchange.
+     */
+    public static long getResumedHandshakeCount() {
+        return TlsSocketFactory.getResumedCount();
+    }
+
     @Override
     protected void configConnection(HttpURLConnection connection) throws IOException {
         super.configConnection(connection);
         if (connection instanceof HttpsURLConnection) {
-            if (mSSLContext == null) {
+            String key = getFactoryKey();
+            SSLSocketFactory socketFactory = getSocketFactory(key);
+            if (socketFactory == null) {
                 throw new IllegalArgumentException("Must setCertificate()");
             }
             HttpsURLConnection httpsURLConnection = (HttpsURLConnection) connection;
-            httpsURLConnection.setSSLSocketFactory(mSSLContext.getSocketFactory());
-            if (mHostnameVerifier != null) {
-                httpsURLConnection.setHostnameVerifier(mHostnameVerifier);
-            } else {
-                httpsURLConnection.setHostnameVerifier(HttpsURLConnection.getDefaultHostnameVerifier());
+            httpsURLConnection.setSSLSocketFactory(socketFactory);
+            HostnameVerifier verifier = mHostnameVerifier != null
+                    ? mHostnameVerifier : HttpsURLConnection.getDefaultHostnameVerifier();
+            if (mCertificatePinner != null) {
+                X509TrustManager trustManager;
+                synchronized (sSocketFactories) {
+                    trustManager = sTrustManagers.get(key);
+                }
+                verifier = mCertificatePinner.wrap(verifier, trustManager);
             }
+            httpsURLConnection.setHostnameVerifier(verifier);
         } else {
             FLog.e("Just support https://");
         }
     }
 
-    private SSLContext getSSLContext(@NonNull Context context, @NonNull String certFilePath) {
+    /**
+     * A shared response may come from a connection that never passed this request's
+     * certificate, pin or hostname checks.
+     */
+    @Override
+    protected boolean isCoalescable() {
+        return mCertFilePath == null && mCertificatePinner == null && mHostnameVerifier == null;
+    }
+
+    @Override
+    protected void appendResponseSettings(StringBuilder builder) {
+        super.appendResponseSettings(builder);
+        builder.append(" tls=").append(getFactoryKey());
+    }
+
+    private String getFactoryKey() {
+        return mCertFilePath != null ? mPolicy + ":" + mCertFilePath : KEY_SYSTEM;
+    }
+
+    /**
+     * Also stores the trust manager of the factory in {@link #sTrustManagers}.
+     *
+     * @return null if neither a certificate nor a pinner was set, or the certificate is unusable
+     */
+    private SSLSocketFactory getSocketFactory(String key) {
+        if (mCertFilePath == null && mCertificatePinner == null) return null;
+
+        synchronized (sSocketFactories) {
+            SSLSocketFactory socketFactory = sSocketFactories.get(key);
+            if (socketFactory == null) {
+                X509TrustManager[] trustManager = new X509TrustManager[1];
+                if (mCertFilePath != null) {
+                    SSLContext sslContext = getSSLContext(mContext, mCertFilePath, trustManager);
+                    if (sslContext == null) return null;
+                    socketFactory = new TlsSocketFactory(sslContext.getSocketFactory());
+                } else {
+                    trustManager[0] = getSystemTrustManager();
+                    if (trustManager[0] == null) return null;
+                    socketFactory = new TlsSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory());
+                }
+                sSocketFactories.put(key, socketFactory);
+                sTrustManagers.put(key, trustManager[0]);
+            }
+            return socketFactory;
+        }
+    }
+
+    private static X509TrustManager getSystemTrustManager() {
+        try {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init((KeyStore) null);
+            return PinnedTrustManager.findX509TrustManager(factory.getTrustManagers());
+        } catch (NoSuchAlgorithmException | KeyStoreException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private SSLContext getSSLContext(@NonNull Context context, @NonNull String certFilePath,
+                                     X509TrustManager[] trustManager) {
         InputStream certInputStream = null;
         try {
             CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
@@ -104,13 +211,19 @@ public class HttpsUtils extends HttpUtils {
             if (mDebug) FLog.i("subjectDN:" + ((X509Certificate)certificate).getSubjectDN());
             if (mDebug) FLog.i("publicKey:" + certificate.getPublicKey());
 
-            SSLContext sslContext = SSLContext.getInstance("TLSv1","AndroidOpenSSL");
-            initSSLContext(sslContext, certificate);
+            SSLContext sslContext = newSSLContext();
+            trustManager[0] = initSSLContext(sslContext, certificate);
+            if (trustManager[0] == null) return null;
+
+            SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+            if (sessionContext != null) {
+                sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+                sessionContext.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+            }
             return sslContext;
         } catch (CertificateException |
                 NoSuchAlgorithmException |
-                IOException |
-                NoSuchProviderException e) {
+                IOException e) {
             e.printStackTrace();
         } finally {
             IoUtils.close(certInputStream);
@@ -118,8 +231,23 @@ public class HttpsUtils extends HttpUtils {
         return null;
     }
 
-    private void initSSLContext(SSLContext sslContext, Certificate certificate) {
+    /**
+     * "TLS" enables every version the provider supports, TlsSocketFactory narrows it to 1.2+.
+     */
+    private static SSLContext newSSLContext() throws NoSuchAlgorithmException {
         try {
+            return SSLContext.getInstance("TLS", "AndroidOpenSSL");
+        } catch (NoSuchProviderException e) {
+            return SSLContext.getInstance("TLS");
+        }
+    }
+
+    /**
+     * @return the trust manager the context was initialized with, null on failure
+     */
+    private X509TrustManager initSSLContext(SSLContext sslContext, Certificate certificate) {
+        try {
+            X509TrustManager trustManager = null;
             switch (mPolicy) {
                 case KEYSTORE:
                     String keyStoreType = KeyStore.getDefaultType();
@@ -129,53 +257,21 @@ public class HttpsUtils extends HttpUtils {
                     String defaultAlgorithm = TrustManagerFactory.getDefaultAlgorithm();
                     TrustManagerFactory factory = TrustManagerFactory.getInstance(defaultAlgorithm);
                     factory.init(keyStore);
-                    sslContext.init(null, factory.getTrustManagers(), null);
+                    trustManager = PinnedTrustManager.findX509TrustManager(factory.getTrustManagers());
                     break;
                 case TRUSTMANAGER:
-                    sslContext.init(null, new TrustManager[]{new DefaultX509TrustManager(certificate)}, null);
+                    trustManager = new PinnedTrustManager((X509Certificate) certificate);
                     break;
             }
-
+            sslContext.init(null, new TrustManager[]{trustManager}, null);
+            return trustManager;
         } catch (KeyStoreException |
                 CertificateException |
                 IOException |
                 NoSuchAlgorithmException |
                 KeyManagementException e) {
             e.printStackTrace();
-        }
-    }
-
-    private class DefaultX509TrustManager implements X509TrustManager {
-
-        private Certificate mCertificate;
-
-        public DefaultX509TrustManager(Certificate certificate) {
-            mCertificate = certificate;
-        }
-
-        @Override
-        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-            if (mDebug) FLog.i("authType:" + authType);
-        }
-
-        @Override
-        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-            for (X509Certificate cert : chain) {
-                cert.checkValidity();
-                try {
-                    cert.verify(mCertificate.getPublicKey());
-                } catch (NoSuchAlgorithmException |
-                        InvalidKeyException |
-                        SignatureException |
-                        NoSuchProviderException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-
-        @Override
-        public X509Certificate[] getAcceptedIssuers() {
-            return new X509Certificate[0];
+            return null;
         }
     }
 
@@ -0,0 +1,52 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Looks up a fast cache first, typically {@link MemoryHttpCache}, then a slow one,
+ * typically {@link DiskHttpCache}. Hits of the slow cache are copied to the fast one.
+ *
+ * Created on 2016/7/1.
+ *
+ * @author Yucun Fang
+ */
+public class LayeredHttpCache implements HttpCache {
+
+    private final HttpCache mFirst;
+    private final HttpCache mSecond;
+
+    public LayeredHttpCache(@NonNull HttpCache first, @NonNull HttpCache second) {
+        mFirst = first;
+        mSecond = second;
+    }
+
+    @Override
+    public CacheEntry get(@NonNull String key) {
+        CacheEntry entry = mFirst.get(key);
+        if (entry == null) {
+            entry = mSecond.get(key);
+            if (entry != null) {
+                mFirst.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    @Override
+    public void put(@NonNull String key, @NonNull CacheEntry entry) {
+        mFirst.put(key, entry);
+        mSecond.put(key, entry);
+    }
+
+    @Override
+    public void remove(@NonNull String key) {
+        mFirst.remove(key);
+        mSecond.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        mFirst.clear();
+        mSecond.clear();
+    }
+}
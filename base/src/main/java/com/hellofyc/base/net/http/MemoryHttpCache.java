@@ -0,0 +1,46 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.v4.util.LruCache;
+
+/**
+ * LRU {@link HttpCache} kept in memory, sized by body bytes.
+ *
+ * Created on 2016/7/1.
+ *
+ * @author Yucun Fang
+ */
+public class MemoryHttpCache implements HttpCache {
+
+    private final LruCache<String, CacheEntry> mLruCache;
+
+    public MemoryHttpCache(@IntRange(from = 1) int maxSizeInBytes) {
+        mLruCache = new LruCache<String, CacheEntry>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(String key, CacheEntry value) {
+                return Math.max(1, value.size());
+            }
+        };
+    }
+
+    @Override
+    public CacheEntry get(@NonNull String key) {
+        return mLruCache.get(key);
+    }
+
+    @Override
+    public void put(@NonNull String key, @NonNull CacheEntry entry) {
+        mLruCache.put(key, entry);
+    }
+
+    @Override
+    public void remove(@NonNull String key) {
+        mLruCache.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        mLruCache.evictAll();
+    }
+}
@@ -0,0 +1,175 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+
+import com.hellofyc.base.util.EncodeUtils;
+import com.hellofyc.base.util.IoUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * multipart/form-data encoder.
+ *
+ * The length is known before anything is written so the body can be sent in fixed
+ * length streaming mode, files are streamed from disk through one pooled buffer.
+ *
+ * Created on 2016/6/27.
+ *
+ * @author Yucun Fang
+ */
+public class MultipartBody {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 2;
+    private static final ArrayDeque<byte[]> sBufferPool = new ArrayDeque<>();
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] DASH_DASH = {'-', '-'};
+
+    private static final String CONTENT_TYPE_OCTET_STREAM = "application/octet-stream";
+
+    private final String mBoundary;
+    private final byte[] mBoundaryBytes;
+    private final List<Part> mParts = new ArrayList<>();
+
+    public MultipartBody() {
+        this(UUID.randomUUID().toString());
+    }
+
+    public MultipartBody(@NonNull String boundary) {
+        mBoundary = boundary;
+        mBoundaryBytes = toBytes(boundary);
+    }
+
+    public String getContentType() {
+        return "multipart/form-data; boundary=" + mBoundary;
+    }
+
+    public MultipartBody addFormField(@NonNull String name, Object value) {
+        String headers = "Content-Disposition: form-data; name=\"" + name + "\"\r\n" +
+                "Content-Type: text/plain; charset=\"utf-8\"\r\n" +
+                "Content-Transfer-Encoding: 8bit\r\n\r\n";
+        mParts.add(new Part(toBytes(headers), toBytes(String.valueOf(value)), null));
+        return this;
+    }
+
+    public MultipartBody addFile(@NonNull String name, @NonNull File file) {
+        return addFile(name, file, CONTENT_TYPE_OCTET_STREAM);
+    }
+
+    public MultipartBody addFile(@NonNull String name, @NonNull File file, @NonNull String contentType) {
+        String headers = "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + file.getName() + "\"\r\n" +
+                "Content-Type: " + contentType + "\r\n" +
+                "Content-Transfer-Encoding: binary\r\n\r\n";
+        mParts.add(new Part(toBytes(headers), null, file));
+        return this;
+    }
+
+    /**
+     * Exact number of bytes {@link #writeTo(OutputStream, ProgressListener)} writes,
+     * files must not change in between.
+     */
+    public long contentLength() {
+        long length = 0;
+        for (Part part : mParts) {
+            length += DASH_DASH.length + mBoundaryBytes.length + CRLF.length;
+            length += part.mHeaders.length + part.bodyLength() + CRLF.length;
+        }
+        length += DASH_DASH.length + mBoundaryBytes.length + DASH_DASH.length + CRLF.length;
+        return length;
+    }
+
+    /**
+     * @param listener may be null
+     */
+    public void writeTo(@NonNull OutputStream outputStream, ProgressListener listener) throws IOException {
+        long totalBytes = listener == null ? -1 : contentLength();
+        long bytesWritten = 0;
+        byte[] buffer = obtainBuffer();
+        try {
+            for (Part part : mParts) {
+                outputStream.write(DASH_DASH);
+                outputStream.write(mBoundaryBytes);
+                outputStream.write(CRLF);
+                outputStream.write(part.mHeaders);
+                bytesWritten += DASH_DASH.length + mBoundaryBytes.length + CRLF.length + part.mHeaders.length;
+
+                if (part.mFile != null) {
+                    InputStream inputStream = new FileInputStream(part.mFile);
+                    try {
+                        int length;
+                        while ((length = inputStream.read(buffer)) != -1) {
+                            outputStream.write(buffer, 0, length);
+                            bytesWritten += length;
+                            if (listener != null) listener.onProgress(bytesWritten, totalBytes);
+                        }
+                    } finally {
+                        IoUtils.close(inputStream);
+                    }
+                } else {
+                    outputStream.write(part.mData);
+                    bytesWritten += part.mData.length;
+                }
+                outputStream.write(CRLF);
+                bytesWritten += CRLF.length;
+            }
+            outputStream.write(DASH_DASH);
+            outputStream.write(mBoundaryBytes);
+            outputStream.write(DASH_DASH);
+            outputStream.write(CRLF);
+            bytesWritten += DASH_DASH.length + mBoundaryBytes.length + DASH_DASH.length + CRLF.length;
+            outputStream.flush();
+            if (listener != null) listener.onProgress(bytesWritten, totalBytes);
+        } finally {
+            recycleBuffer(buffer);
+        }
+    }
+
+    private static byte[] obtainBuffer() {
+        synchronized (sBufferPool) {
+            byte[] buffer = sBufferPool.poll();
+            return buffer != null ? buffer : new byte[BUFFER_SIZE];
+        }
+    }
+
+    private static void recycleBuffer(byte[] buffer) {
+        synchronized (sBufferPool) {
+            if (sBufferPool.size() < MAX_POOLED_BUFFERS) {
+                sBufferPool.offer(buffer);
+            }
+        }
+    }
+
+    private static byte[] toBytes(String text) {
+        try {
+            return text.getBytes(EncodeUtils.getDefultCharset());
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static class Part {
+        final byte[] mHeaders;
+        final byte[] mData;
+        final File mFile;
+
+        Part(byte[] headers, byte[] data, File file) {
+            mHeaders = headers;
+            mData = data;
+            mFile = file;
+        }
+
+        long bodyLength() {
+            return mFile != null ? mFile.length() : mData.length;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.hellofyc.base.net.http;
+
+import android.net.http.X509TrustManagerExtensions;
+import android.support.annotation.NonNull;
+import android.support.v4.util.LruCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Trusts server chains anchored at one bundled certificate. The chain is PKIX validated
+ * against a KeyStore holding only that certificate, then every issuer of the validated
+ * chain must be a CA and the chain must contain the bundled public key. Validated chains
+ * are remembered by leaf, so a repeated handshake costs one lookup.
+ *
+ * Created on 2016/7/12.
+ *
+ * @author Yucun Fang
+ */
+class PinnedTrustManager implements X509TrustManager {
+
+    private static final int VALIDATED_CACHE_SIZE = 32;
+
+    private final X509Certificate mCertificate;
+    private final ByteBuffer mPin;
+    private final X509TrustManagerExtensions mDelegate;
+    private final LruCache<X509Certificate, List<X509Certificate>> mValidatedChains =
+            new LruCache<>(VALIDATED_CACHE_SIZE);
+
+    PinnedTrustManager(@NonNull X509Certificate certificate)
+            throws KeyStoreException, CertificateException, NoSuchAlgorithmException, IOException {
+        mCertificate = certificate;
+        mPin = ByteBuffer.wrap(CertificatePinner.spkiSha256(certificate));
+
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keyStore.load(null, null);
+        keyStore.setCertificateEntry("ca", certificate);
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init(keyStore);
+        mDelegate = new X509TrustManagerExtensions(findX509TrustManager(factory.getTrustManagers()));
+    }
+
+    static X509TrustManager findX509TrustManager(TrustManager[] trustManagers) throws KeyStoreException {
+        for (TrustManager trustManager : trustManagers) {
+            if (trustManager instanceof X509TrustManager) return (X509TrustManager) trustManager;
+        }
+        throw new KeyStoreException("No X509TrustManager");
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+        throw new CertificateException("Client certificates are not trusted");
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+        checkServerTrusted(chain, authType, null);
+    }
+
+    /**
+     * @return the validated chain, leaf first and ending at the bundled certificate
+     */
+    List<X509Certificate> checkServerTrusted(X509Certificate[] chain, String authType, String host)
+            throws CertificateException {
+        if (chain == null || chain.length == 0) {
+            throw new CertificateException("Empty server certificate chain");
+        }
+
+        X509Certificate leaf = chain[0];
+        leaf.checkValidity();
+        List<X509Certificate> validated = mValidatedChains.get(leaf);
+        if (validated != null) return validated;
+
+        validated = mDelegate.checkServerTrusted(chain, authType, host);
+        checkAnchored(validated);
+        mValidatedChains.put(leaf, validated);
+        return validated;
+    }
+
+    /**
+     * Every certificate issuing another one must be a CA, and one of them holds the pinned key.
+     */
+    private void checkAnchored(List<X509Certificate> chain) throws CertificateException {
+        boolean pinned = false;
+        for (int i = 0; i < chain.size(); i++) {
+            X509Certificate certificate = chain.get(i);
+            if (i > 0 && certificate.getBasicConstraints() < 0) {
+                throw new CertificateException("Issuer is not a CA: " + certificate.getSubjectDN());
+            }
+            if (mPin.equals(ByteBuffer.wrap(CertificatePinner.spkiSha256(certificate)))) pinned = true;
+        }
+        if (!pinned) {
+            throw new CertificateException("Server certificate is not trusted: " + chain.get(0).getSubjectDN());
+        }
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return new X509Certificate[]{mCertificate};
+    }
+}
@@ -0,0 +1,12 @@
+package com.hellofyc.base.net.http;
+
+/**
+ * Created on 2016/6/22.
+ *
+ * @author Yucun Fang
+ */
+public enum Priority {
+    LOW,
+    NORMAL,
+    HIGH
+}
@@ -0,0 +1,16 @@
+package com.hellofyc.base.net.http;
+
+/**
+ * Created on 2016/6/27.
+ *
+ * @author Yucun Fang
+ */
+public interface ProgressListener {
+
+    /**
+     * Called on the uploading thread after every written chunk.
+     *
+     * @param totalBytes -1 if unknown
+     */
+    void onProgress(long bytesWritten, long totalBytes);
+}
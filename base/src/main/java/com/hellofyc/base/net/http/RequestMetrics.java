@@ -0,0 +1,218 @@
+package com.hellofyc.base.net.http;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Timings and byte counts of one network attempt of a request, filled in phase by
+ * phase and handed to the engine's {@link EventListener}.
+ *
+ * Phase durations are -1 when the phase did not happen, e.g. the TLS handshake of a
+ * pooled connection or every network phase of a fresh cache hit.
+ *
+ * Created on 2016/7/11.
+ *
+ * @author Yucun Fang
+ */
+public class RequestMetrics {
+
+    private static final ThreadLocal<RequestMetrics> sCurrent = new ThreadLocal<>();
+
+    private final String mUrl;
+    private final String mHost;
+    private final Method mMethod;
+    private final long mStartTime = SystemClock.elapsedRealtime();
+    private long mLapTime = mStartTime;
+
+    long mDnsMillis = -1;
+    long mWaitMillis = -1;
+    long mConnectMillis = -1;
+    volatile long mTlsMillis = -1;
+    volatile boolean mTlsResumed = false;
+    long mRequestMillis = -1;
+    long mTimeToFirstByteMillis = -1;
+    long mBodyMillis = -1;
+    long mTotalMillis = -1;
+    long mBytesOut = 0;
+    long mBytesIn = 0;
+    int mCode = 0;
+    boolean mFromCache = false;
+    IOException mError;
+
+    RequestMetrics(@NonNull String url, @NonNull Method method) {
+        mUrl = url;
+        mMethod = method;
+        mHost = parseHost(url);
+    }
+
+    /**
+     * The request being connected on this thread, see {@link TlsSocketFactory}.
+     */
+    static RequestMetrics current() {
+        return sCurrent.get();
+    }
+
+    static void setCurrent(RequestMetrics metrics) {
+        if (metrics == null) {
+            sCurrent.remove();
+        } else {
+            sCurrent.set(metrics);
+        }
+    }
+
+    /**
+     * @return milliseconds since the previous lap or the start
+     */
+    long lap() {
+        long now = SystemClock.elapsedRealtime();
+        long millis = now - mLapTime;
+        mLapTime = now;
+        return millis;
+    }
+
+    void finish(@NonNull HttpResponse response, IOException error) {
+        if (mCode == 0) mCode = response.code;
+        mFromCache = response.fromCache;
+        mError = error;
+        mTotalMillis = SystemClock.elapsedRealtime() - mStartTime;
+    }
+
+    void finishBody(long bytesIn) {
+        mBodyMillis = lap();
+        mBytesIn = bytesIn;
+        mTotalMillis = SystemClock.elapsedRealtime() - mStartTime;
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    public String getHost() {
+        return mHost;
+    }
+
+    public Method getMethod() {
+        return mMethod;
+    }
+
+    /**
+     * Host lookup, a cache hit of the engine's {@link com.hellofyc.base.net.dns.Dns} is close to 0.
+     * -1 unless that Dns made the lookup, the platform's own lookup is part of the connect time.
+     */
+    public long getDnsMillis() {
+        return mDnsMillis;
+    }
+
+    /**
+     * Time spent waiting for a free connection slot of the route, see {@link ConnectionPool}.
+     */
+    public long getWaitMillis() {
+        return mWaitMillis;
+    }
+
+    /**
+     * TCP connect including the TLS handshake, close to 0 on a pooled connection.
+     */
+    public long getConnectMillis() {
+        return mConnectMillis;
+    }
+
+    /**
+     * TLS handshake, only measured for {@link HttpsUtils} requests.
+     */
+    public long getTlsMillis() {
+        return mTlsMillis;
+    }
+
+    /**
+     * @return true if the handshake resumed an earlier TLS session
+     */
+    public boolean isTlsResumed() {
+        return mTlsResumed;
+    }
+
+    /**
+     * Writing the request body.
+     */
+    public long getRequestMillis() {
+        return mRequestMillis;
+    }
+
+    /**
+     * From the end of the request to the response headers.
+     */
+    public long getTimeToFirstByteMillis() {
+        return mTimeToFirstByteMillis;
+    }
+
+    /**
+     * From the response headers until the body was closed.
+     */
+    public long getBodyMillis() {
+        return mBodyMillis;
+    }
+
+    public long getTotalMillis() {
+        return mTotalMillis;
+    }
+
+    /**
+     * Request body bytes as sent.
+     */
+    public long getBytesOut() {
+        return mBytesOut;
+    }
+
+    /**
+     * Response body bytes as received, before gzip/deflate decoding.
+     */
+    public long getBytesIn() {
+        return mBytesIn;
+    }
+
+    /**
+     * The status code from the network, 304 for a revalidated cache entry.
+     */
+    public int getCode() {
+        return mCode;
+    }
+
+    public boolean isFromCache() {
+        return mFromCache;
+    }
+
+    /**
+     * @return the failure of the attempt, null if a response was received
+     */
+    public IOException getError() {
+        return mError;
+    }
+
+    /**
+     * @return true if a response below 500 was received
+     */
+    public boolean isSuccess() {
+        return mError == null && mCode > 0 && mCode < HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    private static String parseHost(String url) {
+        try {
+            return new URL(url).getHost();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return mMethod + " " + mUrl + " code:" + mCode + (mFromCache ? " cache" : "")
+                + " dns:" + mDnsMillis + " wait:" + mWaitMillis + " connect:" + mConnectMillis
+                + " tls:" + mTlsMillis + (mTlsResumed ? " resumed" : "") + " request:" + mRequestMillis + " ttfb:" + mTimeToFirstByteMillis
+                + " body:" + mBodyMillis + " total:" + mTotalMillis
+                + " out:" + mBytesOut + " in:" + mBytesIn;
+    }
+}
@@ -0,0 +1,315 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import com.hellofyc.base.util.EncodeUtils;
+import com.hellofyc.base.util.FileUtils;
+import com.hellofyc.base.util.IoUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.security.Key;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Streaming body of a {@link HttpResponse}.
+ *
+ * The body holds the connection open until it is closed, read it once with one of
+ * {@link #byteStream()}, {@link #charStream()}, {@link #bytes()}, {@link #string()} or
+ * {@link #writeTo(File)} and close it.
+ *
+ * Created on 2016/6/24.
+ *
+ * @author Yucun Fang
+ */
+public class ResponseBody implements Closeable {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final String mContentType;
+    private final long mContentLength;
+    private final CountingInputStream mWireStream;
+    private final BodyInputStream mInputStream;
+    private final HttpEngine mEngine;
+    private HttpEngine.Connection mConnection;
+    private CacheWriter mCacheWriter;
+    private RequestMetrics mMetrics;
+    private EventListener mEventListener;
+
+    /**
+     * @param contentEncoding gzip and deflate are decoded, the content length then refers
+     *                        to the encoded bytes and is reported as unknown
+     */
+    ResponseBody(@NonNull InputStream inputStream, String contentEncoding, String contentType, long contentLength,
+                 HttpEngine engine, HttpEngine.Connection connection) throws IOException {
+        mWireStream = new CountingInputStream(inputStream);
+        InputStream decodedStream = decode(mWireStream, contentEncoding);
+        mInputStream = new BodyInputStream(decodedStream);
+        mContentType = contentType;
+        mContentLength = decodedStream == mWireStream ? contentLength : -1;
+        mEngine = engine;
+        mConnection = connection;
+    }
+
+    void setCacheWriter(CacheWriter cacheWriter) {
+        mCacheWriter = cacheWriter;
+    }
+
+    /**
+     * Completes the metrics with the body read and reports them when the body is closed.
+     */
+    void setMetrics(RequestMetrics metrics, EventListener listener) {
+        mMetrics = metrics;
+        mEventListener = listener;
+    }
+
+    public String contentType() {
+        return mContentType;
+    }
+
+    /**
+     * @return the length declared by the server, or -1 if unknown
+     */
+    public long contentLength() {
+        return mContentLength;
+    }
+
+    /**
+     * The charset parameter of the Content-Type header, UTF-8 if absent or unsupported.
+     */
+    public Charset charset() {
+        return parseCharset(mContentType, Charset.forName(EncodeUtils.getDefultCharset()));
+    }
+
+    /**
+     * Number of bytes read from the network so far.
+     */
+    public long wireBytes() {
+        return mWireStream.getCount();
+    }
+
+    /**
+     * Number of bytes handed to the reader so far, larger than {@link #wireBytes()}
+     * when the response was compressed.
+     */
+    public long decodedBytes() {
+        return mInputStream.mCount;
+    }
+
+    public InputStream byteStream() {
+        return mInputStream;
+    }
+
+    public Reader charStream() {
+        return new InputStreamReader(mInputStream, charset());
+    }
+
+    public byte[] bytes() throws IOException {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(initialCapacity());
+            IoUtils.copy(mInputStream, outputStream);
+            return outputStream.toByteArray();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Decodes the whole body with {@link #charset()}, line breaks are kept.
+     */
+    public String string() throws IOException {
+        Reader reader = charStream();
+        try {
+            StringBuilder builder = new StringBuilder(initialCapacity());
+            char[] buffer = new char[BUFFER_SIZE];
+            int length;
+            while ((length = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, length);
+            }
+            return builder.toString();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Streams the body to the output stream, the stream is not closed.
+     *
+     * @return the number of bytes written
+     */
+    public long writeTo(@NonNull OutputStream outputStream) throws IOException {
+        try {
+            return IoUtils.copy(mInputStream, outputStream);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Streams the body to the file, the file is replaced.
+     *
+     * @return the number of bytes written
+     */
+    public long writeTo(@NonNull File file) throws IOException {
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            long count = writeTo(outputStream);
+            outputStream.flush();
+            return count;
+        } finally {
+            IoUtils.close(outputStream);
+        }
+    }
+
+    /**
+     * Streams the body into the file encrypted with {@link com.hellofyc.base.util.AesGcmOutputStream},
+     * e.g. for downloads kept at rest. Read it with {@link com.hellofyc.base.util.AesGcmInputStream}.
+     *
+     * @return the number of plain bytes
+     */
+    public long writeEncryptedTo(@NonNull File file, @NonNull Key key) throws IOException {
+        try {
+            return FileUtils.encrypt(mInputStream, file, key);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Releases the connection. A fully read body returns its socket to the pool,
+     * a partially read one is disconnected.
+     */
+    @Override
+    public void close() {
+        HttpEngine.Connection connection;
+        synchronized (this) {
+            connection = mConnection;
+            mConnection = null;
+        }
+        if (connection == null) return;
+
+        if (mCacheWriter != null) {
+            if (mInputStream.mExhausted) {
+                mCacheWriter.commit();
+            } else {
+                mCacheWriter.abort();
+            }
+        }
+        IoUtils.close(mInputStream.getSource(), mWireStream);
+        if (mEngine != null) {
+            mEngine.release(connection, mInputStream.mExhausted);
+        }
+        if (mMetrics != null) {
+            mMetrics.finishBody(mWireStream.getCount());
+            mEventListener.callEnd(mMetrics);
+        }
+    }
+
+    private int initialCapacity() {
+        return mContentLength > 0 && mContentLength < Integer.MAX_VALUE ? (int) mContentLength : BUFFER_SIZE;
+    }
+
+    private static InputStream decode(InputStream inputStream, String contentEncoding) throws IOException {
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+        if ("deflate".equalsIgnoreCase(contentEncoding)) {
+            // RFC 2616 says zlib wrapped, some servers send raw deflate anyway
+            PushbackInputStream pushbackStream = new PushbackInputStream(inputStream, 2);
+            byte[] header = new byte[2];
+            int length = pushbackStream.read(header);
+            if (length > 0) pushbackStream.unread(header, 0, length);
+            boolean zlibWrapped = length == 2 && (header[0] & 0x0f) == 8
+                    && (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+            return new InflaterInputStream(pushbackStream, new Inflater(!zlibWrapped), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inf.end();
+                    }
+                }
+            };
+        }
+        return inputStream;
+    }
+
+    static Charset parseCharset(String contentType, Charset defaultCharset) {
+        if (TextUtils.isEmpty(contentType)) return defaultCharset;
+
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                String name = trimmed.substring(8).replace("\"", "").trim();
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                    return defaultCharset;
+                }
+            }
+        }
+        return defaultCharset;
+    }
+
+    private class BodyInputStream extends FilterInputStream {
+        private volatile boolean mExhausted = false;
+        private volatile long mCount = 0;
+        private final byte[] mOne = new byte[1];
+
+        BodyInputStream(InputStream in) {
+            super(in);
+        }
+
+        InputStream getSource() {
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                mExhausted = true;
+            } else {
+                mCount++;
+                if (mCacheWriter != null) {
+                    mOne[0] = (byte) b;
+                    mCacheWriter.write(mOne, 0, 1);
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int count) throws IOException {
+            int length = super.read(buffer, offset, count);
+            if (length == -1) {
+                mExhausted = true;
+            } else {
+                mCount += length;
+                if (mCacheWriter != null) mCacheWriter.write(buffer, offset, length);
+            }
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ResponseBody.this.close();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.FloatRange;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLException;
+
+/**
+ * Decides whether and when {@link HttpUtils} retries a failed request, and when it
+ * sends a hedged duplicate of a slow one.
+ *
+ * Retries use exponential backoff with jitter, only idempotent methods are retried
+ * unless {@link #setRetryNonIdempotent(boolean)} is set, and every retry or hedge is
+ * paid from a token bucket that is refilled by a fraction of each request so a failing
+ * server never sees more than that fraction of extra traffic. A hedged request is not
+ * retried, its duplicate takes the place of the retries.
+ *
+ * One policy is meant to be shared by many requests, see {@link HttpEngine#setRetryPolicy(RetryPolicy)}.
+ *
+ * Created on 2016/7/4.
+ *
+ * @author Yucun Fang
+ */
+public class RetryPolicy {
+
+    private static final int LATENCY_SAMPLES = 128;
+    private static final int MIN_LATENCY_SAMPLES = 16;
+
+    private int mMaxRetries = 2;
+    private long mInitialBackoffMillis = 200;
+    private long mMaxBackoffMillis = 5 * 1000;
+    private float mBackoffMultiplier = 2f;
+    private float mJitter = 0.5f;
+    private boolean mRetryNonIdempotent = false;
+
+    private float mBudgetRatio = 0.1f;
+    private float mMaxBudgetTokens = 10f;
+    private float mBudgetTokens = mMaxBudgetTokens;
+
+    private float mHedgePercentile = 0;
+    private long mMinHedgeDelayMillis = 50;
+    private final long[] mLatencies = new long[LATENCY_SAMPLES];
+    private int mLatencyCount = 0;
+    private int mLatencyIndex = 0;
+
+    private final Random mRandom = new Random();
+    private ExecutorService mHedgeExecutor;
+
+    public RetryPolicy() {
+    }
+
+    public static RetryPolicy create() {
+        return new RetryPolicy();
+    }
+
+    public RetryPolicy setMaxRetries(@IntRange(from = 0) int maxRetries) {
+        mMaxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * The n-th retry waits initialMillis * multiplier ^ (n - 1), capped at maxMillis.
+     */
+    public RetryPolicy setBackoff(@IntRange(from = 0) long initialMillis, @IntRange(from = 0) long maxMillis,
+                                  @FloatRange(from = 1) float multiplier) {
+        mInitialBackoffMillis = initialMillis;
+        mMaxBackoffMillis = maxMillis;
+        mBackoffMultiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * @param jitter fraction of the backoff that is randomized, 0 for none, 1 for full jitter
+     */
+    public RetryPolicy setJitter(@FloatRange(from = 0, to = 1) float jitter) {
+        mJitter = jitter;
+        return this;
+    }
+
+    /**
+     * Also retries POST requests, only enable it for endpoints that are safe to repeat.
+     */
+    public RetryPolicy setRetryNonIdempotent(boolean retryNonIdempotent) {
+        mRetryNonIdempotent = retryNonIdempotent;
+        return this;
+    }
+
+    /**
+     * @param ratio     tokens earned per request, e.g. 0.1 allows 10% extra traffic
+     * @param maxTokens burst of retries allowed after a quiet period
+     */
+    public synchronized RetryPolicy setRetryBudget(@FloatRange(from = 0) float ratio, @FloatRange(from = 0) float maxTokens) {
+        mBudgetRatio = ratio;
+        mMaxBudgetTokens = maxTokens;
+        mBudgetTokens = Math.min(mBudgetTokens, maxTokens);
+        return this;
+    }
+
+    /**
+     * Sends a duplicate of an idempotent request that has not answered within the given
+     * percentile of recent latencies, and keeps whichever response comes first.
+     *
+     * @param percentile e.g. 0.95, 0 disables hedging
+     */
+    public RetryPolicy setHedgePercentile(@FloatRange(from = 0, to = 1) float percentile) {
+        mHedgePercentile = percentile;
+        return this;
+    }
+
+    public RetryPolicy setMinHedgeDelay(@IntRange(from = 0) long minHedgeDelayMillis) {
+        mMinHedgeDelayMillis = minHedgeDelayMillis;
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return mMaxRetries;
+    }
+
+    public boolean isIdempotent(@NonNull Method method) {
+        return method == Method.GET || mRetryNonIdempotent;
+    }
+
+    /**
+     * Network failures, 502, 503 and 504 are retried. TLS failures, including a failed
+     * certificate or pin check, are not, the server would fail the same way again.
+     */
+    public boolean isRetryable(@NonNull HttpResponse response) {
+        if (response.error instanceof SSLException) return false;
+        switch (response.code) {
+            case HttpResponse.STATUS_CODE_NET:
+            case HttpResponse.STATUS_CODE_UNKNOWN:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param retryCount retries already made for this request
+     */
+    public boolean shouldRetry(@NonNull Method method, @NonNull HttpResponse response, int retryCount) {
+        return retryCount < mMaxRetries && isIdempotent(method) && isRetryable(response) && acquireBudget();
+    }
+
+    /**
+     * @param retryNumber 1 for the first retry
+     */
+    public long getBackoffMillis(@IntRange(from = 1) int retryNumber) {
+        double backoff = mInitialBackoffMillis * Math.pow(mBackoffMultiplier, retryNumber - 1);
+        backoff = Math.min(backoff, mMaxBackoffMillis);
+        double random;
+        synchronized (mRandom) {
+            random = mRandom.nextDouble();
+        }
+        return (long) (backoff * (1 - mJitter * random));
+    }
+
+    public boolean isHedgingEnabled() {
+        return mHedgePercentile > 0;
+    }
+
+    /**
+     * @return the hedge delay, or -1 until enough latencies were recorded
+     */
+    public synchronized long getHedgeDelayMillis() {
+        if (!isHedgingEnabled() || mLatencyCount < MIN_LATENCY_SAMPLES) return -1;
+
+        long[] latencies = Arrays.copyOf(mLatencies, mLatencyCount);
+        Arrays.sort(latencies);
+        int index = Math.min(latencies.length - 1, (int) Math.ceil(mHedgePercentile * latencies.length) - 1);
+        return Math.max(mMinHedgeDelayMillis, latencies[Math.max(0, index)]);
+    }
+
+    synchronized ExecutorService getHedgeExecutor() {
+        if (mHedgeExecutor == null) {
+            mHedgeExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>());
+        }
+        return mHedgeExecutor;
+    }
+
+    /**
+     * Called for every request, refills the retry budget.
+     */
+    public synchronized void recordRequest() {
+        mBudgetTokens = Math.min(mMaxBudgetTokens, mBudgetTokens + mBudgetRatio);
+    }
+
+    public synchronized void recordLatency(long latencyMillis) {
+        mLatencies[mLatencyIndex] = latencyMillis;
+        mLatencyIndex = (mLatencyIndex + 1) % LATENCY_SAMPLES;
+        if (mLatencyCount < LATENCY_SAMPLES) mLatencyCount++;
+    }
+
+    /**
+     * Takes one token for a retry or a hedge.
+     */
+    public synchronized boolean acquireBudget() {
+        if (mBudgetTokens < 1) return false;
+        mBudgetTokens -= 1;
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent identical idempotent requests into one network call whose
+ * response is handed to every waiting caller, see {@link HttpEngine#setSingleFlight(SingleFlight)}.
+ *
+ * A waiter whose leader was canceled makes the request on its own. Requests with a
+ * certificate, pinner or hostname verifier of their own are never coalesced, and the
+ * request class and every setting that changes the response are always part of the key.
+ *
+ * Created on 2016/7/8.
+ *
+ * @author Yucun Fang
+ */
+public class SingleFlight {
+
+    private static final long CANCEL_CHECK_INTERVAL = 100;
+
+    public interface KeyFunction {
+
+        /**
+         * @return equal keys for requests that may share one response, the settings of
+         * the requests are compared separately
+         */
+        String getKey(@NonNull Method method, @NonNull String url, @NonNull HttpRequest request);
+    }
+
+    /**
+     * Method, url and the parameters sorted by name.
+     */
+    public static final KeyFunction DEFAULT_KEY_FUNCTION = new KeyFunction() {
+        @Override
+        public String getKey(@NonNull Method method, @NonNull String url, @NonNull HttpRequest request) {
+            StringBuilder builder = new StringBuilder(method.name()).append(' ').append(url);
+            ArrayMap<String, Object> params = request.getArrayMap();
+            if (params.isEmpty()) return builder.toString();
+
+            builder.append('?');
+            for (Map.Entry<String, Object> entry : new TreeMap<>(params).entrySet()) {
+                builder.append(entry.getKey()).append('=').append(entry.getValue()).append('&');
+            }
+            return builder.toString();
+        }
+    };
+
+    private final KeyFunction mKeyFunction;
+    private final ArrayMap<String, Flight> mFlights = new ArrayMap<>();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+
+    public SingleFlight() {
+        this(DEFAULT_KEY_FUNCTION);
+    }
+
+    public SingleFlight(@NonNull KeyFunction keyFunction) {
+        mKeyFunction = keyFunction;
+    }
+
+    /**
+     * Number of requests that were answered by another request's network call.
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    HttpResponse request(@NonNull HttpUtils request) {
+        StringBuilder keyBuilder = new StringBuilder(mKeyFunction.getKey(request.getMethod(), request.getUrl(),
+                request.getRequestParams())).append('\n');
+        request.appendResponseSettings(keyBuilder);
+        String key = keyBuilder.toString();
+        Flight flight;
+        boolean leader = false;
+        synchronized (mFlights) {
+            flight = mFlights.get(key);
+            if (flight == null) {
+                flight = new Flight();
+                mFlights.put(key, flight);
+                leader = true;
+            }
+        }
+
+        if (leader) {
+            HttpResponse response = null;
+            try {
+                response = request.requestDirect();
+                return response;
+            } finally {
+                synchronized (mFlights) {
+                    mFlights.remove(key);
+                }
+                flight.finish(response);
+            }
+        }
+
+        HttpResponse response = flight.await(request);
+        if (response == null) {
+            return request.requestDirect();
+        }
+        mCoalescedCount.incrementAndGet();
+        return response.copy();
+    }
+
+    private static class Flight {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private volatile HttpResponse mResponse;
+
+        void finish(HttpResponse response) {
+            mResponse = response;
+            mLatch.countDown();
+        }
+
+        /**
+         * @return the leader's response, or null if the waiter has to make the request itself
+         */
+        HttpResponse await(HttpUtils request) {
+            try {
+                while (!mLatch.await(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    if (request.isCanceled()) return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            HttpResponse response = mResponse;
+            if (response == null || response.code == HttpResponse.STATUS_CODE_CANCELED) return null;
+            return response;
+        }
+    }
+}
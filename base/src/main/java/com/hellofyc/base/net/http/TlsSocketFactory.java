@@ -0,0 +1,161 @@
+package com.hellofyc.base.net.http;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Configures the sockets of a shared SSLContext: TLS 1.2 and newer only when the
+ * platform supports them, session tickets on, and the handshake of every new socket
+ * counted and timed for the {@link RequestMetrics} connecting on the current thread.
+ *
+ * Reuse one instance per configuration, the platform only pools connections and
+ * resumes sessions made with the same factory.
+ *
+ * Created on 2016/7/11.
+ *
+ * @author Yucun Fang
+ */
+class TlsSocketFactory extends SSLSocketFactory {
+
+    private static final String[] MODERN_PROTOCOLS = {"TLSv1.3", "TLSv1.2"};
+
+    private static final AtomicLong sHandshakeCount = new AtomicLong();
+    private static final AtomicLong sResumedCount = new AtomicLong();
+
+    private static volatile Class<?> sTicketSocketClass;
+    private static volatile Method sSetUseSessionTickets;
+
+    private final SSLSocketFactory mDelegate;
+
+    TlsSocketFactory(@NonNull SSLSocketFactory delegate) {
+        mDelegate = delegate;
+    }
+
+    static long getHandshakeCount() {
+        return sHandshakeCount.get();
+    }
+
+    static long getResumedCount() {
+        return sResumedCount.get();
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return mDelegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return mDelegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(mDelegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+        return configure(mDelegate.createSocket(socket, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return configure(mDelegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return configure(mDelegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return configure(mDelegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return configure(mDelegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private static Socket configure(Socket socket) {
+        if (!(socket instanceof SSLSocket)) return socket;
+
+        SSLSocket sslSocket = (SSLSocket) socket;
+        enableModernProtocols(sslSocket);
+        enableSessionTickets(sslSocket);
+
+        final RequestMetrics metrics = RequestMetrics.current();
+        final long startTime = System.nanoTime();
+        final long startWallTime = System.currentTimeMillis();
+        sslSocket.addHandshakeCompletedListener(new HandshakeCompletedListener() {
+            private boolean mCompleted = false;
+
+            @Override
+            public void handshakeCompleted(HandshakeCompletedEvent event) {
+                // the listener stays registered on the pooled socket, only the first handshake counts
+                if (mCompleted) return;
+                mCompleted = true;
+
+                // a resumed session keeps the creation time of the handshake that established it
+                boolean resumed = event.getSession().getCreationTime() < startWallTime;
+                sHandshakeCount.incrementAndGet();
+                if (resumed) sResumedCount.incrementAndGet();
+                if (metrics != null) {
+                    metrics.mTlsResumed = resumed;
+                    metrics.mTlsMillis = (System.nanoTime() - startTime) / 1000000;
+                }
+            }
+        });
+        return socket;
+    }
+
+    private static void enableModernProtocols(SSLSocket socket) {
+        List<String> supported = Arrays.asList(socket.getSupportedProtocols());
+        List<String> protocols = new ArrayList<>(MODERN_PROTOCOLS.length);
+        for (String protocol : MODERN_PROTOCOLS) {
+            if (supported.contains(protocol)) protocols.add(protocol);
+        }
+        if (!protocols.isEmpty()) {
+            socket.setEnabledProtocols(protocols.toArray(new String[protocols.size()]));
+        }
+    }
+
+    /**
+     * The platform socket has no public API for tickets, session IDs are used regardless.
+     */
+    private static void enableSessionTickets(SSLSocket socket) {
+        Class<?> socketClass = socket.getClass();
+        if (socketClass != sTicketSocketClass) {
+            Method method;
+            try {
+                method = socketClass.getMethod("setUseSessionTickets", boolean.class);
+            } catch (NoSuchMethodException e) {
+                method = null;
+            }
+            sSetUseSessionTickets = method;
+            sTicketSocketClass = socketClass;
+        }
+
+        Method method = sSetUseSessionTickets;
+        if (method == null) return;
+        try {
+            method.invoke(socket, true);
+        } catch (Exception ignored) {
+        }
+    }
+}
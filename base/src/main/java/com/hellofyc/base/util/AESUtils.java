@@ -25,6 +25,16 @@ public class AESUtils {
      * @return SecretKeySpec 实例
      */
     private static SecretKeySpec generateKey(@NonNull String password) {
+        String name = ALGORITHM_AES + '|' + password;
+        SecretKeySpec key = CipherEngine.getKey(name);
+        if (key == null) {
+            key = createKey(password);
+            if (key != null) CipherEngine.putKey(name, key);
+        }
+        return key;
+    }
+
+    private static SecretKeySpec createKey(@NonNull String password) {
         byte[] data;
         StringBuilder sb = new StringBuilder();
         sb.append(password);
@@ -50,10 +60,7 @@ public class AESUtils {
      */
     public static byte[] encrypt(@NonNull byte[] data, @NonNull String password) {
         try {
-            SecretKeySpec key = generateKey(password);
-            Cipher cipher = Cipher.getInstance(ALGORITHM_AES);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            return cipher.doFinal(data);
+            return CipherEngine.doFinal(ALGORITHM_AES, null, Cipher.ENCRYPT_MODE, generateKey(password), null, data);
         } catch (Exception e) {
             if (DEBUG) FLog.e(e);
         }
@@ -77,10 +84,7 @@ public class AESUtils {
 
     public static byte[] decrypt(byte[] content, String password) {
         try {
-            SecretKeySpec key = generateKey(password);
-            Cipher cipher = Cipher.getInstance(ALGORITHM_AES);
-            cipher.init(Cipher.DECRYPT_MODE, key);
-            return cipher.doFinal(content);
+            return CipherEngine.doFinal(ALGORITHM_AES, null, Cipher.DECRYPT_MODE, generateKey(password), null, content);
         } catch (Exception e) {
             if (DEBUG) FLog.e(e);
         }
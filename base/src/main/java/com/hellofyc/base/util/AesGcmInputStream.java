@@ -0,0 +1,162 @@
+package com.hellofyc.base.util;
+
+import android.support.annotation.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Key;
+
+import javax.crypto.Cipher;
+
+/**
+ * Decrypts what {@link AesGcmOutputStream} wrote, one authenticated segment at a time.
+ *
+ * No byte of a segment is returned before the whole segment has been verified, and a
+ * stream cut off after any segment fails instead of looking complete. {@link #skip(long)}
+ * passes over whole segments without decrypting them.
+ *
+ * Created on 2016/7/20.
+ *
+ * @author Yucun Fang
+ */
+public class AesGcmInputStream extends InputStream {
+
+    private final InputStream mIn;
+    private final Key mKey;
+    private Key mSegmentKey;
+    private final byte[] mNoncePrefix = new byte[AesGcmSegments.NONCE_PREFIX_SIZE];
+    private int mSegmentSize = -1;
+    /** One segment and one byte to tell whether it is the last one. */
+    private byte[] mCipherText;
+    /** The first byte of the next segment, or -1. */
+    private int mLookAhead = -1;
+    private byte[] mPlain;
+    private int mPlainPos = 0;
+    private int mPlainLength = 0;
+    private int mIndex = 0;
+    private boolean mLastSegment = false;
+
+    /**
+     * @param key the key the stream was written with
+     */
+    public AesGcmInputStream(@NonNull InputStream in, @NonNull Key key) {
+        mIn = in;
+        mKey = key;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensurePlain()) return -1;
+        return mPlain[mPlainPos++] & 0xff;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (!ensurePlain()) return -1;
+        int n = Math.min(length, mPlainLength - mPlainPos);
+        System.arraycopy(mPlain, mPlainPos, buffer, offset, n);
+        mPlainPos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            if (mPlainPos == mPlainLength) {
+                if (mLastSegment) break;
+                int length = readSegment();
+                if (!mLastSegment && count - skipped >= mSegmentSize) {
+                    mIndex++;
+                    skipped += mSegmentSize;
+                    continue;
+                }
+                decryptSegment(length);
+                if (mPlainLength == 0) break;
+            }
+            int n = (int) Math.min(count - skipped, mPlainLength - mPlainPos);
+            mPlainPos += n;
+            skipped += n;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return mPlainLength - mPlainPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+
+    /**
+     * @return false at the end of the stream
+     */
+    private boolean ensurePlain() throws IOException {
+        while (mPlainPos == mPlainLength) {
+            if (mLastSegment) return false;
+            decryptSegment(readSegment());
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next segment into {@link #mCipherText}.
+     *
+     * @return its length
+     */
+    private int readSegment() throws IOException {
+        if (mSegmentSize < 0) readHeader();
+
+        int fullLength = mSegmentSize + AesGcmSegments.TAG_SIZE;
+        int count = 0;
+        if (mLookAhead >= 0) mCipherText[count++] = (byte) mLookAhead;
+        while (count < mCipherText.length) {
+            int n = mIn.read(mCipherText, count, mCipherText.length - count);
+            if (n == -1) break;
+            count += n;
+        }
+        if (count <= fullLength) {
+            mLastSegment = true;
+            mLookAhead = -1;
+            if (count < AesGcmSegments.TAG_SIZE) throw new EOFException("Truncated segment " + mIndex);
+            return count;
+        }
+        mLookAhead = mCipherText[fullLength] & 0xff;
+        return fullLength;
+    }
+
+    private void decryptSegment(int length) throws IOException {
+        mPlainLength = AesGcmSegments.crypt(Cipher.DECRYPT_MODE, mSegmentKey, mNoncePrefix, mIndex, mLastSegment,
+                mCipherText, length, mPlain);
+        mPlainPos = 0;
+        mIndex++;
+    }
+
+    private void readHeader() throws IOException {
+        byte[] header = new byte[AesGcmSegments.HEADER_SIZE];
+        int count = 0;
+        while (count < header.length) {
+            int n = mIn.read(header, count, header.length - count);
+            if (n == -1) throw new EOFException("Missing header");
+            count += n;
+        }
+        if (getInt(header, 0) != AesGcmSegments.MAGIC) throw new IOException("Not an AES-GCM stream");
+        mSegmentSize = getInt(header, 4);
+        if (mSegmentSize <= 0 || mSegmentSize > AesGcmSegments.MAX_SEGMENT_SIZE) throw new IOException("Bad segment size " + mSegmentSize);
+        System.arraycopy(header, AesGcmSegments.INFO_SIZE + AesGcmSegments.SALT_SIZE,
+                mNoncePrefix, 0, mNoncePrefix.length);
+        mSegmentKey = AesGcmSegments.deriveKey(mKey, header);
+        mCipherText = new byte[mSegmentSize + AesGcmSegments.TAG_SIZE + 1];
+        mPlain = new byte[mSegmentSize];
+    }
+
+    private static int getInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xff) << 24 | (buffer[offset + 1] & 0xff) << 16
+                | (buffer[offset + 2] & 0xff) << 8 | buffer[offset + 3] & 0xff;
+    }
+}
@@ -0,0 +1,125 @@
+package com.hellofyc.base.util;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+
+/**
+ * Encrypts a stream of any length in constant memory, read it back with {@link AesGcmInputStream}.
+ *
+ * The plain text is buffered one segment at a time; a full segment is only sealed once more
+ * data arrives, because the last segment is marked as such. {@link #flush()} therefore
+ * cannot push out a partial segment, and the stream must be closed to be readable.
+ *
+ * Created on 2016/7/20.
+ *
+ * @author Yucun Fang
+ */
+public class AesGcmOutputStream extends FilterOutputStream {
+
+    private final Key mKey;
+    private final int mSegmentSize;
+    private final byte[] mHeader = new byte[AesGcmSegments.HEADER_SIZE];
+    private final byte[] mNoncePrefix = new byte[AesGcmSegments.NONCE_PREFIX_SIZE];
+    private Key mSegmentKey;
+    private final byte[] mPlain;
+    private final byte[] mCipherText;
+    private int mCount = 0;
+    private int mIndex = 0;
+    private boolean mHeaderWritten = false;
+    private boolean mClosed = false;
+
+    /**
+     * @param key raw AES key of 128 or 256 bits, see {@link Key#getEncoded()}
+     */
+    public AesGcmOutputStream(@NonNull OutputStream out, @NonNull Key key) {
+        this(out, key, AesGcmSegments.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize plain bytes per segment, 64K by default, 16M at most
+     */
+    public AesGcmOutputStream(@NonNull OutputStream out, @NonNull Key key,
+                              @IntRange(from = 1) int segmentSize) {
+        super(out);
+        if (segmentSize > AesGcmSegments.MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize > " + AesGcmSegments.MAX_SEGMENT_SIZE);
+        }
+        mKey = key;
+        mSegmentSize = segmentSize;
+        mPlain = new byte[segmentSize];
+        mCipherText = new byte[segmentSize + AesGcmSegments.TAG_SIZE];
+
+        putInt(mHeader, 0, AesGcmSegments.MAGIC);
+        putInt(mHeader, 4, segmentSize);
+        byte[] random = new byte[AesGcmSegments.SALT_SIZE + AesGcmSegments.NONCE_PREFIX_SIZE];
+        new SecureRandom().nextBytes(random);
+        System.arraycopy(random, 0, mHeader, AesGcmSegments.INFO_SIZE, random.length);
+        System.arraycopy(random, AesGcmSegments.SALT_SIZE, mNoncePrefix, 0, mNoncePrefix.length);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkOpen();
+        if (mCount == mSegmentSize) writeSegment(false);
+        mPlain[mCount++] = (byte) b;
+    }
+
+    @Override
+    public void write(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        checkOpen();
+        while (length > 0) {
+            if (mCount == mSegmentSize) writeSegment(false);
+            int n = Math.min(length, mSegmentSize - mCount);
+            System.arraycopy(buffer, offset, mPlain, mCount, n);
+            mCount += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Seals the last segment and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) return;
+        try {
+            writeSegment(true);
+        } finally {
+            mClosed = true;
+            out.close();
+        }
+    }
+
+    private void writeSegment(boolean last) throws IOException {
+        if (!mHeaderWritten) {
+            mSegmentKey = AesGcmSegments.deriveKey(mKey, mHeader);
+            out.write(mHeader);
+            mHeaderWritten = true;
+        }
+        int length = AesGcmSegments.crypt(Cipher.ENCRYPT_MODE, mSegmentKey, mNoncePrefix, mIndex, last,
+                mPlain, mCount, mCipherText);
+        out.write(mCipherText, 0, length);
+        mIndex++;
+        mCount = 0;
+    }
+
+    private void checkOpen() throws IOException {
+        if (mClosed) throw new IOException("Stream closed");
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
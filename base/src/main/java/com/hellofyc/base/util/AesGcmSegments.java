@@ -0,0 +1,89 @@
+package com.hellofyc.base.util;
+
+import android.os.Build;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Format shared by {@link AesGcmOutputStream} and {@link AesGcmInputStream}.
+ *
+ * The header holds a magic, the plain segment size, a random salt and a random nonce prefix.
+ * The segments are sealed with a key derived by HKDF-SHA256 from the caller's key, the salt
+ * and the first header fields, so one long-lived key never repeats a nonce across streams.
+ * Each segment is sealed on its own with AES-GCM under the nonce prefix, the segment index
+ * and a flag for the last segment, so segments can be decrypted in any order while
+ * reordered, dropped or truncated segments fail authentication.
+ *
+ * Created on 2016/7/20.
+ *
+ * @author Yucun Fang
+ */
+final class AesGcmSegments {
+
+    static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    static final int MAGIC = 0x46474332;
+    static final int SALT_SIZE = 32;
+    static final int NONCE_PREFIX_SIZE = 7;
+    /** Magic and segment size, bound into the derived key. */
+    static final int INFO_SIZE = 4 + 4;
+    static final int HEADER_SIZE = INFO_SIZE + SALT_SIZE + NONCE_PREFIX_SIZE;
+    static final int TAG_SIZE = 16;
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private AesGcmSegments() {
+    }
+
+    /**
+     * HKDF-SHA256 (RFC 5869) of the key material, with the header up to the salt as info.
+     *
+     * @param header {@link #INFO_SIZE} bytes followed by the salt
+     * @return an AES key as long as the caller's key
+     */
+    static Key deriveKey(Key key, byte[] header) throws IOException {
+        byte[] material = key.getEncoded();
+        if (material == null || (material.length != 16 && material.length != 32)) {
+            throw new IOException("Need a raw AES key of 128 or 256 bits");
+        }
+        try {
+            byte[] salt = Arrays.copyOfRange(header, INFO_SIZE, INFO_SIZE + SALT_SIZE);
+            byte[] info = Arrays.copyOf(header, INFO_SIZE);
+            return new SecretKeySpec(CipherEngine.hkdfSha256(material, salt, info, material.length), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Key derivation failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param key the key returned by {@link #deriveKey(Key, byte[])}
+     * @return the length written to out
+     */
+    static int crypt(int mode, Key key, byte[] noncePrefix, int index, boolean last,
+                     byte[] in, int length, byte[] out) throws IOException {
+        byte[] nonce = new byte[NONCE_PREFIX_SIZE + 5];
+        System.arraycopy(noncePrefix, 0, nonce, 0, NONCE_PREFIX_SIZE);
+        nonce[NONCE_PREFIX_SIZE] = (byte) (index >>> 24);
+        nonce[NONCE_PREFIX_SIZE + 1] = (byte) (index >>> 16);
+        nonce[NONCE_PREFIX_SIZE + 2] = (byte) (index >>> 8);
+        nonce[NONCE_PREFIX_SIZE + 3] = (byte) index;
+        nonce[NONCE_PREFIX_SIZE + 4] = (byte) (last ? 1 : 0);
+        AlgorithmParameterSpec params = Build.VERSION.SDK_INT >= 19
+                ? new GCMParameterSpec(TAG_SIZE * 8, nonce) : new IvParameterSpec(nonce);
+        try {
+            Cipher cipher = CipherEngine.getCipher(TRANSFORMATION, null, mode, key, params);
+            return cipher.doFinal(in, 0, length, out, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Segment " + index + " failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.hellofyc.base.util;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Table driven Base64 of the standard alphabet, see {@link Base64Utils}.
+ *
+ * The one-shot methods write into caller supplied buffers. {@link Encoder} and {@link Decoder}
+ * keep the few bytes left over between calls, so data can be converted chunk by chunk, and
+ * {@link #newEncodingStream(OutputStream, boolean)} / {@link #newDecodingStream(OutputStream)}
+ * wrap them as streams. Wrapped output matches android.util.Base64.DEFAULT: a '\n' after
+ * every 76 chars and after the last line. Decoding skips every char outside the alphabet,
+ * as android.util.Base64.DEFAULT does, and only fails on bad padding or length.
+ *
+ * Created on 2016/7/21.
+ *
+ * @author Yucun Fang
+ */
+public final class Base64Codec {
+
+    private static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+    private static final int LINE_LENGTH = 76;
+
+    private static final int SKIP = -2;
+    private static final int PAD = -3;
+    private static final byte[] VALUES = new byte[256];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) VALUES[i] = SKIP;
+        for (int i = 0; i < ALPHABET.length; i++) VALUES[ALPHABET[i]] = (byte) i;
+        VALUES['='] = PAD;
+    }
+
+    private Base64Codec() {
+    }
+
+    /**
+     * @return the encoded size of length bytes
+     */
+    public static int encodedLength(int length, boolean wrap) {
+        int chars = (length + 2) / 3 * 4;
+        return wrap ? chars + (chars + LINE_LENGTH - 1) / LINE_LENGTH : chars;
+    }
+
+    /**
+     * @return the number of bytes written, {@link #encodedLength(int, boolean)}
+     */
+    public static int encode(@NonNull byte[] in, int offset, int length, @NonNull byte[] out, int outOffset,
+                             boolean wrap) {
+        Encoder encoder = new Encoder(wrap);
+        int n = encoder.update(in, offset, length, out, outOffset);
+        return n + encoder.finish(out, outOffset + n);
+    }
+
+    public static byte[] encode(@NonNull byte[] data, boolean wrap) {
+        byte[] out = new byte[encodedLength(data.length, wrap)];
+        encode(data, 0, data.length, out, 0, wrap);
+        return out;
+    }
+
+    public static String encodeToString(@NonNull byte[] data, boolean wrap) {
+        byte[] out = encode(data, wrap);
+        char[] chars = new char[out.length];
+        for (int i = 0; i < out.length; i++) chars[i] = (char) out[i];
+        return new String(chars);
+    }
+
+    /**
+     * Line breaks and other chars outside the alphabet are skipped.
+     *
+     * @param out at least length * 3 / 4 bytes
+     * @return the number of bytes written
+     * @throws IllegalArgumentException on bad padding or a bad length
+     */
+    public static int decode(@NonNull byte[] in, int offset, int length, @NonNull byte[] out, int outOffset) {
+        Decoder decoder = new Decoder();
+        int n = decoder.update(in, offset, length, out, outOffset);
+        return n + decoder.finish(out, outOffset + n);
+    }
+
+    public static byte[] decode(@NonNull byte[] data) {
+        return trim(data.length * 3 / 4, data, 0, data.length);
+    }
+
+    public static byte[] decode(@NonNull String data) {
+        int length = data.length();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            // skipped like any other char outside the alphabet
+            bytes[i] = c > 0xff ? (byte) ' ' : (byte) c;
+        }
+        return trim(length * 3 / 4, bytes, 0, length);
+    }
+
+    private static byte[] trim(int maxLength, byte[] in, int offset, int length) {
+        byte[] out = new byte[maxLength];
+        int n = decode(in, offset, length, out, 0);
+        if (n == out.length) return out;
+        byte[] result = new byte[n];
+        System.arraycopy(out, 0, result, 0, n);
+        return result;
+    }
+
+    /**
+     * Encodes to a stream which only sees complete Base64, the stream is closed by close().
+     */
+    public static OutputStream newEncodingStream(@NonNull OutputStream out, boolean wrap) {
+        return new CodecOutputStream(out, new Encoder(wrap), null);
+    }
+
+    /**
+     * Decodes Base64 written to the returned stream into out, the stream is closed by close().
+     */
+    public static OutputStream newDecodingStream(@NonNull OutputStream out) {
+        return new CodecOutputStream(out, null, new Decoder());
+    }
+
+    /**
+     * Incremental encoder. update() writes at most {@link #maxOutputLength(int)} bytes.
+     */
+    public static final class Encoder {
+        private final boolean mWrap;
+        private int mCarry;
+        private int mCarryCount = 0;
+        private int mLineLength = 0;
+
+        public Encoder(boolean wrap) {
+            mWrap = wrap;
+        }
+
+        public int maxOutputLength(int inputLength) {
+            // carried bytes, and a line already started
+            return encodedLength(inputLength + 2, mWrap) + 1;
+        }
+
+        /**
+         * @return the number of bytes written
+         */
+        public int update(@NonNull byte[] in, int offset, int length, @NonNull byte[] out, int outOffset) {
+            int start = outOffset;
+            int end = offset + length;
+            while (mCarryCount > 0 && offset < end) {
+                mCarry = mCarry << 8 | in[offset++] & 0xff;
+                if (++mCarryCount == 3) {
+                    outOffset = writeQuad(mCarry, out, outOffset);
+                    mCarryCount = 0;
+                }
+            }
+            while (end - offset >= 3) {
+                int bits = (in[offset] & 0xff) << 16 | (in[offset + 1] & 0xff) << 8 | in[offset + 2] & 0xff;
+                outOffset = writeQuad(bits, out, outOffset);
+                offset += 3;
+            }
+            while (offset < end) {
+                mCarry = mCarryCount == 0 ? in[offset++] & 0xff : mCarry << 8 | in[offset++] & 0xff;
+                mCarryCount++;
+            }
+            return outOffset - start;
+        }
+
+        /**
+         * Writes the padded tail, at most 5 bytes, and resets the encoder.
+         */
+        public int finish(@NonNull byte[] out, int outOffset) {
+            int start = outOffset;
+            if (mCarryCount == 1) {
+                int bits = mCarry << 16;
+                out[outOffset++] = ALPHABET[bits >> 18 & 0x3f];
+                out[outOffset++] = ALPHABET[bits >> 12 & 0x3f];
+                out[outOffset++] = '=';
+                out[outOffset++] = '=';
+                mLineLength += 4;
+            } else if (mCarryCount == 2) {
+                int bits = mCarry << 8;
+                out[outOffset++] = ALPHABET[bits >> 18 & 0x3f];
+                out[outOffset++] = ALPHABET[bits >> 12 & 0x3f];
+                out[outOffset++] = ALPHABET[bits >> 6 & 0x3f];
+                out[outOffset++] = '=';
+                mLineLength += 4;
+            }
+            if (mWrap && mLineLength > 0) out[outOffset++] = '\n';
+            mCarryCount = 0;
+            mLineLength = 0;
+            return outOffset - start;
+        }
+
+        private int writeQuad(int bits, byte[] out, int outOffset) {
+            out[outOffset++] = ALPHABET[bits >> 18 & 0x3f];
+            out[outOffset++] = ALPHABET[bits >> 12 & 0x3f];
+            out[outOffset++] = ALPHABET[bits >> 6 & 0x3f];
+            out[outOffset++] = ALPHABET[bits & 0x3f];
+            if (mWrap && (mLineLength += 4) == LINE_LENGTH) {
+                out[outOffset++] = '\n';
+                mLineLength = 0;
+            }
+            return outOffset;
+        }
+    }
+
+    /**
+     * Incremental decoder. update() writes at most 3 bytes per 4 chars, plus 2 left from before.
+     */
+    public static final class Decoder {
+        private int mBits;
+        private int mCount = 0;
+        private int mPadCount = 0;
+
+        /**
+         * @return the number of bytes written
+         * @throws IllegalArgumentException on bad padding or data after it
+         */
+        public int update(@NonNull byte[] in, int offset, int length, @NonNull byte[] out, int outOffset) {
+            int start = outOffset;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                int value = VALUES[in[i] & 0xff];
+                if (value >= 0) {
+                    if (mPadCount > 0) throw new IllegalArgumentException("Data after padding");
+                    mBits = mBits << 6 | value;
+                    if (++mCount == 4) {
+                        out[outOffset++] = (byte) (mBits >> 16);
+                        out[outOffset++] = (byte) (mBits >> 8);
+                        out[outOffset++] = (byte) mBits;
+                        mCount = 0;
+                    }
+                } else if (value == PAD) {
+                    if (mCount < 2 || mCount + ++mPadCount > 4) throw new IllegalArgumentException("Bad padding");
+                }
+            }
+            return outOffset - start;
+        }
+
+        /**
+         * Writes the bytes of an unpadded tail and resets the decoder.
+         */
+        public int finish(@NonNull byte[] out, int outOffset) {
+            int count = mCount;
+            int bits = mBits;
+            int padCount = mPadCount;
+            mCount = 0;
+            mPadCount = 0;
+            if (padCount > 0 && count + padCount != 4) throw new IllegalArgumentException("Bad padding");
+            switch (count) {
+                case 0:
+                    return 0;
+                case 2:
+                    out[outOffset] = (byte) (bits >> 4);
+                    return 1;
+                case 3:
+                    out[outOffset] = (byte) (bits >> 10);
+                    out[outOffset + 1] = (byte) (bits >> 2);
+                    return 2;
+                default:
+                    throw new IllegalArgumentException("Bad Base64 length");
+            }
+        }
+    }
+
+    private static final class CodecOutputStream extends FilterOutputStream {
+        private final Encoder mEncoder;
+        private final Decoder mDecoder;
+        private final byte[] mOne = new byte[1];
+        private byte[] mBuffer = new byte[0];
+        private boolean mClosed = false;
+
+        CodecOutputStream(OutputStream out, Encoder encoder, Decoder decoder) {
+            super(out);
+            mEncoder = encoder;
+            mDecoder = decoder;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            mOne[0] = (byte) b;
+            write(mOne, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            int max = mEncoder != null ? mEncoder.maxOutputLength(length) : length + 2;
+            if (mBuffer.length < max) mBuffer = new byte[Math.max(max, 1024)];
+            try {
+                int n = mEncoder != null ? mEncoder.update(buffer, offset, length, mBuffer, 0)
+                        : mDecoder.update(buffer, offset, length, mBuffer, 0);
+                out.write(mBuffer, 0, n);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) return;
+            mClosed = true;
+            try {
+                if (mBuffer.length < 8) mBuffer = new byte[8];
+                int n = mEncoder != null ? mEncoder.finish(mBuffer, 0) : mDecoder.finish(mBuffer, 0);
+                out.write(mBuffer, 0, n);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
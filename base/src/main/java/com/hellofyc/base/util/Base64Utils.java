@@ -1,11 +1,9 @@
 package com.hellofyc.base.util;
 
 import android.support.annotation.NonNull;
-import android.util.Base64;
-
-import java.io.UnsupportedEncodingException;
-
 /**
+ * Wraps {@link Base64Codec}, encoded output is line wrapped like android.util.Base64.DEFAULT.
+ *
  * Created on 2015/9/7.
  *
  * @author Yucun Fang
@@ -19,7 +17,7 @@ public class Base64Utils {
 
     public static byte[] encode(@NonNull byte[] data) {
         try {
-            return Base64.encode(data, Base64.DEFAULT);
+            return Base64Codec.encode(data, true);
         } catch (Exception e) {
             if (DEBUG) FLog.e(e);
         }
@@ -32,7 +30,7 @@ public class Base64Utils {
 
     public static String encodeToString(@NonNull byte[] data) {
         try {
-            return Base64.encodeToString(data, Base64.DEFAULT);
+            return Base64Codec.encodeToString(data, true);
         } catch (Exception e) {
             if (DEBUG) FLog.e(e);
         }
@@ -40,28 +38,25 @@ public class Base64Utils {
     }
 
     public static byte[] decode(@NonNull String data) {
-        try {
-            return decode(data.getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            return decode(data.getBytes());
-        }
+        return Base64Codec.decode(data);
     }
 
     public static byte[] decode(@NonNull byte[] data) {
-        return Base64.decode(data, Base64.DEFAULT);
+        return Base64Codec.decode(data);
     }
 
     public static String decodeToString(@NonNull String data) {
         try {
-            return decodeToString(data.getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            return decodeToString(data.getBytes());
+            return new String(Base64Codec.decode(data), "US-ASCII");
+        } catch (Exception e) {
+            if (DEBUG) FLog.e(e);
         }
+        return "";
     }
 
     public static String decodeToString(@NonNull byte[] data) {
         try {
-            return new String(Base64.decode(data, Base64.DEFAULT), "US-ASCII");
+            return new String(Base64Codec.decode(data), "US-ASCII");
         } catch (Exception e) {
             if(DEBUG) FLog.e(e);
         }
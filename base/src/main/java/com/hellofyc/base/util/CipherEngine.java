@@ -0,0 +1,186 @@
+package com.hellofyc.base.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.ArrayMap;
+import android.support.v4.util.LruCache;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Cipher instances and derived keys shared by {@link AESUtils}, {@link DESUtils} and {@link RSAUtils}.
+ *
+ * Cipher is not thread safe, so every thread keeps its own instance per transformation and
+ * provider. An instance is only initialized again when the mode, key or IV changes, since
+ * doFinal leaves it ready for the next message with the same parameters; an IV generated by
+ * the provider always gets a fresh init. Keys derived from passwords are kept in a small
+ * LRU cache so the key factories run once per password.
+ *
+ * Created on 2016/7/19.
+ *
+ * @author Yucun Fang
+ */
+public final class CipherEngine {
+
+    private static final int MAX_KEYS = 32;
+
+    private static final ThreadLocal<ArrayMap<String, CipherEntry>> sCiphers = new ThreadLocal<ArrayMap<String, CipherEntry>>() {
+        @Override
+        protected ArrayMap<String, CipherEntry> initialValue() {
+            return new ArrayMap<>();
+        }
+    };
+
+    private static final LruCache<String, Object> sKeys = new LruCache<>(MAX_KEYS);
+
+    private CipherEngine() {
+    }
+
+    /**
+     * Runs one whole message through the cipher of this thread. The cached instance is
+     * dropped if the operation fails, e.g. on a bad padding.
+     *
+     * @param provider null for the default provider
+     * @param params   null if the transformation takes no IV
+     */
+    public static byte[] doFinal(@NonNull String transformation, @Nullable String provider, int mode,
+                                 @NonNull Key key, @Nullable AlgorithmParameterSpec params,
+                                 @NonNull byte[] data) throws GeneralSecurityException {
+        String name = provider == null ? transformation : transformation + '@' + provider;
+        try {
+            return getCipher(name, transformation, provider, mode, key, params).doFinal(data);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            sCiphers.get().remove(name);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the cipher of this thread, initialized for the mode, key and IV. Not to be kept
+     * or shared with other threads.
+     */
+    public static Cipher getCipher(@NonNull String transformation, @Nullable String provider, int mode,
+                                   @NonNull Key key, @Nullable AlgorithmParameterSpec params)
+            throws GeneralSecurityException {
+        String name = provider == null ? transformation : transformation + '@' + provider;
+        return getCipher(name, transformation, provider, mode, key, params);
+    }
+
+    private static Cipher getCipher(String name, String transformation, String provider, int mode,
+                                    Key key, AlgorithmParameterSpec params) throws GeneralSecurityException {
+        ArrayMap<String, CipherEntry> ciphers = sCiphers.get();
+        CipherEntry entry = ciphers.get(name);
+        if (entry == null) {
+            Cipher cipher = provider == null ? Cipher.getInstance(transformation)
+                    : Cipher.getInstance(transformation, provider);
+            entry = new CipherEntry(cipher);
+            ciphers.put(name, entry);
+        }
+        if (!entry.isInitialized(mode, key, params)) {
+            entry.mKey = null;
+            if (params == null) {
+                entry.mCipher.init(mode, key);
+            } else {
+                entry.mCipher.init(mode, key, params);
+            }
+            entry.mMode = mode;
+            entry.mKey = key;
+            entry.mParams = params;
+        }
+        return entry.mCipher;
+    }
+
+    /**
+     * @param name e.g. the algorithm and the password
+     * @return the key or parameters put under the name, or null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getKey(@NonNull String name) {
+        return (T) sKeys.get(name);
+    }
+
+    public static void putKey(@NonNull String name, @NonNull Object key) {
+        sKeys.put(name, key);
+    }
+
+    /**
+     * HKDF-SHA256 (RFC 5869) of the key material.
+     *
+     * @param length at most 32 bytes
+     */
+    public static byte[] hkdfSha256(@NonNull byte[] material, @NonNull byte[] salt, @NonNull byte[] info,
+                                    int length) throws GeneralSecurityException {
+        if (length > 32) throw new IllegalArgumentException("length > 32");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+        byte[] pseudoRandomKey = mac.doFinal(material);
+
+        mac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+        mac.update(info);
+        mac.update((byte) 1);
+        return Arrays.copyOf(mac.doFinal(), length);
+    }
+
+    /**
+     * PBKDF2-HMAC-SHA256 (RFC 8018) of a password. Unlike the platform's PBKDF2WithHmacSHA1,
+     * whose handling of non-ASCII chars changed in API 19, it derives the same key on every
+     * API level.
+     *
+     * @param length at most 32 bytes
+     */
+    public static byte[] pbkdf2Sha256(@NonNull byte[] password, @NonNull byte[] salt, int iterations,
+                                      int length) throws GeneralSecurityException {
+        if (length > 32) throw new IllegalArgumentException("length > 32");
+        if (iterations < 1) throw new IllegalArgumentException("iterations < 1: " + iterations);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        // HMAC pads the key with zeros, so one zero byte stands in for an empty password
+        mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, "HmacSHA256"));
+        mac.update(salt);
+        mac.update(new byte[]{0, 0, 0, 1});
+        byte[] block = mac.doFinal();
+        byte[] result = block.clone();
+        for (int i = 1; i < iterations; i++) {
+            block = mac.doFinal(block);
+            for (int j = 0; j < result.length; j++) {
+                result[j] ^= block[j];
+            }
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    /**
+     * Drops the derived keys, and the ciphers of the calling thread.
+     */
+    public static void clear() {
+        sKeys.evictAll();
+        sCiphers.get().clear();
+    }
+
+    private static final class CipherEntry {
+        final Cipher mCipher;
+        int mMode;
+        Key mKey;
+        AlgorithmParameterSpec mParams;
+
+        CipherEntry(Cipher cipher) {
+            mCipher = cipher;
+        }
+
+        boolean isInitialized(int mode, Key key, AlgorithmParameterSpec params) {
+            if (mKey == null || mMode != mode || !(mKey == key || mKey.equals(key))) return false;
+            // a generated IV must not be reused
+            if (params == null) return mParams == null && mCipher.getIV() == null;
+            if (mParams == params) return true;
+            return mParams instanceof IvParameterSpec && params instanceof IvParameterSpec
+                    && Arrays.equals(((IvParameterSpec) mParams).getIV(), ((IvParameterSpec) params).getIV());
+        }
+    }
+}
@@ -4,7 +4,7 @@ import android.annotation.SuppressLint;
 import android.support.annotation.NonNull;
 
 import java.io.UnsupportedEncodingException;
-import java.security.SecureRandom;
+import java.security.GeneralSecurityException;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -38,12 +38,8 @@ public class DESUtils {
             passwordBytes = password.getBytes();
         }
         try {
-            DESKeySpec desKey = new DESKeySpec(passwordBytes);
-            SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(ALGORITHM_DES);
-            SecretKey securekey = keyFactory.generateSecret(desKey);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION_DES_CBC_PKCS5PADDING);
-            cipher.init(Cipher.ENCRYPT_MODE, securekey, new IvParameterSpec(password.getBytes()));
-            return cipher.doFinal(srcData);
+            return CipherEngine.doFinal(TRANSFORMATION_DES_CBC_PKCS5PADDING, null, Cipher.ENCRYPT_MODE,
+                    getDesKey(passwordBytes), new IvParameterSpec(password.getBytes()), srcData);
         } catch (Exception e) {
             if (DEBUG) FLog.e(e);
         }
@@ -59,13 +55,8 @@ public class DESUtils {
             passwordBytes = password.getBytes();
         }
         try {
-            SecureRandom random = new SecureRandom();
-            DESKeySpec desKey = new DESKeySpec(passwordBytes);
-            SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(ALGORITHM_DES);
-            SecretKey securekey = keyFactory.generateSecret(desKey);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION_DES_CBC_PKCS5PADDING);
-            cipher.init(Cipher.DECRYPT_MODE, securekey, random);
-            return cipher.doFinal(destData);
+            return CipherEngine.doFinal(TRANSFORMATION_DES_CBC_PKCS5PADDING, null, Cipher.DECRYPT_MODE,
+                    getDesKey(passwordBytes), new IvParameterSpec(password.getBytes()), destData);
         } catch (Exception e) {
             FLog.e(e);
         }
@@ -134,12 +125,8 @@ public class DESUtils {
             passwordBytes = password.getBytes();
         }
         try {
-            SecureRandom random = new SecureRandom();
-            DESKeySpec desKey = new DESKeySpec(passwordBytes);
-            SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(ALGORITHM_DES);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION_DES);
-            cipher.init(Cipher.ENCRYPT_MODE, keyFactory.generateSecret(desKey), random);
-            return cipher.doFinal(srcData);
+            return CipherEngine.doFinal(TRANSFORMATION_DES, null, Cipher.ENCRYPT_MODE,
+                    getDesKey(passwordBytes), null, srcData);
         } catch (Exception e) {
             if (DEBUG) FLog.e(e);
         }
@@ -157,12 +144,8 @@ public class DESUtils {
             passwordBytes = password.getBytes();
         }
         try {
-            SecureRandom random = new SecureRandom();
-            DESKeySpec desKey = new DESKeySpec(passwordBytes);
-            SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(ALGORITHM_DES);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION_DES);
-            cipher.init(Cipher.DECRYPT_MODE, keyFactory.generateSecret(desKey), random);
-            return cipher.doFinal(destData);
+            return CipherEngine.doFinal(TRANSFORMATION_DES, null, Cipher.DECRYPT_MODE,
+                    getDesKey(passwordBytes), null, destData);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -195,13 +178,8 @@ public class DESUtils {
         }
 
         try {
-            DESedeKeySpec spec = new DESedeKeySpec(keyData);
-            SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(ALGORITHM_DES_EDE);
-            SecretKey sk = keyFactory.generateSecret(spec);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION_DESEDE_CBC_PKCS5PADDING);
-            IvParameterSpec ivSpec = new IvParameterSpec(ivData);
-            cipher.init(Cipher.ENCRYPT_MODE, sk, ivSpec);
-            return cipher.doFinal(data);
+            return CipherEngine.doFinal(TRANSFORMATION_DESEDE_CBC_PKCS5PADDING, null, Cipher.ENCRYPT_MODE,
+                    getDesedeKey(keyData), new IvParameterSpec(ivData), data);
         } catch (Exception e) {
             FLog.e(e);
         }
@@ -236,16 +214,31 @@ public class DESUtils {
         }
 
         try {
-            DESedeKeySpec keySpec = new DESedeKeySpec(keyData);
-            SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(ALGORITHM_DES_EDE);
-            SecretKey sk = keyFactory.generateSecret(keySpec);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION_DESEDE_CBC_PKCS5PADDING);
-            IvParameterSpec ivSpec = new IvParameterSpec(ivData);
-            cipher.init(Cipher.DECRYPT_MODE, sk, ivSpec);
-            return cipher.doFinal(data);
+            return CipherEngine.doFinal(TRANSFORMATION_DESEDE_CBC_PKCS5PADDING, null, Cipher.DECRYPT_MODE,
+                    getDesedeKey(keyData), new IvParameterSpec(ivData), data);
         } catch (Exception e) {
             FLog.e(e);
         }
         return null;
     }
+
+    private static SecretKey getDesKey(byte[] keyData) throws GeneralSecurityException {
+        String name = ALGORITHM_DES + '|' + ParseUtils.bytesToHexString(keyData);
+        SecretKey key = CipherEngine.getKey(name);
+        if (key == null) {
+            key = SecretKeyFactory.getInstance(ALGORITHM_DES).generateSecret(new DESKeySpec(keyData));
+            CipherEngine.putKey(name, key);
+        }
+        return key;
+    }
+
+    private static SecretKey getDesedeKey(byte[] keyData) throws GeneralSecurityException {
+        String name = ALGORITHM_DES_EDE + '|' + ParseUtils.bytesToHexString(keyData);
+        SecretKey key = CipherEngine.getKey(name);
+        if (key == null) {
+            key = SecretKeyFactory.getInstance(ALGORITHM_DES_EDE).generateSecret(new DESedeKeySpec(keyData));
+            CipherEngine.putKey(name, key);
+        }
+        return key;
+    }
 }
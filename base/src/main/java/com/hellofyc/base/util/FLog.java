@@ -17,16 +17,20 @@
 package com.hellofyc.base.util;
 
 import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
+import android.support.v4.util.LruCache;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.hellofyc.base.json.JsonReader;
+import com.hellofyc.base.json.JsonWriter;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 
 /**
  * Log Tool
@@ -45,17 +49,79 @@ public final class FLog {
     public static final int JSON         = 8;
     public static final int FILE         = 9;
 
+    /** Walks the stack on every call to prefix the message with the caller location. */
+    public static final int LOCATION_FULL   = 0;
+    /** Walks the stack once per tag and reuses its file name, untagged calls walk every time. */
+    public static final int LOCATION_TAGGED = 1;
+    /** Never walks the stack, untagged messages use the "FLog" tag. */
+    public static final int LOCATION_NONE   = 2;
+
     public static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
+    private static final String DEFAULT_TAG = "FLog";
+    private static final int LOCATION_CACHE_SIZE = 256;
+
+    private static final String JSON_INDENT = "    ";
+    private static final String JSON_LINE_PREFIX = "║ ";
+
+    private static final ArrayMap<String, LogAppender> sAppenders = new ArrayMap<>();
+    private static final LruCache<String, String[]> sLocationCache = new LruCache<>(LOCATION_CACHE_SIZE);
+
+    private static volatile int sLevel = VERBOSE;
+    private static volatile int sLocationMode = LOCATION_FULL;
+    private static volatile LogRecorder sRecorder;
+    private static volatile boolean sLogcatEnabled = true;
+
+    /**
+     * Drops messages below the level before any text is built, {@link #VERBOSE} by default.
+     */
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    public static boolean isLoggable(int level) {
+        return level >= sLevel;
+    }
+
+    /**
+     * Also records every message passing the level into the recorder, null to stop.
+     * Together with {@link #setLogcatEnabled(boolean)} false and {@link #LOCATION_NONE}
+     * a message costs no allocation beyond its text.
+     */
+    public static void setRecorder(LogRecorder recorder) {
+        sRecorder = recorder;
+    }
+
+    public static LogRecorder getRecorder() {
+        return sRecorder;
+    }
+
+    /**
+     * Enabled by default.
+     */
+    public static void setLogcatEnabled(boolean enabled) {
+        sLogcatEnabled = enabled;
+    }
+
+    /**
+     * {@link #LOCATION_FULL} by default.
+     */
+    public static void setLocationMode(int mode) {
+        sLocationMode = mode;
+        sLocationCache.evictAll();
+    }
+
     public static void v() {
         v(null, "");
     }
 
     public static void v(Object textObject) {
+        if (!isLoggable(VERBOSE)) return;
         v(null, String.valueOf(textObject));
     }
 
     public static void v(String tag, Object text) {
+        if (!isLoggable(VERBOSE)) return;
         printLog(VERBOSE, new LogInfo(tag, String.valueOf(text)));
     }
 
@@ -64,10 +130,12 @@ public final class FLog {
     }
 
     public static void a(Object textObject) {
+        if (!isLoggable(ASSERT)) return;
         a(null, String.valueOf(textObject));
     }
 
     public static void a(String tag, Object text) {
+        if (!isLoggable(ASSERT)) return;
         printLog(ASSERT, new LogInfo(tag, String.valueOf(text)));
     }
 
@@ -76,10 +144,12 @@ public final class FLog {
     }
 
     public static void i(Object textObject) {
+        if (!isLoggable(INFO)) return;
         i(null, String.valueOf(textObject));
     }
 
     public static void i(String tag, Object text) {
+        if (!isLoggable(INFO)) return;
         printLog(INFO, new LogInfo(tag, String.valueOf(text)));
     }
 
@@ -88,10 +158,12 @@ public final class FLog {
     }
 
     public static void w(Object textObject) {
+        if (!isLoggable(WARN)) return;
         w(null, String.valueOf(textObject));
     }
 
     public static void w(String tag, String textObject) {
+        if (!isLoggable(WARN)) return;
         printLog(WARN, new LogInfo(tag, textObject));
     }
 
@@ -100,43 +172,135 @@ public final class FLog {
     }
 
     public static void e(Object textObject) {
+        if (!isLoggable(ERROR)) return;
         e(null, String.valueOf(textObject));
     }
 
     public static void e(Throwable tr) {
-        Log.e(getInvokeStackTraceElement().getFileName(), "", tr);
+        if (!isLoggable(ERROR)) return;
+        printLog(ERROR, new LogInfo(null, "", tr));
     }
 
     public static void e(String tag, Object textObject) {
+        if (!isLoggable(ERROR)) return;
         printLog(ERROR, new LogInfo(tag, String.valueOf(textObject)));
     }
 
     public static void e(String tag, Object textObject, Throwable e) {
+        if (!isLoggable(ERROR)) return;
         printLog(ERROR, new LogInfo(tag, String.valueOf(textObject), e));
     }
 
     public static void json(String jsonText) {
+        if (!isLoggable(INFO)) return;
         printLog(JSON, new LogInfo(null, jsonText));
     }
 
+    /**
+     * Pretty prints a map, collection, org.json or {@link com.hellofyc.base.json.JsonModel} value.
+     */
+    public static void json(Object value) {
+        if (!isLoggable(INFO)) return;
+        if (value instanceof String) {
+            json((String) value);
+            return;
+        }
+        if (sRecorder != null) {
+            // the recorder gets the compact text, logcat the same reformatted
+            printLog(JSON, new LogInfo(null, toJson(value)));
+            return;
+        }
+        if (!sLogcatEnabled) return;
+        String[] wrapContent = getWrappedContent(null, null);
+        LogcatWriter writer = new LogcatWriter(INFO, wrapContent[0], JSON_LINE_PREFIX);
+        writer.println(wrapContent[1]);
+        try {
+            new JsonWriter(writer).setIndent(JSON_INDENT).writeValue(value).flush();
+        } catch (IOException | RuntimeException e) {
+            writer.println(String.valueOf(value));
+        }
+        writer.flushLine();
+    }
+
+    private static String toJson(Object value) {
+        StringWriter writer = new StringWriter();
+        try {
+            new JsonWriter(writer).writeValue(value).flush();
+            return writer.toString();
+        } catch (IOException | RuntimeException e) {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Appends the text to the file in the background, see {@link LogAppender}.
+     */
     public static void file(String path, String text) {
         printLog(FILE, new LogInfo(null, text, path, null));
     }
 
+    /**
+     * The appender used by {@link #file(String, String)} for the path, e.g. to set its
+     * rolling policy.
+     */
+    public static LogAppender getFileAppender(@NonNull String path) {
+        synchronized (sAppenders) {
+            LogAppender appender = sAppenders.get(path);
+            if (appender == null) {
+                appender = new LogAppender(new File(path));
+                sAppenders.put(path, appender);
+            }
+            return appender;
+        }
+    }
+
+    /**
+     * Waits until everything passed to {@link #file(String, String)} is on disk.
+     *
+     * @return false on timeout
+     */
+    public static boolean flush(long timeoutMillis) {
+        LogAppender[] appenders;
+        synchronized (sAppenders) {
+            appenders = sAppenders.values().toArray(new LogAppender[sAppenders.size()]);
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        boolean flushed = true;
+        for (LogAppender appender : appenders) {
+            flushed &= appender.flush(Math.max(deadline - System.currentTimeMillis(), 0));
+        }
+        return flushed;
+    }
+
     @SuppressWarnings("PointlessBooleanExpression")
     private static void printLog(int type, @NonNull LogInfo logInfo) {
+        if (type == FILE) {
+            printFile(logInfo.path, logInfo.text == null ? "NULL" : logInfo.text);
+            return;
+        }
+        LogRecorder recorder = sRecorder;
+        if (!sLogcatEnabled && recorder == null) return;
+        if (logInfo.throwable != null) {
+            String stackTrace = Log.getStackTraceString(logInfo.throwable);
+            logInfo.text = logInfo.text == null || logInfo.text.isEmpty()
+                    ? stackTrace : logInfo.text + LINE_SEPARATOR + stackTrace;
+        }
+        int level = type == JSON ? INFO : type;
+        if (!sLogcatEnabled && sLocationMode == LOCATION_NONE) {
+            recorder.record(level, logInfo.tag == null ? DEFAULT_TAG : logInfo.tag, logInfo.text);
+            return;
+        }
         String[] wrapContent = getWrappedContent(logInfo.tag, logInfo.text);
         logInfo.tag = wrapContent[0];
         String prefix = wrapContent[1];
         logInfo.text = wrapContent[2];
+        if (recorder != null) recorder.record(level, logInfo.tag, logInfo.text);
+        if (!sLogcatEnabled) return;
 
         switch (type) {
             case JSON:
                 printJson(logInfo.tag, prefix, logInfo.text);
                 break;
-            case FILE:
-                printFile(logInfo.path, logInfo.text);
-                break;
             default:
                 String[] texts = StringUtils.divideString(prefix.concat(logInfo.text), 4000);
                 for (String splitedText : texts) {
@@ -146,58 +310,90 @@ public final class FLog {
         }
     }
 
+    /**
+     * @return the tag, the location prefix and the text
+     */
     private static String[] getWrappedContent(String tag, String text) {
+        if (text == null) text = "NULL";
+        switch (sLocationMode) {
+            case LOCATION_NONE:
+                return new String[]{tag == null ? DEFAULT_TAG : tag, "", text};
+            case LOCATION_TAGGED:
+                if (tag != null) {
+                    String[] location = sLocationCache.get(tag);
+                    if (location == null) {
+                        location = getLocation(tag, false);
+                        sLocationCache.put(tag, location);
+                    }
+                    return new String[]{location[0], location[1], text};
+                }
+                // fall through
+            default:
+                String[] location = getLocation(tag, true);
+                return new String[]{location[0], location[1], text};
+        }
+    }
+
+    /**
+     * @param callSite false leaves out the line and method, for a prefix shared by every call with the tag
+     */
+    private static String[] getLocation(String tag, boolean callSite) {
         StackTraceElement element = getInvokeStackTraceElement();
-        String className = element.getFileName();
+        if (element == null) return new String[]{tag == null ? DEFAULT_TAG : tag, ""};
+
+        String fileName = element.getFileName();
+        if (fileName == null) fileName = element.getClassName();
+        if (!callSite) {
+            return new String[]{tag == null ? fileName : tag, "【 (" + fileName + ") 】 "};
+        }
         String methodName = element.getMethodName();
-        int lineNumber = element.getLineNumber();
-        String methodNameShort = methodName.substring(0, 1).toUpperCase() + methodName.substring(1);
-        String textPrefix = ("【 (").concat(className)
-                .concat(":")
-                .concat(lineNumber + "")
-                .concat(")#")
-                .concat(methodNameShort)
-                .concat(" 】 ");
-        return new String[]{tag == null ? className : tag, textPrefix, text == null ? "NULL" : text};
+        StringBuilder prefix = new StringBuilder(fileName.length() + methodName.length() + 20)
+                .append("【 (").append(fileName)
+                .append(':').append(element.getLineNumber())
+                .append(")#").append(Character.toUpperCase(methodName.charAt(0))).append(methodName, 1, methodName.length())
+                .append(" 】 ");
+        return new String[]{tag == null ? fileName : tag, prefix.toString()};
     }
 
+    /**
+     * The first frame after the FLog frames, the scan stops there instead of walking
+     * the whole stack.
+     */
     private static StackTraceElement getInvokeStackTraceElement() {
-        StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
-        int lastFindIndex = -1;
-        for (int i=0; i<stackTraceElements.length; i++) {
-            if (stackTraceElements[i].getClassName().equals(FLog.class.getName())) {
-                lastFindIndex = i;
+        StackTraceElement[] stackTraceElements = new Throwable().getStackTrace();
+        String className = FLog.class.getName();
+        boolean inFLog = false;
+        for (StackTraceElement element : stackTraceElements) {
+            if (element.getClassName().equals(className)) {
+                inFLog = true;
+            } else if (inFLog) {
+                return element;
             }
         }
-        return stackTraceElements[lastFindIndex + 1];
+        return null;
     }
 
+    /**
+     * Reformats the text token by token, each line is logged as soon as it is complete.
+     */
     private static void printJson(String tag, String prefix, String jsonText) {
-        String message;
-        try {
-            if (jsonText.startsWith("{")) {
-                JSONObject jsonObject = new JSONObject(jsonText);
-                message = jsonObject.toString(4);
-            } else if (jsonText.startsWith("[")) {
-                JSONArray jsonArray = new JSONArray(jsonText);
-                message = jsonArray.toString(4);
-            } else {
-                message = jsonText;
+        LogcatWriter writer = new LogcatWriter(INFO, tag, JSON_LINE_PREFIX);
+        writer.println(prefix);
+        if (jsonText.startsWith("{") || jsonText.startsWith("[")) {
+            try {
+                new JsonWriter(writer).setIndent(JSON_INDENT).copy(new JsonReader(new StringReader(jsonText))).flush();
+                writer.flushLine();
+                return;
+            } catch (IOException | RuntimeException e) {
+                writer.flushLine();
+                writer.println("Malformed JSON: " + e.getMessage());
             }
-        } catch (JSONException e) {
-            message = jsonText;
-        }
-
-        message = prefix + LINE_SEPARATOR + message;
-        String[] lines = message.split(LINE_SEPARATOR);
-        for (String line : lines) {
-            Log.println(INFO, tag, "║ " + line);
         }
+        writer.println(jsonText);
     }
 
     private static void printFile(String path, String text) {
-        File file = new File(path);
-        FileUtils.writeString(text, file.getParentFile(), file.getName());
+        getFileAppender(path).append(text);
     }
 
     public static String getLogCatInfoByTag(String tag) {
@@ -242,4 +438,60 @@ public final class FLog {
             this.throwable = e;
         }
     }
+
+    /**
+     * Logs every written line with the prefix instead of collecting the whole text.
+     */
+    private static class LogcatWriter extends Writer {
+        private final int mPriority;
+        private final String mTag;
+        private final StringBuilder mLine;
+        private final int mPrefixLength;
+
+        LogcatWriter(int priority, String tag, String prefix) {
+            mPriority = priority;
+            mTag = tag;
+            mLine = new StringBuilder(prefix);
+            mPrefixLength = prefix.length();
+        }
+
+        void println(String text) {
+            int start = 0;
+            int end;
+            while ((end = text.indexOf('\n', start)) != -1) {
+                mLine.append(text, start, end);
+                flushLine();
+                start = end + 1;
+            }
+            mLine.append(text, start, text.length());
+            flushLine();
+        }
+
+        void flushLine() {
+            if (mLine.length() == mPrefixLength) return;
+            Log.println(mPriority, mTag, mLine.toString());
+            mLine.setLength(mPrefixLength);
+        }
+
+        @Override
+        public void write(@NonNull char[] buffer, int offset, int count) {
+            for (int i = offset, end = offset + count; i < end; i++) {
+                char c = buffer[i];
+                if (c == '\n') {
+                    flushLine();
+                } else {
+                    mLine.append(c);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            flushLine();
+        }
+    }
 }
@@ -18,6 +18,7 @@ import android.graphics.Bitmap;
 import android.text.TextUtils;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -28,8 +29,10 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.security.Key;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -338,6 +341,68 @@ public final class FileUtils {
 		}
 	}
 
+    /**
+     * Encrypts the file with {@link AesGcmOutputStream} in constant memory, the dest file is replaced.
+     *
+     * @return the number of plain bytes
+     */
+    public static long encryptFile(File srcFile, File destFile, Key key) throws IOException {
+        InputStream in = new FileInputStream(srcFile);
+        try {
+            return encrypt(in, destFile, key);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Encrypts the stream into the file, the stream is not closed. The file is deleted
+     * if the stream fails, rather than sealed as a shorter valid file.
+     *
+     * @return the number of plain bytes
+     */
+    public static long encrypt(InputStream in, File destFile, Key key) throws IOException {
+        FileOutputStream fileOut = new FileOutputStream(destFile);
+        boolean success = false;
+        try {
+            OutputStream out = new AesGcmOutputStream(new BufferedOutputStream(fileOut), key);
+            long count = IoUtils.copy(in, out);
+            out.close();
+            success = true;
+            return count;
+        } finally {
+            if (!success) {
+                IoUtils.close(fileOut);
+                if (!destFile.delete()) FLog.w("Unable to delete " + destFile);
+            }
+        }
+    }
+
+    /**
+     * Decrypts a file of {@link #encryptFile(File, File, Key)}. The dest file is deleted if
+     * any segment fails authentication.
+     *
+     * @return the number of plain bytes
+     */
+    public static long decryptFile(File srcFile, File destFile, Key key) throws IOException {
+        InputStream in = new AesGcmInputStream(new BufferedInputStream(new FileInputStream(srcFile)), key);
+        OutputStream out = null;
+        boolean success = false;
+        try {
+            out = new FileOutputStream(destFile);
+            long count = IoUtils.copy(in, out);
+            out.close();
+            success = true;
+            return count;
+        } finally {
+            in.close();
+            if (!success) {
+                IoUtils.close(out);
+                if (out != null && !destFile.delete()) FLog.w("Unable to delete " + destFile);
+            }
+        }
+    }
+
 	/**
 	 * 判断文件的编码格式
 	 */
@@ -0,0 +1,122 @@
+package com.hellofyc.base.util;
+
+import android.support.annotation.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Incremental MessageDigest, see {@link MD5Utils} for whole files.
+ *
+ * Streams are read through one reusable array and file channels through one reusable direct
+ * buffer, both allocated on first use. Not thread safe.
+ *
+ * Created on 2016/7/22.
+ *
+ * @author Yucun Fang
+ */
+public final class Hasher {
+
+    public static final String MD5 = "MD5";
+    public static final String SHA_1 = "SHA-1";
+    public static final String SHA_256 = "SHA-256";
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int CHANNEL_BUFFER_SIZE = 256 * 1024;
+
+    private final MessageDigest mDigest;
+    private byte[] mStreamBuffer;
+    private ByteBuffer mChannelBuffer;
+
+    /**
+     * @param algorithm e.g. {@link #MD5}, {@link #SHA_1} or {@link #SHA_256}
+     * @throws IllegalArgumentException if the algorithm is not available
+     */
+    public Hasher(@NonNull String algorithm) {
+        try {
+            mDigest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public String getAlgorithm() {
+        return mDigest.getAlgorithm();
+    }
+
+    public int getDigestLength() {
+        return mDigest.getDigestLength();
+    }
+
+    public Hasher update(@NonNull byte[] data) {
+        mDigest.update(data);
+        return this;
+    }
+
+    public Hasher update(@NonNull byte[] data, int offset, int length) {
+        mDigest.update(data, offset, length);
+        return this;
+    }
+
+    /**
+     * Consumes the remaining bytes of the buffer.
+     */
+    public Hasher update(@NonNull ByteBuffer buffer) {
+        mDigest.update(buffer);
+        return this;
+    }
+
+    /**
+     * Reads the stream to its end, the stream is not closed.
+     */
+    public Hasher update(@NonNull InputStream in) throws IOException {
+        if (mStreamBuffer == null) mStreamBuffer = new byte[STREAM_BUFFER_SIZE];
+        int length;
+        while ((length = in.read(mStreamBuffer)) != -1) {
+            mDigest.update(mStreamBuffer, 0, length);
+        }
+        return this;
+    }
+
+    /**
+     * Reads the range with positional reads, so one channel can be shared between threads.
+     */
+    public Hasher update(@NonNull FileChannel channel, long position, long length) throws IOException {
+        if (mChannelBuffer == null) mChannelBuffer = ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE);
+        ByteBuffer buffer = mChannelBuffer;
+        long end = position + length;
+        while (position < end) {
+            buffer.clear();
+            if (end - position < buffer.capacity()) buffer.limit((int) (end - position));
+            int count = channel.read(buffer, position);
+            if (count == -1) throw new EOFException("Unexpected end at " + position);
+            position += count;
+            buffer.flip();
+            mDigest.update(buffer);
+        }
+        return this;
+    }
+
+    /**
+     * Finishes the digest and resets the hasher for reuse.
+     */
+    public byte[] digest() {
+        return mDigest.digest();
+    }
+
+    /**
+     * {@link #digest()} as lower case hex, leading zeros included.
+     */
+    public String hexDigest() {
+        return HexCodec.encodeToString(mDigest.digest());
+    }
+
+    public void reset() {
+        mDigest.reset();
+    }
+}
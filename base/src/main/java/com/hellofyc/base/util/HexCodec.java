@@ -0,0 +1,71 @@
+package com.hellofyc.base.util;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Table driven lower case hex, writing into caller supplied buffers.
+ *
+ * Created on 2016/7/21.
+ *
+ * @author Yucun Fang
+ */
+public final class HexCodec {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) VALUES[i] = -1;
+        for (int i = 0; i < 10; i++) VALUES['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private HexCodec() {
+    }
+
+    /**
+     * @return the number of chars written, 2 * length
+     */
+    public static int encode(@NonNull byte[] in, int offset, int length, @NonNull char[] out, int outOffset) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int b = in[i];
+            out[outOffset++] = DIGITS[b >> 4 & 0x0f];
+            out[outOffset++] = DIGITS[b & 0x0f];
+        }
+        return length * 2;
+    }
+
+    public static String encodeToString(@NonNull byte[] data) {
+        char[] chars = new char[data.length * 2];
+        encode(data, 0, data.length, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * @param length an even number of chars
+     * @return the number of bytes written, length / 2
+     * @throws IllegalArgumentException on an odd length or a char that is not hex
+     */
+    public static int decode(@NonNull CharSequence in, int offset, int length, @NonNull byte[] out, int outOffset) {
+        if ((length & 1) != 0) throw new IllegalArgumentException("Odd hex length " + length);
+        for (int i = offset, end = offset + length; i < end; i += 2) {
+            out[outOffset++] = (byte) (value(in.charAt(i)) << 4 | value(in.charAt(i + 1)));
+        }
+        return length / 2;
+    }
+
+    public static byte[] decode(@NonNull CharSequence hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        decode(hex, 0, hex.length(), bytes, 0);
+        return bytes;
+    }
+
+    private static int value(char c) {
+        int value = c < 128 ? VALUES[c] : -1;
+        if (value < 0) throw new IllegalArgumentException("Not a hex digit: " + c);
+        return value;
+    }
+}
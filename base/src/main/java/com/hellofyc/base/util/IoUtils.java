@@ -187,6 +187,22 @@ public final class IoUtils {
 		return sb.toString();
 	}
 
+	/**
+	 * Copies the input stream to the output stream, neither stream is closed.
+	 *
+	 * @return the number of bytes copied
+	 */
+	public static long copy(@NonNull InputStream in, @NonNull OutputStream out) throws IOException {
+		byte[] buffer = new byte[8 * 1024];
+		long count = 0;
+		int len;
+		while ((len = in.read(buffer)) != -1) {
+			out.write(buffer, 0, len);
+			count += len;
+		}
+		return count;
+	}
+
 	public static InputStream getPhoneLogs() throws IOException, InterruptedException {
 		ProcessBuilder builder = new ProcessBuilder("logcat", "-d");
 		builder.redirectErrorStream(true);
@@ -16,13 +16,20 @@
 
 package com.hellofyc.base.util;
 
+import android.support.annotation.NonNull;
+
+import com.hellofyc.base.json.JsonReader;
+import com.hellofyc.base.json.JsonToken;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -38,68 +45,73 @@ public final class JsonUtils {
 
 	private JsonUtils(){}
 	
+    /**
+     * Parses a JSON object into HashMaps and ArrayLists of String, Boolean, Integer, Long,
+     * Double and null values.
+     *
+     * @return null if the input is not a valid JSON object
+     */
     public static Map<String, Object> parse(String jsonString) {
-        Map<String, Object> result = null;
+        if (jsonString == null) return null;
+        return parse(new StringReader(jsonString));
+    }
 
-        if (jsonString != null) {
-            try {
-                JSONObject jsonObject = new JSONObject(jsonString);
-                result = parseJsonObject(jsonObject);
-            } catch (JSONException e) {
-            	if (DEBUG) FLog.e(e);
-            }
+    /**
+     * Like {@link #parse(String)} but reads the stream directly, e.g.
+     * {@link com.hellofyc.base.net.http.ResponseBody#charStream()}. The reader is closed.
+     */
+    public static Map<String, Object> parse(@NonNull Reader reader) {
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) return null;
+            return readObject(jsonReader);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            if (DEBUG) FLog.e(e);
+            return null;
+        } finally {
+            IoUtils.close(jsonReader);
         }
-        return result;
     }
 
-	private static Map<String, Object> parseJsonObject(JSONObject jsonObject) throws JSONException {
-        Map<String, Object> valueObject = null;
-
-        if (jsonObject != null) {
-            valueObject = new HashMap<>();
-            Iterator<String> keyIter = jsonObject.keys();
-
-            while (keyIter.hasNext()) {
-                String keyStr = keyIter.next();
-                Object itemObject = jsonObject.opt(keyStr);
-                if (itemObject != null) {
-                    valueObject.put(keyStr, parseValue(itemObject));
-                }
-            }
+    private static Map<String, Object> readObject(JsonReader reader) throws IOException {
+        Map<String, Object> map = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            map.put(name, readValue(reader));
         }
-        return valueObject;
+        reader.endObject();
+        return map;
     }
 
-    private static Object parseValue(Object inputObject) throws JSONException {
-    	Object outputObject = null;
-
-        if (inputObject != null) {
-            if (inputObject instanceof JSONArray) {
-                outputObject = parseJsonArray((JSONArray) inputObject);
-            } else if (inputObject instanceof JSONObject) {
-                outputObject = parseJsonObject((JSONObject) inputObject);
-            } else if (inputObject instanceof String
-            		|| inputObject instanceof Boolean
-            		|| inputObject instanceof Integer) {
-                outputObject = inputObject;
-            }
+    private static List<Object> readArray(JsonReader reader) throws IOException {
+        List<Object> list = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            list.add(readValue(reader));
         }
-        return outputObject;
+        reader.endArray();
+        return list;
     }
 
-    private static List<Object> parseJsonArray(JSONArray jsonArray) throws JSONException {
-        List<Object> valueList = null;
-
-        if (null != jsonArray) {
-            valueList = new ArrayList<>();
-            for (int i = 0; i < jsonArray.length(); i++) {
-                Object itemObject = jsonArray.get(i);
-                if (null != itemObject) {
-                    valueList.add(parseValue(itemObject));
-                }
-            }
+    private static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return reader.nextNumber();
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                throw new IllegalStateException("Unexpected " + reader.peek());
         }
-        return valueList;
     }
 
     public static boolean has(JSONObject object, String key) {
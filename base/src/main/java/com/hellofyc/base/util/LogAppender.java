@@ -0,0 +1,270 @@
+package com.hellofyc.base.util;
+
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends lines to a log file on a single background thread, see {@link FLog#file(String, String)}.
+ *
+ * {@link #append(String)} only offers the line to a bounded queue and never blocks or
+ * touches the disk; lines are dropped and counted while the queue is full. The writer
+ * keeps the file open, writes whatever is queued as one batch and flushes once per batch.
+ * The file is rolled to name.1 ... name.N when it exceeds the size limit or the roll
+ * interval (UTC aligned, e.g. daily) has passed since it was last written.
+ *
+ * Created on 2016/7/16.
+ *
+ * @author Yucun Fang
+ */
+public final class LogAppender implements Closeable {
+
+    private static final String TAG = "LogAppender";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH = 256;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final Object CLOSE = new Object();
+
+    private final File mFile;
+    private final BlockingQueue<Object> mQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private volatile long mMaxFileSize = 1024 * 1024;
+    private volatile int mMaxBackups = 3;
+    private volatile long mRollIntervalMillis = 0;
+    private Thread mThread;
+    private volatile boolean mClosed = false;
+
+    // writer thread only
+    private OutputStream mOutputStream;
+    private long mFileSize;
+    private long mFilePeriod;
+
+    public LogAppender(@NonNull File file) {
+        mFile = file;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * 1M by default.
+     *
+     * @param bytes 0 to never roll by size
+     */
+    public LogAppender setMaxFileSize(@IntRange(from = 0) long bytes) {
+        mMaxFileSize = bytes;
+        return this;
+    }
+
+    /**
+     * Rolled files kept, 3 by default. 0 deletes the file when it rolls.
+     */
+    public LogAppender setMaxBackups(@IntRange(from = 0) int count) {
+        mMaxBackups = count;
+        return this;
+    }
+
+    /**
+     * Rolls the file when the period of this length changes, e.g. one day, never by default.
+     *
+     * @param millis 0 to never roll by time
+     */
+    public LogAppender setRollInterval(@IntRange(from = 0) long millis) {
+        mRollIntervalMillis = millis;
+        return this;
+    }
+
+    /**
+     * Queues the text followed by a line break.
+     *
+     * @return false if the appender is closed or the queue is full
+     */
+    public boolean append(String text) {
+        if (mClosed) return false;
+        ensureStarted();
+        if (!mQueue.offer(String.valueOf(text))) {
+            mDroppedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lines dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Waits until everything queued so far is written and flushed, e.g. before the
+     * process dies in {@link com.hellofyc.base.app.CrashHandler}.
+     *
+     * @return false on timeout
+     */
+    public boolean flush(long timeoutMillis) {
+        if (mClosed || Thread.currentThread() == mThread) return true;
+        ensureStarted();
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (!mQueue.offer(latch, Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS)) {
+                if (System.currentTimeMillis() >= deadline) return false;
+            }
+            return latch.await(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Writes what is queued and closes the file in the background.
+     */
+    @Override
+    public void close() {
+        if (mClosed) return;
+        mClosed = true;
+        synchronized (this) {
+            if (mThread == null) return;
+        }
+        try {
+            mQueue.put(CLOSE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void ensureStarted() {
+        if (mThread != null) return;
+
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "LogAppender-" + mFile.getName());
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    private void loop() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(mQueue.take());
+                mQueue.drainTo(batch, MAX_BATCH - 1);
+                boolean close = false;
+                for (int i = 0, size = batch.size(); i < size; i++) {
+                    Object item = batch.get(i);
+                    if (item instanceof String) {
+                        write((String) item);
+                    } else if (item instanceof CountDownLatch) {
+                        flushOutput();
+                        ((CountDownLatch) item).countDown();
+                    } else if (item == CLOSE) {
+                        close = true;
+                    }
+                }
+                batch.clear();
+                flushOutput();
+                if (close) break;
+            }
+        } catch (InterruptedException e) {
+            flushOutput();
+        } finally {
+            IoUtils.close(mOutputStream);
+            mOutputStream = null;
+        }
+    }
+
+    private void write(String text) {
+        byte[] bytes = (text + '\n').getBytes(UTF_8);
+        try {
+            long now = System.currentTimeMillis();
+            if (mOutputStream == null) open(now);
+            if (shouldRoll(bytes.length, now)) {
+                roll();
+                open(now);
+            }
+            mOutputStream.write(bytes);
+            mFileSize += bytes.length;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write " + mFile, e);
+            IoUtils.close(mOutputStream);
+            mOutputStream = null;
+        }
+    }
+
+    private boolean shouldRoll(int length, long now) {
+        if (mFileSize == 0) return false;
+
+        long maxFileSize = mMaxFileSize;
+        if (maxFileSize > 0 && mFileSize + length > maxFileSize) return true;
+
+        long interval = mRollIntervalMillis;
+        return interval > 0 && now / interval != mFilePeriod / interval;
+    }
+
+    private void open(long now) throws IOException {
+        File dir = mFile.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        mFileSize = mFile.length();
+        mFilePeriod = mFileSize > 0 ? mFile.lastModified() : now;
+        mOutputStream = new BufferedOutputStream(new FileOutputStream(mFile, true), BUFFER_SIZE);
+    }
+
+    private void roll() {
+        IoUtils.close(mOutputStream);
+        mOutputStream = null;
+
+        int maxBackups = mMaxBackups;
+        String path = mFile.getPath();
+        if (maxBackups <= 0) {
+            if (!mFile.delete()) Log.w(TAG, "Unable to delete " + mFile);
+            return;
+        }
+        File oldest = new File(path + "." + maxBackups);
+        if (oldest.exists() && !oldest.delete()) Log.w(TAG, "Unable to delete " + oldest);
+        for (int i = maxBackups - 1; i >= 1; i--) {
+            File backup = new File(path + "." + i);
+            if (backup.exists() && !backup.renameTo(new File(path + "." + (i + 1)))) {
+                Log.w(TAG, "Unable to roll " + backup);
+            }
+        }
+        if (!mFile.renameTo(new File(path + ".1"))) Log.w(TAG, "Unable to roll " + mFile);
+    }
+
+    private void flushOutput() {
+        if (mOutputStream == null) return;
+        try {
+            mOutputStream.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to flush " + mFile, e);
+            IoUtils.close(mOutputStream);
+            mOutputStream = null;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.hellofyc.base.util;
+
+import android.os.Process;
+import android.support.annotation.IntRange;
+import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps the most recent log events in a fixed ring buffer, see {@link FLog#setRecorder(LogRecorder)}.
+ *
+ * An event is stored as level, timestamp, thread id, tag id and the UTF-16 chars of the
+ * message, copied straight into the buffer, so recording allocates nothing once a tag
+ * has been seen. The oldest events are overwritten when the buffer is full. Text is only
+ * formatted by {@link #dump(Writer)}, e.g. from {@link com.hellofyc.base.app.CrashHandler}.
+ *
+ * Created on 2016/7/17.
+ *
+ * @author Yucun Fang
+ */
+public final class LogRecorder {
+
+    /** length, level, timestamp, tid, tag id, char count */
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 4 + 4 + 4;
+    private static final int DEFAULT_MAX_MESSAGE_CHARS = 1024;
+
+    private final byte[] mBuffer;
+    private final int mCapacity;
+    private final int mMaxMessageChars;
+    /** Absolute positions, the buffer holds [mTail, mHead). */
+    private long mHead = 0;
+    private long mTail = 0;
+    private long mDroppedCount = 0;
+
+    private final ArrayMap<String, Integer> mTagIds = new ArrayMap<>();
+    private final List<String> mTags = new ArrayList<>();
+
+    public LogRecorder(@IntRange(from = 1024) int capacityBytes) {
+        this(capacityBytes, DEFAULT_MAX_MESSAGE_CHARS);
+    }
+
+    /**
+     * @param maxMessageChars longer messages are truncated
+     */
+    public LogRecorder(@IntRange(from = 1024) int capacityBytes, @IntRange(from = 1) int maxMessageChars) {
+        mCapacity = capacityBytes;
+        mBuffer = new byte[capacityBytes];
+        mMaxMessageChars = Math.min(maxMessageChars, (capacityBytes - HEADER_SIZE) / 2);
+    }
+
+    public void record(int level, String tag, String message) {
+        long timestamp = System.currentTimeMillis();
+        int tid = Process.myTid();
+        if (message == null) message = "NULL";
+        int charCount = Math.min(message.length(), mMaxMessageChars);
+        int length = HEADER_SIZE + charCount * 2;
+
+        synchronized (this) {
+            int tagId = getTagId(tag);
+            while (mHead + length - mTail > mCapacity) {
+                mTail += getInt(mTail);
+                mDroppedCount++;
+            }
+            long pos = mHead;
+            putInt(pos, length);
+            mBuffer[index(pos + 4)] = (byte) level;
+            putLong(pos + 5, timestamp);
+            putInt(pos + 13, tid);
+            putInt(pos + 17, tagId);
+            putInt(pos + 21, charCount);
+            pos += HEADER_SIZE;
+            for (int i = 0; i < charCount; i++, pos += 2) {
+                char c = message.charAt(i);
+                mBuffer[index(pos)] = (byte) (c >> 8);
+                mBuffer[index(pos + 1)] = (byte) c;
+            }
+            mHead = pos;
+        }
+    }
+
+    /**
+     * Events overwritten since the recorder was created or cleared.
+     */
+    public synchronized long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public synchronized void clear() {
+        mHead = 0;
+        mTail = 0;
+        mDroppedCount = 0;
+    }
+
+    /**
+     * Writes the recorded events oldest first, one line each like logcat's threadtime format.
+     */
+    public void dump(@NonNull Writer writer) throws IOException {
+        byte[] buffer;
+        long head;
+        long tail;
+        long dropped;
+        String[] tags;
+        synchronized (this) {
+            buffer = mBuffer.clone();
+            head = mHead;
+            tail = mTail;
+            dropped = mDroppedCount;
+            tags = mTags.toArray(new String[mTags.size()]);
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        Date date = new Date();
+        StringBuilder sb = new StringBuilder(256);
+        if (dropped > 0) {
+            writer.write("--- " + dropped + " earlier events overwritten\n");
+        }
+        int pid = Process.myPid();
+        for (long pos = tail; pos < head; ) {
+            int length = getInt(buffer, pos);
+            int level = buffer[index(pos + 4)];
+            date.setTime(getLong(buffer, pos + 5));
+            int tid = getInt(buffer, pos + 13);
+            int tagId = getInt(buffer, pos + 17);
+            int charCount = getInt(buffer, pos + 21);
+
+            sb.setLength(0);
+            sb.append(format.format(date)).append(' ').append(pid).append(' ').append(tid).append(' ')
+                    .append(getLevelChar(level)).append(' ')
+                    .append(tagId >= 0 && tagId < tags.length ? tags[tagId] : "?").append(": ");
+            long charPos = pos + HEADER_SIZE;
+            for (int i = 0; i < charCount; i++, charPos += 2) {
+                sb.append((char) ((buffer[index(charPos)] & 0xff) << 8 | buffer[index(charPos + 1)] & 0xff));
+            }
+            sb.append('\n');
+            writer.write(sb.toString());
+            pos += length;
+        }
+        writer.flush();
+    }
+
+    private int getTagId(String tag) {
+        if (tag == null) tag = "";
+        Integer id = mTagIds.get(tag);
+        if (id == null) {
+            id = mTags.size();
+            mTags.add(tag);
+            mTagIds.put(tag, id);
+        }
+        return id;
+    }
+
+    private int index(long pos) {
+        return (int) (pos % mCapacity);
+    }
+
+    private void putInt(long pos, int value) {
+        mBuffer[index(pos)] = (byte) (value >>> 24);
+        mBuffer[index(pos + 1)] = (byte) (value >>> 16);
+        mBuffer[index(pos + 2)] = (byte) (value >>> 8);
+        mBuffer[index(pos + 3)] = (byte) value;
+    }
+
+    private void putLong(long pos, long value) {
+        putInt(pos, (int) (value >>> 32));
+        putInt(pos + 4, (int) value);
+    }
+
+    private int getInt(long pos) {
+        return getInt(mBuffer, pos);
+    }
+
+    private int getInt(byte[] buffer, long pos) {
+        return (buffer[index(pos)] & 0xff) << 24
+                | (buffer[index(pos + 1)] & 0xff) << 16
+                | (buffer[index(pos + 2)] & 0xff) << 8
+                | buffer[index(pos + 3)] & 0xff;
+    }
+
+    private long getLong(byte[] buffer, long pos) {
+        return (long) getInt(buffer, pos) << 32 | getInt(buffer, pos + 4) & 0xffffffffL;
+    }
+
+    private static char getLevelChar(int level) {
+        switch (level) {
+            case Log.VERBOSE:
+                return 'V';
+            case Log.DEBUG:
+                return 'D';
+            case Log.INFO:
+                return 'I';
+            case Log.WARN:
+                return 'W';
+            case Log.ERROR:
+                return 'E';
+            case Log.ASSERT:
+                return 'A';
+            default:
+                return '?';
+        }
+    }
+}
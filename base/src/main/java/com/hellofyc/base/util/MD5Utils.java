@@ -1,11 +1,20 @@
 package com.hellofyc.base.util;
 
+import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.math.BigInteger;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Created on 2015/9/7.
@@ -17,6 +26,8 @@ public class MD5Utils {
 
     private static final String ALGORITHM_MD5         = "MD5";
 
+    public static final int DEFAULT_TREE_CHUNK_SIZE   = 4 * 1024 * 1024;
+
     public static String encode(@NonNull String data) {
         return encode(data.getBytes());
     }
@@ -25,43 +36,105 @@ public class MD5Utils {
         try {
             MessageDigest md = MessageDigest.getInstance(ALGORITHM_MD5);
             md.update(data);
-            byte[] bytes = md.digest();
-            int i;
-            StringBuilder stringBuilder = new StringBuilder();
-            for (byte b : bytes) {
-                i = b;
-                if (i < 0) {
-                    i += 256;
-                }
-                if (i < 16) {
-                    stringBuilder.append("0");
-                }
-                stringBuilder.append(Integer.toHexString(i));
-            }
-            return stringBuilder.toString();
+            return HexCodec.encodeToString(md.digest());
         } catch (Exception e) {
             if (DEBUG) FLog.e(e);
         }
         return "";
     }
 
+    /**
+     * @return lower case hex of 32 chars, or null if the file cannot be read
+     */
     public static String getFileMD5(@NonNull File file) {
-        MessageDigest md = null;
-        FileInputStream fis = null;
-        byte[] buffer = new byte[1024 * 8];
-        int length;
+        return getFileDigest(file, Hasher.MD5);
+    }
+
+    /**
+     * @param algorithm e.g. {@link Hasher#SHA_256}
+     * @return lower case hex, or null if the file cannot be read
+     */
+    public static String getFileDigest(@NonNull File file, @NonNull String algorithm) {
         try {
-            md = MessageDigest.getInstance(ALGORITHM_MD5);
-            fis = new FileInputStream(file);
-            while ((length = fis.read(buffer, 0, 1024)) != -1) {
-                md.update(buffer, 0, length);
+            return HexCodec.encodeToString(digest(file, algorithm));
+        } catch (IOException e) {
+            if (DEBUG) FLog.e(e);
+        }
+        return null;
+    }
+
+    public static byte[] digest(@NonNull File file, @NonNull String algorithm) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return new Hasher(algorithm).update(channel, 0, channel.size()).digest();
+        } finally {
+            IoUtils.close(in);
+        }
+    }
+
+    /**
+     * Hashes the chunks of a large file in parallel, one task per core. The result is the
+     * digest of the concatenated chunk digests, so it differs from {@link #digest(File, String)}
+     * and the other side has to compute it with the same chunk size.
+     *
+     * @param chunkSize e.g. {@link #DEFAULT_TREE_CHUNK_SIZE}
+     */
+    public static byte[] treeDigest(@NonNull File file, @NonNull final String algorithm,
+                                    @IntRange(from = 1) final int chunkSize,
+                                    @NonNull ExecutorService executor) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            final long size = channel.size();
+            final int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+            final byte[][] chunkDigests = new byte[chunkCount][];
+            final int taskCount = Math.max(1, Math.min(chunkCount, Runtime.getRuntime().availableProcessors()));
+
+            List<Future<Void>> futures = new ArrayList<>(taskCount);
+            for (int i = 0; i < taskCount; i++) {
+                final int first = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        Hasher hasher = new Hasher(algorithm);
+                        for (int chunk = first; chunk < chunkCount; chunk += taskCount) {
+                            long position = (long) chunk * chunkSize;
+                            chunkDigests[chunk] = hasher.update(channel, position,
+                                    Math.min(chunkSize, size - position)).digest();
+                        }
+                        return null;
+                    }
+                }));
             }
-        } catch (Exception e) {
-            return null;
+            try {
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                cancel(futures);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while hashing " + file);
+            } catch (ExecutionException e) {
+                cancel(futures);
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException(cause);
+            }
+
+            Hasher root = new Hasher(algorithm);
+            for (byte[] chunkDigest : chunkDigests) {
+                root.update(chunkDigest);
+            }
+            return root.digest();
         } finally {
-            IoUtils.close(fis);
+            IoUtils.close(in);
+        }
+    }
+
+    private static void cancel(List<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            future.cancel(true);
         }
-        BigInteger bigInt = new BigInteger(1, md.digest());
-        return bigInt.toString(16);
     }
 }
@@ -0,0 +1,557 @@
+package com.hellofyc.base.util;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.v4.util.ArrayMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Key-value store kept in a memory-mapped, append-only log, see {@link PrefsHelper#mmapStore()}.
+ *
+ * Every write appends typed records behind the live data and then bumps the data length in
+ * the header, so a write costs the size of the changed values instead of the whole file.
+ * Each record carries a CRC32; loading stops at the first torn or corrupt record and
+ * truncates the log there. The log is compacted into a fresh file, swapped in by rename,
+ * once it holds more dead than live bytes. Values may be encrypted one by one with
+ * AES-GCM under a random nonce, the key is derived by PBKDF2-HMAC-SHA256 from a password
+ * and a random salt of the file, which makes opening an encrypted store cost tens of
+ * milliseconds.
+ *
+ * File layout: magic, version, data end, key iterations (4 bytes each), salt (16 bytes), then
+ * records of crc, type, key length (2 bytes), value length, key and value.
+ *
+ * Created on 2016/7/18.
+ *
+ * @author Yucun Fang
+ */
+public final class MmapKvStore {
+
+    private static final int MAGIC = 0x464b5631;
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 32;
+    private static final int DATA_END_OFFSET = 8;
+    private static final int ITERATIONS_OFFSET = 12;
+    private static final int SALT_OFFSET = 16;
+    private static final int SALT_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 4 + 1 + 2 + 4;
+    private static final int INITIAL_SIZE = 16 * 1024;
+    private static final int COMPACT_MIN_BYTES = 16 * 1024;
+    private static final int NONCE_SIZE = 12;
+    private static final int TAG_SIZE = 16;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int KEY_ITERATIONS = 10000;
+
+    private static final byte TYPE_REMOVE = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_FLOAT = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_STRING_SET = 6;
+    private static final byte FLAG_ENCRYPTED = (byte) 0x80;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ArrayMap<String, MmapKvStore> sStores = new ArrayMap<>();
+
+    private final File mFile;
+    private final String mPassword;
+    private SecretKeySpec mKey;
+    private final byte[] mSalt = new byte[SALT_SIZE];
+    private int mIterations = KEY_ITERATIONS;
+    private SecureRandom mRandom;
+
+    private final Map<String, Object> mValues = new HashMap<>();
+    /** Sizes of the live records, for compaction. */
+    private final Map<String, Integer> mRecordSizes = new HashMap<>();
+    /** Records that could not be decrypted, kept as is through compaction. */
+    private final Map<String, byte[]> mOpaqueRecords = new HashMap<>();
+    private long mLiveBytes = 0;
+    private boolean mCreated = false;
+
+    private RandomAccessFile mRandomAccessFile;
+    private FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+    private int mDataEnd = HEADER_SIZE;
+
+    private final ByteArrayOutputStream mRecordStream = new ByteArrayOutputStream(256);
+    private final CRC32 mCrc = new CRC32();
+
+    /**
+     * Opens the store of the file once per process.
+     *
+     * @param password encrypts the values written from now on, null to write plain values
+     * @throws IllegalArgumentException if the store is already open with another password
+     */
+    public static MmapKvStore open(@NonNull File file, String password) {
+        String path = file.getAbsolutePath();
+        synchronized (sStores) {
+            MmapKvStore store = sStores.get(path);
+            if (store == null) {
+                store = new MmapKvStore(file, password);
+                sStores.put(path, store);
+            } else if (password == null ? store.mPassword != null : !password.equals(store.mPassword)) {
+                throw new IllegalArgumentException(file + " is already open with another password");
+            }
+            return store;
+        }
+    }
+
+    private MmapKvStore(File file, String password) {
+        mFile = file;
+        mPassword = password;
+        try {
+            load();
+        } catch (IOException e) {
+            FLog.e(e);
+            closeFile();
+            // the values are only kept in memory
+            if (mKey == null) mKey = deriveKey();
+        }
+    }
+
+    /**
+     * Unmaps the file and forgets the store, the next {@link #open(File, String)} loads the
+     * file again. This instance must not be used afterwards.
+     */
+    public void close() {
+        synchronized (sStores) {
+            if (sStores.get(mFile.getAbsolutePath()) == this) sStores.remove(mFile.getAbsolutePath());
+        }
+        synchronized (this) {
+            closeFile();
+        }
+    }
+
+    /**
+     * True if the file did not exist before this store was opened, until the first write,
+     * e.g. to migrate old data.
+     */
+    public synchronized boolean isCreated() {
+        return mCreated;
+    }
+
+    public synchronized Object get(String key) {
+        return mValues.get(key);
+    }
+
+    public synchronized boolean contains(String key) {
+        return mValues.containsKey(key);
+    }
+
+    public synchronized Map<String, Object> getAll() {
+        return new HashMap<>(mValues);
+    }
+
+    public void put(@NonNull String key, @NonNull Object value) {
+        apply(Collections.<String, Object>singletonMap(key, value), null);
+    }
+
+    public void remove(@NonNull String key) {
+        apply(null, Collections.singleton(key));
+    }
+
+    /**
+     * Appends the values and removals, then publishes them with one header update.
+     *
+     * @param values String, Integer, Long, Float, Boolean or Set&lt;String&gt; values
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void apply(Map<String, ?> values, Collection<String> removals) {
+        mRecordStream.reset();
+        ArrayMap<String, Integer> sizes = new ArrayMap<>();
+        ArrayMap<String, Object> newValues = new ArrayMap<>();
+        try {
+            if (removals != null) {
+                for (String key : removals) {
+                    if (!mValues.containsKey(key) && !mOpaqueRecords.containsKey(key)) continue;
+                    sizes.put(key, -appendRecord(key, TYPE_REMOVE, new byte[0]));
+                }
+            }
+            if (values != null) {
+                for (Map.Entry<String, ?> entry : values.entrySet()) {
+                    Object value = entry.getValue();
+                    if (value instanceof Set) {
+                        value = Collections.unmodifiableSet(new HashSet<>((Set<String>) value));
+                    }
+                    sizes.put(entry.getKey(), appendValue(entry.getKey(), value));
+                    newValues.put(entry.getKey(), value);
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            // nothing was published, memory still matches the file
+            FLog.e(e);
+            return;
+        }
+        mCreated = false;
+        if (removals != null) mValues.keySet().removeAll(removals);
+        mValues.putAll(newValues);
+        for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+            int size = entry.getValue();
+            Integer oldSize = size > 0 ? mRecordSizes.put(entry.getKey(), size) : mRecordSizes.remove(entry.getKey());
+            if (oldSize != null) mLiveBytes -= oldSize;
+            if (size > 0) mLiveBytes += size;
+            mOpaqueRecords.remove(entry.getKey());
+        }
+        writeRecords();
+    }
+
+    public synchronized void clear() {
+        mCreated = false;
+        mValues.clear();
+        mRecordSizes.clear();
+        mOpaqueRecords.clear();
+        mLiveBytes = 0;
+        if (mBuffer == null) return;
+        mDataEnd = HEADER_SIZE;
+        mBuffer.putInt(DATA_END_OFFSET, mDataEnd);
+    }
+
+    /**
+     * Forces the mapped pages to the disk. Without it the writes still survive a process
+     * crash, but not a power loss.
+     */
+    public synchronized void sync() {
+        if (mBuffer != null) mBuffer.force();
+    }
+
+    private void load() throws IOException {
+        File dir = mFile.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        mCreated = !mFile.exists() || mFile.length() < HEADER_SIZE;
+        if (mCreated) {
+            if (mRandom == null) mRandom = new SecureRandom();
+            mRandom.nextBytes(mSalt);
+        }
+        openFile(mFile);
+        if (mCreated) {
+            writeHeader(mBuffer, HEADER_SIZE);
+            mKey = deriveKey();
+            return;
+        }
+        if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION) {
+            throw new IOException("Unknown format of " + mFile);
+        }
+        mIterations = mBuffer.getInt(ITERATIONS_OFFSET);
+        if (mIterations < 1) throw new IOException("Bad key iterations of " + mFile);
+        mBuffer.position(SALT_OFFSET);
+        mBuffer.get(mSalt);
+        mKey = deriveKey();
+
+        int end = Math.min(mBuffer.getInt(DATA_END_OFFSET), mBuffer.capacity());
+        int pos = HEADER_SIZE;
+        while (pos + RECORD_HEADER_SIZE <= end) {
+            int crc = mBuffer.getInt(pos);
+            byte type = mBuffer.get(pos + 4);
+            int keyLength = mBuffer.getShort(pos + 5) & 0xffff;
+            int valueLength = mBuffer.getInt(pos + 7);
+            int recordEnd = pos + RECORD_HEADER_SIZE + keyLength + valueLength;
+            if (valueLength < 0 || recordEnd > end || recordEnd < pos) break;
+
+            byte[] record = new byte[recordEnd - pos];
+            mBuffer.position(pos);
+            mBuffer.get(record);
+            mCrc.reset();
+            mCrc.update(record, 4, record.length - 4);
+            if ((int) mCrc.getValue() != crc) break;
+
+            String key = new String(record, RECORD_HEADER_SIZE, keyLength, UTF_8);
+            Integer oldSize = mRecordSizes.remove(key);
+            if (oldSize != null) mLiveBytes -= oldSize;
+            mValues.remove(key);
+            mOpaqueRecords.remove(key);
+            if ((type & ~FLAG_ENCRYPTED) != TYPE_REMOVE) {
+                mRecordSizes.put(key, record.length);
+                mLiveBytes += record.length;
+                byte[] value = Arrays.copyOfRange(record, RECORD_HEADER_SIZE + keyLength, record.length);
+                try {
+                    if ((type & FLAG_ENCRYPTED) != 0) {
+                        value = crypt(Cipher.DECRYPT_MODE, value);
+                    }
+                    mValues.put(key, decodeValue((byte) (type & ~FLAG_ENCRYPTED), value));
+                } catch (GeneralSecurityException | RuntimeException e) {
+                    mOpaqueRecords.put(key, record);
+                }
+            }
+            pos = recordEnd;
+        }
+        if (pos != mBuffer.getInt(DATA_END_OFFSET)) {
+            FLog.w("Recovered " + mFile + " at " + pos + " of " + mBuffer.getInt(DATA_END_OFFSET) + " bytes");
+            mBuffer.putInt(DATA_END_OFFSET, pos);
+        }
+        mDataEnd = pos;
+    }
+
+    /**
+     * @return the record size
+     */
+    @SuppressWarnings("unchecked")
+    private int appendValue(String key, Object value) throws GeneralSecurityException {
+        byte type;
+        byte[] bytes;
+        if (value instanceof String) {
+            type = TYPE_STRING;
+            bytes = ((String) value).getBytes(UTF_8);
+        } else if (value instanceof Integer) {
+            type = TYPE_INT;
+            bytes = ByteBuffer.allocate(4).putInt((Integer) value).array();
+        } else if (value instanceof Long) {
+            type = TYPE_LONG;
+            bytes = ByteBuffer.allocate(8).putLong((Long) value).array();
+        } else if (value instanceof Float) {
+            type = TYPE_FLOAT;
+            bytes = ByteBuffer.allocate(4).putFloat((Float) value).array();
+        } else if (value instanceof Boolean) {
+            type = TYPE_BOOLEAN;
+            bytes = new byte[]{(byte) ((Boolean) value ? 1 : 0)};
+        } else if (value instanceof Set) {
+            type = TYPE_STRING_SET;
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            Set<String> set = (Set<String>) value;
+            writeInt(stream, set.size());
+            for (String s : set) {
+                byte[] element = s.getBytes(UTF_8);
+                writeInt(stream, element.length);
+                stream.write(element, 0, element.length);
+            }
+            bytes = stream.toByteArray();
+        } else {
+            throw new IllegalArgumentException("Unsupported value type " + value.getClass().getName());
+        }
+        if (mKey != null) {
+            type |= FLAG_ENCRYPTED;
+            bytes = crypt(Cipher.ENCRYPT_MODE, bytes);
+        }
+        return appendRecord(key, type, bytes);
+    }
+
+    private static Object decodeValue(byte type, byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        switch (type) {
+            case TYPE_STRING:
+                return new String(bytes, UTF_8);
+            case TYPE_INT:
+                return buffer.getInt();
+            case TYPE_LONG:
+                return buffer.getLong();
+            case TYPE_FLOAT:
+                return buffer.getFloat();
+            case TYPE_BOOLEAN:
+                return bytes[0] != 0;
+            case TYPE_STRING_SET:
+                int count = buffer.getInt();
+                Set<String> set = new HashSet<>();
+                for (int i = 0; i < count; i++) {
+                    int length = buffer.getInt();
+                    set.add(new String(bytes, buffer.position(), length, UTF_8));
+                    buffer.position(buffer.position() + length);
+                }
+                return Collections.unmodifiableSet(set);
+            default:
+                throw new IllegalArgumentException("Unknown type " + type);
+        }
+    }
+
+    /**
+     * Encodes the record into {@link #mRecordStream}.
+     *
+     * @return the record size
+     */
+    private int appendRecord(String key, byte type, byte[] value) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        if (keyBytes.length > 0xffff) throw new IllegalArgumentException("Key too long: " + key);
+
+        byte[] record = new byte[RECORD_HEADER_SIZE + keyBytes.length + value.length];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.position(4);
+        buffer.put(type).putShort((short) keyBytes.length).putInt(value.length).put(keyBytes).put(value);
+        mCrc.reset();
+        mCrc.update(record, 4, record.length - 4);
+        buffer.putInt(0, (int) mCrc.getValue());
+        mRecordStream.write(record, 0, record.length);
+        return record.length;
+    }
+
+    private void writeRecords() {
+        if (mBuffer == null || mRecordStream.size() == 0) return;
+
+        try {
+            int length = mRecordStream.size();
+            if (mDataEnd + length > mBuffer.capacity()) {
+                if (shouldCompact()) {
+                    compact();
+                    return;
+                }
+                grow(mDataEnd + length);
+            }
+            mBuffer.position(mDataEnd);
+            mBuffer.put(mRecordStream.toByteArray());
+            mDataEnd += length;
+            mBuffer.putInt(DATA_END_OFFSET, mDataEnd);
+            if (shouldCompact()) compact();
+        } catch (IOException | GeneralSecurityException e) {
+            FLog.e(e);
+            closeFile();
+        }
+    }
+
+    private boolean shouldCompact() {
+        long deadBytes = mDataEnd - HEADER_SIZE - mLiveBytes;
+        return mDataEnd > COMPACT_MIN_BYTES && deadBytes > mLiveBytes;
+    }
+
+    /**
+     * Rewrites the live records into a new file and renames it over the log.
+     */
+    private void compact() throws IOException, GeneralSecurityException {
+        mRecordStream.reset();
+        mRecordSizes.clear();
+        mLiveBytes = 0;
+        for (Map.Entry<String, Object> entry : mValues.entrySet()) {
+            int size = appendValue(entry.getKey(), entry.getValue());
+            mRecordSizes.put(entry.getKey(), size);
+            mLiveBytes += size;
+        }
+        for (Map.Entry<String, byte[]> entry : mOpaqueRecords.entrySet()) {
+            byte[] record = entry.getValue();
+            mRecordStream.write(record, 0, record.length);
+            mRecordSizes.put(entry.getKey(), record.length);
+            mLiveBytes += record.length;
+        }
+
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        int dataEnd = HEADER_SIZE + mRecordStream.size();
+        RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+        try {
+            file.setLength(getMappedSize(dataEnd));
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+            buffer.position(HEADER_SIZE);
+            buffer.put(mRecordStream.toByteArray());
+            writeHeader(buffer, dataEnd);
+            buffer.force();
+        } finally {
+            IoUtils.close(file);
+        }
+        closeFile();
+        if (!tempFile.renameTo(mFile)) {
+            throw new IOException("Unable to replace " + mFile);
+        }
+        openFile(mFile);
+        mDataEnd = dataEnd;
+    }
+
+    private void grow(int minSize) throws IOException {
+        int size = getMappedSize(Math.max(minSize, mBuffer.capacity() * 2));
+        mRandomAccessFile.setLength(size);
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void openFile(File file) throws IOException {
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+        if (mRandomAccessFile.length() < INITIAL_SIZE) {
+            mRandomAccessFile.setLength(INITIAL_SIZE);
+        }
+        mChannel = mRandomAccessFile.getChannel();
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, mRandomAccessFile.length());
+    }
+
+    /**
+     * Keeps the values in memory only after an IO error.
+     */
+    private void closeFile() {
+        IoUtils.close(mChannel);
+        IoUtils.close(mRandomAccessFile);
+        mChannel = null;
+        mRandomAccessFile = null;
+        mBuffer = null;
+    }
+
+    private void writeHeader(ByteBuffer buffer, int dataEnd) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(DATA_END_OFFSET, dataEnd);
+        buffer.putInt(ITERATIONS_OFFSET, mIterations);
+        buffer.position(SALT_OFFSET);
+        buffer.put(mSalt);
+    }
+
+    private static int getMappedSize(int minSize) {
+        int size = INITIAL_SIZE;
+        while (size < minSize) size *= 2;
+        return size;
+    }
+
+    private static void writeInt(ByteArrayOutputStream stream, int value) {
+        stream.write(value >>> 24);
+        stream.write(value >>> 16);
+        stream.write(value >>> 8);
+        stream.write(value);
+    }
+
+    /**
+     * The nonce is random per value and stored in front of the cipher text and tag.
+     */
+    private byte[] crypt(int mode, byte[] data) throws GeneralSecurityException {
+        if (mKey == null) throw new GeneralSecurityException("No password for " + mFile);
+        if (mode == Cipher.ENCRYPT_MODE) {
+            if (mRandom == null) mRandom = new SecureRandom();
+            byte[] nonce = new byte[NONCE_SIZE];
+            mRandom.nextBytes(nonce);
+            byte[] cipherText = CipherEngine.doFinal(TRANSFORMATION, null, mode, mKey, gcmParams(nonce), data);
+            byte[] result = new byte[NONCE_SIZE + cipherText.length];
+            System.arraycopy(nonce, 0, result, 0, NONCE_SIZE);
+            System.arraycopy(cipherText, 0, result, NONCE_SIZE, cipherText.length);
+            return result;
+        }
+        if (data.length < NONCE_SIZE + TAG_SIZE) throw new GeneralSecurityException("Truncated value");
+        byte[] nonce = Arrays.copyOf(data, NONCE_SIZE);
+        return CipherEngine.doFinal(TRANSFORMATION, null, mode, mKey, gcmParams(nonce),
+                Arrays.copyOfRange(data, NONCE_SIZE, data.length));
+    }
+
+    /**
+     * GCMParameterSpec only exists from API 19, older providers take the nonce as an IV.
+     */
+    private static AlgorithmParameterSpec gcmParams(byte[] nonce) {
+        return Build.VERSION.SDK_INT >= 19 ? new GCMParameterSpec(TAG_SIZE * 8, nonce) : new IvParameterSpec(nonce);
+    }
+
+    /**
+     * @return null without a password
+     */
+    private SecretKeySpec deriveKey() {
+        if (mPassword == null) return null;
+        try {
+            return new SecretKeySpec(CipherEngine.pbkdf2Sha256(mPassword.getBytes(UTF_8), mSalt, mIterations, 16),
+                    "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -69,20 +69,11 @@ public class ParseUtils {
     	return (int)(px / density + 0.5f);
     }
     
+    /**
+     * @see HexCodec
+     */
     public static String bytesToHexString(@NonNull byte[] bytes) {
-    	StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            String x16 = Integer.toHexString(b);
-            if (x16.length() < 2) {
-                sb.append("0");
-                sb.append(x16);
-            } else if (x16.length() > 2) {
-                sb.append(x16.substring(x16.length() - 2));
-            } else {
-                sb.append(x16);
-            }
-        }
-        return sb.toString();
+        return HexCodec.encodeToString(bytes);
     }
     
     public static byte[] hexStringToBytes(@NonNull String intString) {
@@ -91,13 +82,8 @@ public class ParseUtils {
     	if (intString.length() % 2 == 1) {
     		intString = "0" + intString;
     	}
-        byte[] bytes = new byte[intString.length() / 2];
-        
         try {
-	        for (int i = 0; i < bytes.length; i++) {  
-	        	bytes[i] = (byte)Integer.parseInt(intString.substring(i * 2, i * 2 + 2), 16);  
-	        }
-	        return bytes;
+	        return HexCodec.decode(intString);
         } catch (Exception e) {
         	if (DEBUG) FLog.e(e);
         }
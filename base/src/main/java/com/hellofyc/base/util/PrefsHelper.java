@@ -20,17 +20,22 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Size;
 import android.support.v4.util.ArrayMap;
 import android.text.TextUtils;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * SharePreferences Tool
@@ -49,6 +54,12 @@ public final class PrefsHelper {
     private String mEncryptKey = "iJasonFang";
     private ArrayMap<String, Object> mKeyValueMap;
     private List<String> mRemoveKeyList;
+    private boolean mIsCached = false;
+    private PrefsCache mCache;
+    private boolean mIsKvStore = false;
+    private MmapKvStore mKvStore;
+
+    private static final ArrayMap<String, PrefsCache> sCaches = new ArrayMap<>();
 
 	private PrefsHelper(Context context) {
 		mContext = context;
@@ -68,6 +79,48 @@ public final class PrefsHelper {
 		return this;
 	}
 
+    /**
+     * Shares one in-memory copy of the file between all cached helpers of the same
+     * configuration. Reads return decoded values from memory, hashed keys are memoized,
+     * and {@link #apply()} updates the memory at once while the writes of the next
+     * {@value PrefsCache#COMMIT_DELAY_MILLIS}ms are committed together. Changes made
+     * through other helpers invalidate the copy via an OnSharedPreferenceChangeListener,
+     * {@link #clear()} of any helper drops it. A clear() made on the SharedPreferences
+     * directly is only seen from API 30, older platforms do not notify it.
+     *
+     * Call this after the other settings.
+     */
+    public PrefsHelper cached() {
+        mIsCached = true;
+        return this;
+    }
+
+    /**
+     * Keeps the file in a {@link MmapKvStore} under files/prefs instead of SharedPreferences,
+     * so {@link #apply()} appends the changed values only. {@link #valueEncrypt()} encrypts
+     * the values with AES instead of DES. The SharedPreferences file is copied over when the
+     * store is first created and left untouched afterwards. The change listeners are not
+     * notified of writes to the store.
+     *
+     * Call this after the other settings.
+     */
+    public PrefsHelper mmapStore() {
+        mIsKvStore = true;
+        return this;
+    }
+
+    /**
+     * Commits the pending writes of {@link #cached()} helpers now, e.g. in onPause.
+     * Forces the {@link #mmapStore()} pages to the disk.
+     */
+    public void flush() {
+        if (mIsKvStore) {
+            getKvStore().sync();
+        } else if (mIsCached) {
+            getCache().commit();
+        }
+    }
+
     public PrefsHelper setFileName(String name) {
         mFileName = name;
         return this;
@@ -142,6 +195,14 @@ public final class PrefsHelper {
     }
 
 	public void apply() {
+        if (mIsKvStore) {
+            applyKvStore();
+            return;
+        }
+        if (mIsCached) {
+            applyCached();
+            return;
+        }
         Editor editor = getSharedPreferences().edit();
         if (mKeyValueMap != null && mKeyValueMap.size() > 0) {
             for (Map.Entry<String, Object> entry : mKeyValueMap.entrySet()) {
@@ -159,12 +220,71 @@ public final class PrefsHelper {
         editor.apply();
 	}
 
+    private void applyCached() {
+        PrefsCache cache = getCache();
+        if (mKeyValueMap != null && mKeyValueMap.size() > 0) {
+            for (Map.Entry<String, Object> entry : mKeyValueMap.entrySet()) {
+                cache.put(entry.getKey(), entry.getValue());
+            }
+            mKeyValueMap.clear();
+            mKeyValueMap = null;
+        }
+        if (mRemoveKeyList != null && mRemoveKeyList.size() > 0) {
+            for (String key : mRemoveKeyList) {
+                cache.put(key, null);
+            }
+            mRemoveKeyList.clear();
+            mRemoveKeyList = null;
+        }
+    }
+
+    private void applyKvStore() {
+        ArrayMap<String, Object> values = null;
+        List<String> removals = null;
+        if (mKeyValueMap != null && mKeyValueMap.size() > 0) {
+            values = new ArrayMap<>(mKeyValueMap.size());
+            for (Map.Entry<String, Object> entry : mKeyValueMap.entrySet()) {
+                Object value = entry.getValue();
+                if (!(value instanceof Integer || value instanceof Long || value instanceof Float
+                        || value instanceof Boolean || value instanceof Set)) {
+                    value = String.valueOf(value);
+                }
+                values.put(getEncodeKey(entry.getKey()), value);
+            }
+            mKeyValueMap.clear();
+            mKeyValueMap = null;
+        }
+        if (mRemoveKeyList != null && mRemoveKeyList.size() > 0) {
+            removals = new ArrayList<>(mRemoveKeyList.size());
+            for (String key : mRemoveKeyList) {
+                removals.add(getEncodeKey(key));
+            }
+            mRemoveKeyList.clear();
+            mRemoveKeyList = null;
+        }
+        getKvStore().apply(values, removals);
+    }
+
     public boolean contain(String key) {
+        if (mIsKvStore) return getKvStore().contains(getEncodeKey(key));
+        if (mIsCached) return getCache().get(key) != null;
         return getSharedPreferences().contains(getEncodeKey(key));
     }
 
     public void clear() {
-        getSharedPreferences().edit().clear().apply();
+        if (mIsKvStore) {
+            getKvStore().clear();
+            return;
+        }
+        SharedPreferences preferences = mIsCached ? getCache().mPreferences : getSharedPreferences();
+        // the listeners only see a clear() from API 30 on
+        synchronized (sCaches) {
+            for (int i = 0; i < sCaches.size(); i++) {
+                PrefsCache cache = sCaches.valueAt(i);
+                if (cache.mPreferences == preferences) cache.drop();
+            }
+        }
+        preferences.edit().clear().apply();
     }
 
 	@SuppressLint("CommitPrefEdits")
@@ -177,10 +297,16 @@ public final class PrefsHelper {
 	}
 
     public Map<String, ?> getAll() {
+        if (mIsKvStore) return getKvStore().getAll();
+        if (mIsCached) getCache().commit();
         return getSharedPreferences().getAll();
     }
 
 	public String getString(String key, String defValue) {
+        if (mIsKvStore || mIsCached) {
+            Object value = getMemoryValue(key);
+            return value != null ? String.valueOf(value) : defValue;
+        }
 		String value = getSharedPreferences().getString(getEncodeKey(key), defValue);
 		if (value.equals(defValue)) {
 			return value;
@@ -190,6 +316,15 @@ public final class PrefsHelper {
 	}
 
 	public int getInt(String key, int defValue) {
+        if (mIsKvStore || mIsCached) {
+            Object value = getMemoryValue(key);
+            if (value instanceof Number) return ((Number) value).intValue();
+            try {
+                return value != null ? Integer.parseInt(String.valueOf(value)) : defValue;
+            } catch (NumberFormatException e) {
+                return defValue;
+            }
+        }
 		if (mIsValueEncrypt) {
 			String value = getString(key, String.valueOf(defValue));
 			try {
@@ -203,6 +338,15 @@ public final class PrefsHelper {
 	}
 
 	public long getLong(String key, long defValue) {
+        if (mIsKvStore || mIsCached) {
+            Object value = getMemoryValue(key);
+            if (value instanceof Number) return ((Number) value).longValue();
+            try {
+                return value != null ? Long.parseLong(String.valueOf(value)) : defValue;
+            } catch (NumberFormatException e) {
+                return defValue;
+            }
+        }
 		if (mIsValueEncrypt) {
 			String value = getString(key, String.valueOf(defValue));
 			try {
@@ -216,6 +360,15 @@ public final class PrefsHelper {
 	}
 
 	public float getFloat(String key, float defValue) {
+        if (mIsKvStore || mIsCached) {
+            Object value = getMemoryValue(key);
+            if (value instanceof Number) return ((Number) value).floatValue();
+            try {
+                return value != null ? Float.parseFloat(String.valueOf(value)) : defValue;
+            } catch (NumberFormatException e) {
+                return defValue;
+            }
+        }
 		if (mIsValueEncrypt) {
 			String value = getString(key, String.valueOf(defValue));
 			try {
@@ -230,6 +383,11 @@ public final class PrefsHelper {
 	}
 
 	public boolean getBoolean(String key, boolean defValue) {
+        if (mIsKvStore || mIsCached) {
+            Object value = getMemoryValue(key);
+            if (value instanceof Boolean) return (Boolean) value;
+            return value != null ? Boolean.parseBoolean(String.valueOf(value)) : defValue;
+        }
 		if (mIsValueEncrypt) {
 			String valueString = getString(key, String.valueOf(defValue));
 			try {
@@ -242,7 +400,12 @@ public final class PrefsHelper {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	public Set<String> getStringSet(String key, Set<String> defValues) {
+        if (mIsKvStore || mIsCached) {
+            Object value = getMemoryValue(key);
+            return value instanceof Set ? new HashSet<>((Set<String>) value) : defValues;
+        }
 		Set<String> valueSet = getSharedPreferences().getStringSet(getEncodeKey(key), defValues);
 		Set<String> tempValueSet = new HashSet<>();
 		for (String s : valueSet) {
@@ -251,7 +414,13 @@ public final class PrefsHelper {
 		return tempValueSet;
 	}
 
+    private Object getMemoryValue(String key) {
+        if (mIsKvStore) return getKvStore().get(getEncodeKey(key));
+        return getCache().get(key);
+    }
+
     private String getEncodeKey(String key) {
+        if (mIsCached && !mIsKvStore) return getCache().getEncodeKey(key);
         return mIsKeyEncrypt ? MD5Utils.encode(key) : key;
     }
 
@@ -268,7 +437,63 @@ public final class PrefsHelper {
         }
     }
 
+    private PrefsCache getCache() {
+        if (mCache != null) return mCache;
+
+        String name = (mFileName == null ? "" : mFileName) + '|' + mMode + '|' + mIsKeyEncrypt
+                + '|' + mIsValueEncrypt + '|' + (mIsValueEncrypt ? mEncryptKey : "");
+        synchronized (sCaches) {
+            PrefsCache cache = sCaches.get(name);
+            if (cache == null) {
+                PrefsHelper helper = new PrefsHelper(mContext.getApplicationContext());
+                helper.mFileName = mFileName;
+                helper.mMode = mMode;
+                helper.mIsKeyEncrypt = mIsKeyEncrypt;
+                helper.mIsValueEncrypt = mIsValueEncrypt;
+                helper.mEncryptKey = mEncryptKey;
+                cache = new PrefsCache(helper);
+                sCaches.put(name, cache);
+            }
+            mCache = cache;
+            return cache;
+        }
+    }
+
+    /**
+     * Opens the store of the file, copying the SharedPreferences file into a new store.
+     */
+    @SuppressWarnings("unchecked")
+    private MmapKvStore getKvStore() {
+        if (mKvStore != null) return mKvStore;
+
+        File file = new File(mContext.getFilesDir(),
+                "prefs/" + (TextUtils.isEmpty(mFileName) ? "default" : mFileName) + ".kv");
+        MmapKvStore store = MmapKvStore.open(file, mIsValueEncrypt ? mEncryptKey : null);
+        synchronized (store) {
+            if (store.isCreated()) {
+                ArrayMap<String, Object> values = new ArrayMap<>();
+                for (Map.Entry<String, ?> entry : getSharedPreferences().getAll().entrySet()) {
+                    Object value = entry.getValue();
+                    if (mIsValueEncrypt && value instanceof String) {
+                        value = getDecryptValue((String) value, null);
+                    } else if (mIsValueEncrypt && value instanceof Set) {
+                        Set<String> decrypted = new HashSet<>();
+                        for (String s : (Set<String>) value) {
+                            decrypted.add(getDecryptValue(s, ""));
+                        }
+                        value = decrypted;
+                    }
+                    if (value != null) values.put(entry.getKey(), value);
+                }
+                if (!values.isEmpty()) store.apply(values, null);
+            }
+        }
+        mKvStore = store;
+        return store;
+    }
+
     private SharedPreferences getSharedPreferences() {
+        if (mIsCached && !mIsKvStore) return getCache().mPreferences;
         SharedPreferences preferences;
         if (TextUtils.isEmpty(mFileName)) {
             preferences = PreferenceManager.getDefaultSharedPreferences(mContext);
@@ -278,4 +503,202 @@ public final class PrefsHelper {
         return preferences;
     }
 
+    /**
+     * Decoded values of one file and configuration, keyed by the plain key.
+     */
+    private static final class PrefsCache implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+        static final long COMMIT_DELAY_MILLIS = 100;
+
+        private static final Object ABSENT = new Object();
+        private static final Object REMOVED = new Object();
+
+        /** Uncached helper of the same configuration, encodes keys and values. */
+        private final PrefsHelper mHelper;
+        final SharedPreferences mPreferences;
+        private final ConcurrentHashMap<String, Object> mValues = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, String> mEncodedKeys = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, String> mPlainKeys = new ConcurrentHashMap<>();
+        private Map<String, ?> mSnapshot;
+        private ArrayMap<String, Object> mPending = new ArrayMap<>();
+        /** Encoded keys of own commits whose change notifications are not delivered yet. */
+        private final ArrayMap<String, Integer> mInFlight = new ArrayMap<>();
+        private boolean mCommitScheduled = false;
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private final Runnable mCommitRunnable = new Runnable() {
+            @Override
+            public void run() {
+                commit();
+            }
+        };
+
+        PrefsCache(PrefsHelper helper) {
+            mHelper = helper;
+            mPreferences = helper.getSharedPreferences();
+            // SharedPreferences only keeps a weak reference, this cache is never released
+            mPreferences.registerOnSharedPreferenceChangeListener(this);
+        }
+
+        String getEncodeKey(String key) {
+            String encodedKey = mEncodedKeys.get(key);
+            if (encodedKey == null) {
+                encodedKey = mHelper.getEncodeKey(key);
+                mEncodedKeys.put(key, encodedKey);
+                mPlainKeys.put(encodedKey, key);
+            }
+            return encodedKey;
+        }
+
+        /**
+         * @return the decoded value, null if absent
+         */
+        Object get(String key) {
+            Object value = mValues.get(key);
+            if (value == null) {
+                value = load(key);
+            }
+            return value == ABSENT ? null : value;
+        }
+
+        private synchronized Object load(String key) {
+            Object value = mValues.get(key);
+            if (value != null) return value;
+
+            value = decode(loadRaw(getEncodeKey(key)));
+            mValues.put(key, value);
+            return value;
+        }
+
+        /**
+         * Encrypted values are strings or string sets, only other types read a snapshot.
+         */
+        private Object loadRaw(String encodedKey) {
+            try {
+                return mPreferences.getString(encodedKey, null);
+            } catch (ClassCastException e) {
+                // a string set, number or boolean
+            }
+            if (mSnapshot == null) {
+                mSnapshot = mPreferences.getAll();
+            }
+            return mSnapshot.get(encodedKey);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object decode(Object raw) {
+            if (raw == null) return ABSENT;
+            if (!mHelper.mIsValueEncrypt) {
+                return raw instanceof Set ? Collections.unmodifiableSet(new HashSet<>((Set<String>) raw)) : raw;
+            }
+            if (raw instanceof Set) {
+                Set<String> values = new HashSet<>();
+                for (String s : (Set<String>) raw) {
+                    values.add(mHelper.getDecryptValue(s, ""));
+                }
+                return Collections.unmodifiableSet(values);
+            }
+            String value = mHelper.getDecryptValue(String.valueOf(raw), null);
+            return value != null ? value : ABSENT;
+        }
+
+        /**
+         * @param value null to remove
+         */
+        @SuppressWarnings("unchecked")
+        synchronized void put(String key, Object value) {
+            Object cached;
+            if (value == null) {
+                cached = ABSENT;
+            } else if (value instanceof Set) {
+                cached = Collections.unmodifiableSet(new HashSet<>((Set<String>) value));
+            } else {
+                cached = mHelper.mIsValueEncrypt ? String.valueOf(value) : value;
+            }
+            mValues.put(key, cached);
+            mPending.put(key, value == null ? REMOVED : value);
+            if (!mCommitScheduled) {
+                mCommitScheduled = true;
+                mHandler.postDelayed(mCommitRunnable, COMMIT_DELAY_MILLIS);
+            }
+        }
+
+        void commit() {
+            ArrayMap<String, Object> pending;
+            synchronized (this) {
+                mHandler.removeCallbacks(mCommitRunnable);
+                mCommitScheduled = false;
+                if (mPending.isEmpty()) return;
+                pending = mPending;
+                mPending = new ArrayMap<>();
+            }
+            final List<String> keys = new ArrayList<>(pending.size());
+            Editor editor = mPreferences.edit();
+            for (Map.Entry<String, Object> entry : pending.entrySet()) {
+                String encodedKey = getEncodeKey(entry.getKey());
+                keys.add(encodedKey);
+                if (entry.getValue() == REMOVED) {
+                    editor.remove(encodedKey);
+                } else {
+                    mHelper.putValue(editor, entry.getKey(), entry.getValue());
+                }
+            }
+            updateInFlight(keys, 1);
+            editor.apply();
+            // apply() notifies at once on the main thread and posts the notification otherwise,
+            // this post runs after it
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                updateInFlight(keys, -1);
+            } else {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateInFlight(keys, -1);
+                    }
+                });
+            }
+        }
+
+        private synchronized void updateInFlight(List<String> encodedKeys, int delta) {
+            for (String encodedKey : encodedKeys) {
+                Integer count = mInFlight.get(encodedKey);
+                int newCount = (count == null ? 0 : count) + delta;
+                if (newCount == 0) {
+                    mInFlight.remove(encodedKey);
+                } else {
+                    mInFlight.put(encodedKey, newCount);
+                }
+            }
+        }
+
+        /**
+         * Forgets the values and pending writes, the file is cleared by the caller.
+         */
+        synchronized void drop() {
+            mHandler.removeCallbacks(mCommitRunnable);
+            mCommitScheduled = false;
+            mPending.clear();
+            mValues.clear();
+            mSnapshot = null;
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String encodedKey) {
+            synchronized (this) {
+                if (encodedKey == null) {
+                    mSnapshot = null;
+                    mValues.clear();
+                    return;
+                }
+                // written by this cache, the memory already holds the value
+                if (mInFlight.containsKey(encodedKey)) return;
+
+                mSnapshot = null;
+                String key = mPlainKeys.get(encodedKey);
+                // a write of this cache that is still pending is newer than the stored value
+                if (key != null && !mPending.containsKey(key)) {
+                    mValues.remove(key);
+                }
+            }
+        }
+    }
 }